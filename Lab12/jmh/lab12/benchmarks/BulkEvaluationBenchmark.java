@@ -0,0 +1,70 @@
+package lab12.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The BulkEvaluationBenchmark class measures `BulkExpressionEvaluator.evaluateFile` on files of
+ * newline-delimited expressions, from the mapped input to the written results.
+ *
+ * Specifications:
+ *
+ * - Every line is an expression of 16 operands nested to a depth of 2 from
+ *   `DataGenerators.expression`, with its own seed, so the file takes roughly 100 bytes per line.
+ *
+ * - The input file is written once per trial and stays in the page cache, so the benchmark
+ *   measures evaluating and writing rather than reading from the disk. The output file is
+ *   truncated and rewritten by every call, with one worker per available processor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BulkEvaluationBenchmark {
+
+    private static final int OPERANDS = 16;
+
+    private static final int DEPTH = 2;
+
+    @Param({"65536", "1048576"})
+    public int lines;
+
+    private Path input;
+    private Path output;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        input = Files.createTempFile("expressions", ".txt");
+        output = Files.createTempFile("results", ".txt");
+        DataGenerators.writeExpressions(input, lines, OPERANDS, DEPTH, DataGenerators.SEED);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(input);
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    public Object evaluateFile() throws Throwable {
+        return (Object) Targets.EVALUATE_FILE.invokeExact(input, output);
+    }
+}
@@ -0,0 +1,95 @@
+package lab12.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The CompiledExpressionBenchmark class measures the evaluation of a `CompiledExpression` with
+ * variables, as a tree, as generated code and in columnar batches.
+ *
+ * Specifications:
+ *
+ * - The expressions of `ParserBenchmark` hold literals only and fold to a single constant, so the
+ *   expressions here use about half of their operands for four variables.
+ *
+ * - `treeEvaluate` and `generatedEvaluate` evaluate one row of values, with the expression compiled
+ *   by `compile(String)` and by `compile(String, true)`.
+ *
+ * - `evaluateBatch` and `evaluateBatchParallel` evaluate 131,072 rows of columns, enough for the
+ *   parallel batch to split across processors, and report the time per batch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompiledExpressionBenchmark {
+
+    private static final int VARIABLES = 4;
+
+    private static final int ROWS = 1 << 17;
+
+    @Param({"16", "256"})
+    public int operands;
+
+    @Param({"0", "8"})
+    public int depth;
+
+    private Object tree;
+    private Object generated;
+    private double[] values;
+    private double[][] columns;
+    private double[] out;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        String expression = DataGenerators.expression(operands, depth, VARIABLES, DataGenerators.SEED);
+        tree = (Object) Targets.COMPILE.invokeExact(expression);
+        generated = (Object) Targets.COMPILE_GENERATED.invokeExact(expression, true);
+        int variables = ((List<?>) Targets.VARIABLES.invokeExact(tree)).size();
+        values = DataGenerators.doubles(variables, DataGenerators.SEED);
+        columns = new double[variables][];
+        for (int i = 0; i < variables; i++) {
+            columns[i] = DataGenerators.doubles(ROWS, DataGenerators.SEED + 1 + i);
+        }
+        out = new double[ROWS];
+    }
+
+    @Benchmark
+    public double treeEvaluate() throws Throwable {
+        return (double) Targets.EVALUATE_VALUES.invokeExact(tree, values);
+    }
+
+    @Benchmark
+    public double generatedEvaluate() throws Throwable {
+        return (double) Targets.EVALUATE_VALUES.invokeExact(generated, values);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public double[] evaluateBatch() throws Throwable {
+        Targets.EVALUATE_BATCH.invokeExact(tree, columns, out, false);
+        return out;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public double[] evaluateBatchParallel() throws Throwable {
+        Targets.EVALUATE_BATCH.invokeExact(tree, columns, out, true);
+        return out;
+    }
+}
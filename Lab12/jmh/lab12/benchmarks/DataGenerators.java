@@ -0,0 +1,221 @@
+package lab12.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * The DataGenerators class creates the inputs of the benchmarks.
+ *
+ * Specifications:
+ *
+ * - Every generator is deterministic for a given seed, so that results of different runs and
+ *   different versions of the code are measured on the same data.
+ *
+ * - Sorted arrays are built with a given share of duplicates: every element repeats its predecessor
+ *   with the probability `duplicateRatio`, and otherwise exceeds it by 1 to 3, leaving gaps.
+ *   Keys are drawn from the whole range of the array and slightly beyond it, so that a mix of
+ *   present and absent keys is searched.
+ *
+ * - Expressions consist of a number of operands joined by the four operators, with parentheses
+ *   nested to a given depth. Division only precedes a literal, which is never zero, so that no
+ *   expression divides by zero. Operands may be variables named `x0`, `x1` and so on, so that
+ *   constant folding cannot reduce the expression to a single number.
+ *
+ * - Files of expressions, one per line, are written for the benchmarks of whole files.
+ */
+final class DataGenerators {
+
+    /**
+     * The seed of every generator unless a benchmark chooses another.
+     */
+    static final long SEED = 42;
+
+    private static final char[] OPERATORS = {'+', '-', '*', '/'};
+
+    private DataGenerators() {
+    }
+
+    /**
+     * Creates a sorted array of integers.
+     *
+     * @param size The number of elements.
+     * @param duplicateRatio The probability that an element repeats its predecessor.
+     * @param seed The seed of the random numbers.
+     * @return The sorted array.
+     */
+    static int[] sortedInts(int size, double duplicateRatio, long seed) {
+        Random random = new Random(seed);
+        int[] array = new int[size];
+        int value = 0;
+        for (int i = 0; i < size; i++) {
+            if (i > 0 && random.nextDouble() >= duplicateRatio) {
+                value += 1 + random.nextInt(3);
+            }
+            array[i] = value;
+        }
+        return array;
+    }
+
+    /**
+     * Creates keys to search in a sorted array of integers.
+     *
+     * @param array The sorted array.
+     * @param count The number of keys, a power of two so that benchmarks can cycle through them with a mask.
+     * @param seed The seed of the random numbers.
+     * @return The keys, in random order.
+     */
+    static int[] keys(int[] array, int count, long seed) {
+        Random random = new Random(seed);
+        int max = array[array.length - 1];
+        int[] keys = new int[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = random.nextInt(max + 2) - 1;
+        }
+        return keys;
+    }
+
+    /**
+     * Creates a sorted array of strings from a sorted array of integers, so that it has the same
+     * duplicates. Every string starts with a common prefix, as keys such as paths or URLs do.
+     *
+     * @param values The sorted integers.
+     * @param prefix The common prefix.
+     * @return The sorted strings.
+     */
+    static String[] sortedStrings(int[] values, String prefix) {
+        String[] strings = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            strings[i] = word(values[i], prefix);
+        }
+        return strings;
+    }
+
+    /**
+     * Formats an integer as a string that sorts in the order of the integers.
+     *
+     * @param value The non-negative integer.
+     * @param prefix The common prefix.
+     * @return The string.
+     */
+    static String word(int value, String prefix) {
+        String digits = Integer.toString(value);
+        return prefix + "0".repeat(10 - digits.length()) + digits;
+    }
+
+    /**
+     * Creates an arithmetic expression.
+     *
+     * @param operands The number of operands.
+     * @param depth The nesting depth of parentheses, at most one less than the number of operands.
+     * @param seed The seed of the random numbers.
+     * @return The expression.
+     */
+    static String expression(int operands, int depth, long seed) {
+        return expression(operands, depth, 0, seed);
+    }
+
+    /**
+     * Creates an arithmetic expression in which about half of the operands are variables.
+     *
+     * @param operands The number of operands.
+     * @param depth The nesting depth of parentheses, at most one less than the number of operands.
+     * @param variables The number of distinct variables, none for an expression of literals only.
+     * @param seed The seed of the random numbers.
+     * @return The expression.
+     */
+    static String expression(int operands, int depth, int variables, long seed) {
+        Random random = new Random(seed);
+        int nested = Math.min(depth, operands - 1);
+        StringBuilder expression = new StringBuilder(operands * 8);
+        for (int i = 0; i < operands; i++) {
+            char operator = 0;
+            if (i > 0) {
+                // Only a literal may follow a division, never an opening parenthesis or a variable
+                operator = OPERATORS[random.nextInt(i < nested ? 3 : 4)];
+                expression.append(' ').append(operator).append(' ');
+            }
+            if (i < nested) {
+                expression.append('(');
+            }
+            if (variables > 0 && operator != '/' && random.nextBoolean()) {
+                expression.append('x').append(random.nextInt(variables));
+                continue;
+            }
+            expression.append(1 + random.nextInt(99));
+            if (random.nextInt(4) == 0) {
+                expression.append('.').append(random.nextInt(10));
+            }
+        }
+        expression.append(")".repeat(nested));
+        return expression.toString();
+    }
+
+    /**
+     * Writes a file of arithmetic expressions, one per line, each generated with its own seed.
+     *
+     * @param file The file to write, created or truncated.
+     * @param lines The number of expressions.
+     * @param operands The number of operands of every expression.
+     * @param depth The nesting depth of parentheses of every expression.
+     * @param seed The seed of the first expression.
+     * @throws IOException If the file cannot be written.
+     */
+    static void writeExpressions(Path file, int lines, int operands, int depth, long seed) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            for (int i = 0; i < lines; i++) {
+                writer.write(expression(operands, depth, seed + i));
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Creates a number with about a given count of decimal digits. The number is drawn as random
+     * bits, since parsing a decimal string of a million digits takes longer than the benchmark.
+     *
+     * @param digits The number of digits.
+     * @param seed The seed of the random numbers.
+     * @return The number, with the given number of digits or one fewer.
+     */
+    static BigInteger number(int digits, long seed) {
+        int bits = (int) Math.ceil(digits / Math.log10(2));
+        return new BigInteger(bits - 1, new Random(seed)).setBit(bits - 2);
+    }
+
+    /**
+     * Creates values of every magnitude, from one digit to nineteen.
+     *
+     * @param count The number of values.
+     * @param seed The seed of the random numbers.
+     * @return The values.
+     */
+    static long[] longs(int count, long seed) {
+        Random random = new Random(seed);
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = random.nextLong() >> random.nextInt(64);
+        }
+        return values;
+    }
+
+    /**
+     * Creates values for the variables of expressions, none of them zero.
+     *
+     * @param count The number of values.
+     * @param seed The seed of the random numbers.
+     * @return The values, between 0.5 and 100.
+     */
+    static double[] doubles(int count, long seed) {
+        Random random = new Random(seed);
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = 0.5 + random.nextDouble() * 99.5;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,84 @@
+package lab12.benchmarks;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The DigitSumBenchmark class measures `RecursiveSumOfDigits.sumOfDigits(BigInteger)` on numbers
+ * of different digit counts, from the size of a `long` to a million digits.
+ *
+ * Specifications:
+ *
+ * - Numbers of 100,000 digits and more are summed in parallel where the machine has several
+ *   processors. The primitive methods are measured by `PrimitiveDigitSumBenchmark`.
+ *
+ * - `decimalFile` sums the digits of the same number written as text to a temporary file, with
+ *   `DecimalFileDigitSum`. The file is only written for this benchmark, as converting a number of
+ *   a million digits to decimal takes seconds, and it stays in the page cache between calls.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DigitSumBenchmark {
+
+    @Param({"19", "1000", "100000", "1000000"})
+    public int digits;
+
+    private BigInteger number;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        number = DataGenerators.number(digits, DataGenerators.SEED);
+    }
+
+    @Benchmark
+    public int bigInteger() throws Throwable {
+        return (int) Targets.DIGIT_SUM.invokeExact(number);
+    }
+
+    @Benchmark
+    public long decimalFile(DecimalFile file) throws Throwable {
+        return (long) Targets.DECIMAL_FILE_DIGIT_SUM.invokeExact(file.path);
+    }
+
+    /**
+     * The number of the benchmark written to a temporary file.
+     */
+    @State(Scope.Thread)
+    public static class DecimalFile {
+
+        private Path path;
+
+        @Setup(Level.Trial)
+        public void setUp(DigitSumBenchmark benchmark) throws IOException {
+            path = Files.createTempFile("digits", ".txt");
+            Files.writeString(path, benchmark.number.toString(), StandardCharsets.US_ASCII);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package lab12.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The IndexBenchmark class measures the lookups of the search indexes built over a sorted array,
+ * against `BinarySearch.binarySearchRecursive` on the same array and keys.
+ *
+ * Specifications:
+ *
+ * - The arrays and keys are those of `SearchBenchmark`. `EytzingerIndex`, `KarySearchIndex` and
+ *   `PiecewiseLinearIndex` look up the index of a key, `RunLengthIndex` counts its occurrences,
+ *   and `LcpStringIndex` looks up the key as a string of `DataGenerators.sortedStrings` behind a
+ *   common prefix of 32 characters.
+ *
+ * - The indexes are built once per trial, outside of the measurement.
+ *
+ * - The forks add the `jdk.incubator.vector` module needed by `KarySearchIndex`.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class IndexBenchmark {
+
+    private static final int KEYS = 1 << 12;
+
+    private static final String PREFIX = "p".repeat(32);
+
+    @Param({"1024", "1048576"})
+    public int size;
+
+    @Param({"0.0", "0.9"})
+    public double duplicateRatio;
+
+    private int[] array;
+    private int[] keys;
+    private String[] stringKeys;
+    private Object eytzinger;
+    private Object kary;
+    private Object piecewiseLinear;
+    private Object runLength;
+    private Object lcpString;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        array = DataGenerators.sortedInts(size, duplicateRatio, DataGenerators.SEED);
+        keys = DataGenerators.keys(array, KEYS, DataGenerators.SEED + 1);
+        stringKeys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            // Negative keys sort before every element
+            stringKeys[i] = keys[i] < 0 ? PREFIX : DataGenerators.word(keys[i], PREFIX);
+        }
+        eytzinger = (Object) Targets.EYTZINGER_INDEX.invokeExact(array);
+        kary = (Object) Targets.Vectorized.KARY_SEARCH_INDEX.invokeExact(array);
+        piecewiseLinear = (Object) Targets.PIECEWISE_LINEAR_INDEX.invokeExact(array);
+        runLength = (Object) Targets.RUN_LENGTH_INDEX.invokeExact(array);
+        lcpString = (Object) Targets.LCP_STRING_INDEX.invokeExact(DataGenerators.sortedStrings(array, PREFIX));
+    }
+
+    private int nextSlot() {
+        return next++ & (KEYS - 1);
+    }
+
+    @Benchmark
+    public int binarySearchRecursive() throws Throwable {
+        return (int) Targets.BINARY_SEARCH.invokeExact(array, keys[nextSlot()], 0, array.length - 1);
+    }
+
+    @Benchmark
+    public int eytzinger() throws Throwable {
+        return (int) Targets.EYTZINGER_INDEX_OF.invokeExact(eytzinger, keys[nextSlot()]);
+    }
+
+    @Benchmark
+    public int kary() throws Throwable {
+        return (int) Targets.Vectorized.KARY_INDEX_OF.invokeExact(kary, keys[nextSlot()]);
+    }
+
+    @Benchmark
+    public int piecewiseLinear() throws Throwable {
+        return (int) Targets.PIECEWISE_LINEAR_INDEX_OF.invokeExact(piecewiseLinear, keys[nextSlot()]);
+    }
+
+    @Benchmark
+    public int runLengthCount() throws Throwable {
+        return (int) Targets.RUN_LENGTH_COUNT.invokeExact(runLength, keys[nextSlot()]);
+    }
+
+    @Benchmark
+    public int lcpString() throws Throwable {
+        return (int) Targets.LCP_STRING_INDEX_OF.invokeExact(lcpString, stringKeys[nextSlot()]);
+    }
+}
@@ -0,0 +1,105 @@
+package lab12.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The InstrumentationBenchmark class measures the overhead of `Metrics` and of the flight recorder
+ * events on the cheapest instrumented call, a search of a small array, and on a short evaluation.
+ *
+ * Specifications:
+ *
+ * - `uninstrumented` calls the private recursion of `BinarySearch`, which records nothing, as the
+ *   baseline of the searches.
+ *
+ * - The other benchmarks run in three configurations, each in its own fork: the default, with the
+ *   metrics on and no recording; with the metrics switched off by `-Dlab12.metrics=false`; and with
+ *   a flight recording started by `-XX:StartFlightRecording`, which enables the events.
+ *
+ * - The difference between `uninstrumented` and `searchMetricsOff` is the cost left when the
+ *   instrumentation is disabled, which should be within the noise of the measurement.
+ *
+ * - The difference between `uninstrumented` and `search` is the cost of the always-on metrics,
+ *   which count every single search but only time one in `Metrics.SAMPLE_PERIOD`. While a
+ *   recording runs, as in `searchRecording`, every search is timed and committed as an event.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstrumentationBenchmark {
+
+    private static final int KEYS = 1 << 12;
+
+    private static final String METRICS_OFF = "-Dlab12.metrics=false";
+
+    private static final String RECORDING = "-XX:StartFlightRecording";
+
+    private int[] array;
+    private int[] keys;
+    private int next;
+    private String expression;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        array = DataGenerators.sortedInts(1024, 0.0, DataGenerators.SEED);
+        keys = DataGenerators.keys(array, KEYS, DataGenerators.SEED + 1);
+        expression = DataGenerators.expression(16, 2, DataGenerators.SEED);
+    }
+
+    private int nextKey() {
+        return keys[next++ & (KEYS - 1)];
+    }
+
+    @Benchmark
+    public int uninstrumented() throws Throwable {
+        return (int) Targets.SEARCH_UNINSTRUMENTED.invokeExact(array, nextKey(), 0, array.length - 1);
+    }
+
+    @Benchmark
+    public int search() throws Throwable {
+        return (int) Targets.BINARY_SEARCH.invokeExact(array, nextKey(), 0, array.length - 1);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = METRICS_OFF)
+    public int searchMetricsOff() throws Throwable {
+        return (int) Targets.BINARY_SEARCH.invokeExact(array, nextKey(), 0, array.length - 1);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = RECORDING)
+    public int searchRecording() throws Throwable {
+        return (int) Targets.BINARY_SEARCH.invokeExact(array, nextKey(), 0, array.length - 1);
+    }
+
+    @Benchmark
+    public double evaluate() throws Throwable {
+        return (double) Targets.EVALUATE.invokeExact((CharSequence) expression);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = METRICS_OFF)
+    public double evaluateMetricsOff() throws Throwable {
+        return (double) Targets.EVALUATE.invokeExact((CharSequence) expression);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = RECORDING)
+    public double evaluateRecording() throws Throwable {
+        return (double) Targets.EVALUATE.invokeExact((CharSequence) expression);
+    }
+}
@@ -0,0 +1,71 @@
+package lab12.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The ParserBenchmark class measures `RecursiveParser` on expressions of different lengths and
+ * nesting depths.
+ *
+ * Specifications:
+ *
+ * - `evaluate` parses and evaluates the expression in a single pass on every call.
+ *
+ * - `evaluateExpression` finds the expression in the cache of compiled expressions after the first
+ *   call, so it measures the lookup and the evaluation of the folded tree.
+ *
+ * - `compiledEvaluate` evaluates a `CompiledExpression` held by the benchmark, without any lookup.
+ *
+ * - The depth is capped at one less than the number of operands, so the smallest expressions are
+ *   measured with less nesting than the parameter states.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"16", "256", "4096"})
+    public int operands;
+
+    @Param({"0", "8", "512"})
+    public int depth;
+
+    private String expression;
+    private Object compiled;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        expression = DataGenerators.expression(operands, depth, DataGenerators.SEED);
+        compiled = (Object) Targets.COMPILE.invokeExact(expression);
+    }
+
+    @Benchmark
+    public double evaluate() throws Throwable {
+        return (double) Targets.EVALUATE.invokeExact((CharSequence) expression);
+    }
+
+    @Benchmark
+    public double evaluateExpression() throws Throwable {
+        return (double) Targets.EVALUATE_EXPRESSION.invokeExact(expression);
+    }
+
+    @Benchmark
+    public double compiledEvaluate() throws Throwable {
+        return (double) Targets.EVALUATE_COMPILED.invokeExact(compiled);
+    }
+}
@@ -0,0 +1,63 @@
+package lab12.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The PrimitiveDigitSumBenchmark class measures the digit sums of `RecursiveSumOfDigits` on
+ * primitive `long` values, one at a time and in batches.
+ *
+ * Specifications:
+ *
+ * - The values have every magnitude from one digit to nineteen, so that the number of blocks per
+ *   value varies as it does in real data.
+ *
+ * - `primitive` sums one value per call, cycling through the values. `batch` sums an array of
+ *   `batchSize` values and reports the time per array. Batches above 16,384 values are split
+ *   between the processors of the common fork/join pool.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitiveDigitSumBenchmark {
+
+    @Param({"4096", "1048576"})
+    public int batchSize;
+
+    private long[] values;
+    private int[] out;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        values = DataGenerators.longs(batchSize, DataGenerators.SEED);
+        out = new int[batchSize];
+    }
+
+    @Benchmark
+    public int primitive() throws Throwable {
+        return (int) Targets.DIGIT_SUM_LONG.invokeExact(values[next++ & (batchSize - 1)]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int[] batch() throws Throwable {
+        Targets.DIGIT_SUM_BATCH.invokeExact(values, out);
+        return out;
+    }
+}
@@ -0,0 +1,99 @@
+package lab12.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The SearchBenchmark class measures the integer searches of `BinarySearch` and
+ * `BinarySearchAllIndices` on sorted arrays of different sizes and shares of duplicates.
+ *
+ * Specifications:
+ *
+ * - Single searches cycle through a fixed set of random keys, so that the searched key is not a
+ *   constant and the branches of the search cannot be predicted from one call to the next.
+ *
+ * - The `searchAll` benchmark searches all keys in one batch and reports the time per batch.
+ *
+ * - The array sizes span the caches: 1,024 elements fit in the L1 cache, 1,048,576 do not fit in
+ *   most L2 caches.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+
+    /**
+     * The number of keys cycled through, a power of two.
+     */
+    private static final int KEYS = 1 << 12;
+
+    @Param({"1024", "1048576"})
+    public int size;
+
+    @Param({"0.0", "0.5", "0.9"})
+    public double duplicateRatio;
+
+    private int[] array;
+    private int[] keys;
+    private int[] out;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        array = DataGenerators.sortedInts(size, duplicateRatio, DataGenerators.SEED);
+        keys = DataGenerators.keys(array, KEYS, DataGenerators.SEED + 1);
+        out = new int[KEYS];
+    }
+
+    private int nextKey() {
+        return keys[next++ & (KEYS - 1)];
+    }
+
+    @Benchmark
+    public int binarySearchRecursive() throws Throwable {
+        return (int) Targets.BINARY_SEARCH.invokeExact(array, nextKey(), 0, array.length - 1);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int[] searchAll() throws Throwable {
+        Targets.SEARCH_ALL.invokeExact(array, keys, out);
+        return out;
+    }
+
+    @Benchmark
+    public int lowerBound() throws Throwable {
+        return (int) Targets.LOWER_BOUND.invokeExact(array, nextKey(), 0, array.length - 1);
+    }
+
+    @Benchmark
+    public int[] equalRange() throws Throwable {
+        return (int[]) Targets.EQUAL_RANGE.invokeExact(array, nextKey(), 0, array.length - 1);
+    }
+
+    @Benchmark
+    public int countOccurrences() throws Throwable {
+        return (int) Targets.COUNT_OCCURRENCES.invokeExact(array, nextKey(), 0, array.length - 1);
+    }
+
+    @Benchmark
+    public List<?> binarySearchAllIndices() throws Throwable {
+        return (List<?>) Targets.ALL_INDICES.invokeExact(array, nextKey(), 0, array.length - 1);
+    }
+}
@@ -0,0 +1,80 @@
+package lab12.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The StringSearchBenchmark class measures the searches of `BinarySearchStrings` on sorted arrays
+ * of strings of different sizes, shares of duplicates and lengths of a common prefix.
+ *
+ * Specifications:
+ *
+ * - The strings are the integers of `DataGenerators.sortedInts` padded to ten digits behind a
+ *   common prefix, so that a longer prefix makes every comparison of the plain search longer,
+ *   while the search with longest common prefixes skips it.
+ *
+ * - The keys are separate `String` instances equal to array elements or falling between them, so
+ *   that no comparison succeeds by identity.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringSearchBenchmark {
+
+    private static final int KEYS = 1 << 12;
+
+    @Param({"1024", "1048576"})
+    public int size;
+
+    @Param({"0.0", "0.9"})
+    public double duplicateRatio;
+
+    @Param({"0", "64"})
+    public int prefixLength;
+
+    private String[] array;
+    private String[] keys;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int[] values = DataGenerators.sortedInts(size, duplicateRatio, DataGenerators.SEED);
+        String prefix = "p".repeat(prefixLength);
+        array = DataGenerators.sortedStrings(values, prefix);
+        int[] keyValues = DataGenerators.keys(values, KEYS, DataGenerators.SEED + 1);
+        keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            // Negative keys sort before every element
+            keys[i] = keyValues[i] < 0 ? prefix : DataGenerators.word(keyValues[i], prefix);
+        }
+    }
+
+    private String nextKey() {
+        return keys[next++ & (KEYS - 1)];
+    }
+
+    @Benchmark
+    public int binarySearchRecursive() throws Throwable {
+        return (int) Targets.STRING_SEARCH.invokeExact(array, nextKey(), 0, array.length - 1);
+    }
+
+    @Benchmark
+    public int binarySearchLcp() throws Throwable {
+        return (int) Targets.STRING_SEARCH_LCP.invokeExact(array, nextKey(), 0, array.length - 1);
+    }
+}
@@ -0,0 +1,272 @@
+package lab12.benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The Targets class holds method handles for the code under benchmark.
+ *
+ * Specifications:
+ *
+ * - The Lab12 classes are in the default package, which a named package such as this one cannot
+ *   import, while JMH requires benchmarks to be in a named package. The classes are therefore
+ *   looked up by name once, when this class is initialized, and their public static methods are
+ *   bound to method handles. Private methods, measured as baselines, are reached through a lookup
+ *   with private access, which is granted as both packages are in the unnamed module.
+ *
+ * - Every handle is held in a `static final` field and called with `invokeExact`, so that the JIT
+ *   compiler treats it as a constant and inlines the target as if it were called directly.
+ *   Types that cannot be named here, such as `CompiledExpression`, are adapted to `Object`, and
+ *   so are the instances of the index classes, created through handles of their constructors.
+ *
+ * - `KarySearchIndex` needs the `jdk.incubator.vector` module. Its handles are held by the nested
+ *   `Vectorized` class, which is only initialized by the benchmarks that use them, so the other
+ *   benchmarks also run in a JVM without the module.
+ *
+ * - A missing class or method fails the initialization of this class, and with it every benchmark,
+ *   rather than producing a misleading measurement.
+ */
+final class Targets {
+
+    static final MethodHandle BINARY_SEARCH = find("BinarySearch", "binarySearchRecursive",
+            int.class, int[].class, int.class, int.class, int.class);
+
+    /**
+     * The private `BinarySearch.search`, the recursion of `binarySearchRecursive` without its
+     * validation and instrumentation.
+     */
+    static final MethodHandle SEARCH_UNINSTRUMENTED = findPrivate("BinarySearch", "search",
+            int.class, int[].class, int.class, int.class, int.class);
+
+    static final MethodHandle SEARCH_ALL = find("BinarySearch", "searchAll",
+            void.class, int[].class, int[].class, int[].class);
+
+    static final MethodHandle STRING_SEARCH = find("BinarySearchStrings", "binarySearchRecursive",
+            int.class, String[].class, String.class, int.class, int.class);
+
+    static final MethodHandle STRING_SEARCH_LCP = find("BinarySearchStrings", "binarySearchLcp",
+            int.class, String[].class, String.class, int.class, int.class);
+
+    static final MethodHandle LOWER_BOUND = find("BinarySearchAllIndices", "lowerBound",
+            int.class, int[].class, int.class, int.class, int.class);
+
+    static final MethodHandle EQUAL_RANGE = find("BinarySearchAllIndices", "equalRange",
+            int[].class, int[].class, int.class, int.class, int.class);
+
+    static final MethodHandle COUNT_OCCURRENCES = find("BinarySearchAllIndices", "countOccurrences",
+            int.class, int[].class, int.class, int.class, int.class);
+
+    static final MethodHandle ALL_INDICES = find("BinarySearchAllIndices", "binarySearchAllIndices",
+            List.class, int[].class, int.class, int.class, int.class);
+
+    static final MethodHandle EVALUATE_EXPRESSION = find("RecursiveParser", "evaluateExpression",
+            double.class, String.class);
+
+    static final MethodHandle EVALUATE = find("RecursiveParser", "evaluate",
+            double.class, CharSequence.class);
+
+    /**
+     * `RecursiveParser.compile(String)`, returning the `CompiledExpression` as an `Object`.
+     */
+    static final MethodHandle COMPILE = find("RecursiveParser", "compile",
+            "CompiledExpression", String.class)
+            .asType(MethodType.methodType(Object.class, String.class));
+
+    /**
+     * `CompiledExpression.evaluate()`, taking the compiled expression as an `Object`.
+     */
+    static final MethodHandle EVALUATE_COMPILED = findVirtual("CompiledExpression", "evaluate", double.class)
+            .asType(MethodType.methodType(double.class, Object.class));
+
+    /**
+     * `RecursiveParser.compile(String, boolean)`, returning the `CompiledExpression` as an `Object`.
+     */
+    static final MethodHandle COMPILE_GENERATED = find("RecursiveParser", "compile",
+            "CompiledExpression", String.class, boolean.class)
+            .asType(MethodType.methodType(Object.class, String.class, boolean.class));
+
+    /**
+     * `CompiledExpression.variables()`, taking the compiled expression as an `Object`.
+     */
+    static final MethodHandle VARIABLES = findVirtual("CompiledExpression", "variables", List.class)
+            .asType(MethodType.methodType(List.class, Object.class));
+
+    /**
+     * `CompiledExpression.evaluate(double...)`, taking the compiled expression as an `Object`.
+     */
+    static final MethodHandle EVALUATE_VALUES = findVirtual("CompiledExpression", "evaluate",
+            double.class, double[].class)
+            .asType(MethodType.methodType(double.class, Object.class, double[].class));
+
+    /**
+     * `CompiledExpression.evaluateBatch(double[][], double[], boolean)`, taking the compiled
+     * expression as an `Object`.
+     */
+    static final MethodHandle EVALUATE_BATCH = findVirtual("CompiledExpression", "evaluateBatch",
+            void.class, double[][].class, double[].class, boolean.class)
+            .asType(MethodType.methodType(void.class, Object.class, double[][].class, double[].class, boolean.class));
+
+    /**
+     * `BulkExpressionEvaluator.evaluateFile(Path, Path)`, returning the summary as an `Object`.
+     */
+    static final MethodHandle EVALUATE_FILE = find("BulkExpressionEvaluator", "evaluateFile",
+            "BulkExpressionEvaluator$Summary", Path.class, Path.class)
+            .asType(MethodType.methodType(Object.class, Path.class, Path.class));
+
+    static final MethodHandle DIGIT_SUM = find("RecursiveSumOfDigits", "sumOfDigits",
+            int.class, BigInteger.class);
+
+    static final MethodHandle DIGIT_SUM_LONG = find("RecursiveSumOfDigits", "sumOfDigits",
+            int.class, long.class);
+
+    static final MethodHandle DIGIT_SUM_BATCH = find("RecursiveSumOfDigits", "sumOfDigits",
+            void.class, long[].class, int[].class);
+
+    static final MethodHandle DECIMAL_FILE_DIGIT_SUM = find("DecimalFileDigitSum", "sumOfDigits",
+            long.class, Path.class);
+
+    /**
+     * The constructor `EytzingerIndex(int[])`, returning the index as an `Object`.
+     */
+    static final MethodHandle EYTZINGER_INDEX = findConstructor("EytzingerIndex", int[].class);
+
+    /**
+     * `EytzingerIndex.indexOf(int)`, taking the index as an `Object`.
+     */
+    static final MethodHandle EYTZINGER_INDEX_OF = findVirtual("EytzingerIndex", "indexOf", int.class, int.class)
+            .asType(MethodType.methodType(int.class, Object.class, int.class));
+
+    static final MethodHandle PIECEWISE_LINEAR_INDEX = findConstructor("PiecewiseLinearIndex", int[].class);
+
+    static final MethodHandle PIECEWISE_LINEAR_INDEX_OF = findVirtual("PiecewiseLinearIndex", "indexOf",
+            int.class, int.class)
+            .asType(MethodType.methodType(int.class, Object.class, int.class));
+
+    static final MethodHandle RUN_LENGTH_INDEX = findConstructor("RunLengthIndex", int[].class);
+
+    static final MethodHandle RUN_LENGTH_COUNT = findVirtual("RunLengthIndex", "countOccurrences",
+            int.class, int.class)
+            .asType(MethodType.methodType(int.class, Object.class, int.class));
+
+    static final MethodHandle LCP_STRING_INDEX = findConstructor("LcpStringIndex", String[].class);
+
+    static final MethodHandle LCP_STRING_INDEX_OF = findVirtual("LcpStringIndex", "indexOf",
+            int.class, String.class)
+            .asType(MethodType.methodType(int.class, Object.class, String.class));
+
+    private Targets() {
+    }
+
+    /**
+     * The handles of `KarySearchIndex`, which can only be looked up where the
+     * `jdk.incubator.vector` module is present.
+     */
+    static final class Vectorized {
+
+        static final MethodHandle KARY_SEARCH_INDEX = findConstructor("KarySearchIndex", int[].class);
+
+        static final MethodHandle KARY_INDEX_OF = findVirtual("KarySearchIndex", "indexOf", int.class, int.class)
+                .asType(MethodType.methodType(int.class, Object.class, int.class));
+
+        private Vectorized() {
+        }
+    }
+
+    /**
+     * Finds a public static method of a class in the default package.
+     *
+     * @param className The name of the class.
+     * @param name The name of the method.
+     * @param returnType The return type of the method.
+     * @param parameterTypes The parameter types of the method.
+     * @return A handle invoking the method.
+     * @throws IllegalStateException If the class or the method does not exist.
+     */
+    private static MethodHandle find(String className, String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            return MethodHandles.publicLookup().findStatic(Class.forName(className), name,
+                    MethodType.methodType(returnType, parameterTypes));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot find " + className + "." + name, e);
+        }
+    }
+
+    /**
+     * Finds a private static method of a class in the default package.
+     *
+     * @param className The name of the class.
+     * @param name The name of the method.
+     * @param returnType The return type of the method.
+     * @param parameterTypes The parameter types of the method.
+     * @return A handle invoking the method.
+     * @throws IllegalStateException If the class or the method does not exist.
+     */
+    private static MethodHandle findPrivate(String className, String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            Class<?> type = Class.forName(className);
+            return MethodHandles.privateLookupIn(type, MethodHandles.lookup()).findStatic(type, name,
+                    MethodType.methodType(returnType, parameterTypes));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot find " + className + "." + name, e);
+        }
+    }
+
+    /**
+     * Finds a public static method whose return type is a class in the default package.
+     *
+     * @param className The name of the class.
+     * @param name The name of the method.
+     * @param returnClassName The name of the class returned by the method.
+     * @param parameterTypes The parameter types of the method.
+     * @return A handle invoking the method.
+     * @throws IllegalStateException If a class or the method does not exist.
+     */
+    private static MethodHandle find(String className, String name, String returnClassName, Class<?>... parameterTypes) {
+        try {
+            return find(className, name, Class.forName(returnClassName), parameterTypes);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Cannot find " + returnClassName, e);
+        }
+    }
+
+    /**
+     * Finds a public constructor of a class in the default package.
+     *
+     * @param className The name of the class.
+     * @param parameterTypes The parameter types of the constructor.
+     * @return A handle creating an instance, returned as an `Object`.
+     * @throws IllegalStateException If the class or the constructor does not exist.
+     */
+    private static MethodHandle findConstructor(String className, Class<?>... parameterTypes) {
+        try {
+            return MethodHandles.publicLookup().findConstructor(Class.forName(className),
+                    MethodType.methodType(void.class, parameterTypes))
+                    .asType(MethodType.methodType(Object.class, parameterTypes));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot find the constructor of " + className, e);
+        }
+    }
+
+    /**
+     * Finds a public instance method of a class in the default package.
+     *
+     * @param className The name of the class.
+     * @param name The name of the method.
+     * @param returnType The return type of the method.
+     * @param parameterTypes The parameter types of the method.
+     * @return A handle invoking the method, taking the receiver as its first argument.
+     * @throws IllegalStateException If the class or the method does not exist.
+     */
+    private static MethodHandle findVirtual(String className, String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Class.forName(className), name,
+                    MethodType.methodType(returnType, parameterTypes));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot find " + className + "." + name, e);
+        }
+    }
+}
@@ -1,3 +1,7 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
  * The BinarySearch class implements a recursive binary search algorithm
  * to find the index of a target element in a sorted array.
@@ -14,6 +18,16 @@
  * - If the target element is not found, the method returns -1 to indicate that the target 
  *   is not present in the array.
  * 
+ * - The `searchAll` method looks up a whole batch of keys and stores, for every key, the index 
+ *   `binarySearchRecursive` would return for the whole array. Sorted keys are found by galloping 
+ *   forward from the previous hit; unsorted keys are searched several at a time in lockstep so that 
+ *   their memory accesses overlap. Large batches are split across the common fork/join pool.
+ * 
+ * - Both methods record their calls, rejected ones included, in `Metrics.SEARCH` and report
+ *   them to JDK Flight Recorder as a `SearchEvent`. Single searches are only timed when sampled by
+ *   `Metrics.startSampled`. The number of probes of a single search is counted by replaying it,
+ *   and only for events that are committed to a recording.
+ * 
  * - The `main` method demonstrates how to use the `binarySearchRecursive` method by 
  *   initializing a sorted array and a target element, then searching for the target element 
  *   and printing the result.
@@ -27,6 +41,16 @@
  */
 public class BinarySearch {
 
+    /**
+     * The number of keys below which a batch is no longer split across the fork/join pool.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+    /**
+     * The number of unsorted keys searched in lockstep.
+     */
+    private static final int LANES = 8;
+
     /**
      * Performs a recursive binary search on a sorted array to find the index of a target element.
      * 
@@ -38,9 +62,43 @@ public class BinarySearch {
      * @throws IllegalArgumentException If the array is null or empty.
      */
     public static int binarySearchRecursive(int[] array, int target, int low, int high) {
-        if (array == null || array.length == 0) {
-            throw new IllegalArgumentException("Array cannot be null or empty");
+        SearchEvent event = SearchEvent.beginIfRecording();
+        long start = Metrics.startSampled();
+        int index;
+        try {
+            if (array == null || array.length == 0) {
+                throw new IllegalArgumentException("Array cannot be null or empty");
+            }
+            index = search(array, target, low, high);
+        } catch (RuntimeException e) {
+            Metrics.SEARCH.recordError(start);
+            if (event != null) {
+                event.commitError("BinarySearch.binarySearchRecursive", Math.max(0, high - low + 1), 1, e);
+            }
+            throw e;
+        }
+        Metrics.SEARCH.record(start);
+        if (event != null && event.endAndShouldCommit()) {
+            event.method = "BinarySearch.binarySearchRecursive";
+            event.size = Math.max(0, high - low + 1);
+            event.keys = 1;
+            event.probes = countProbes(array, target, low, high);
+            event.found = index >= 0 ? 1 : 0;
+            event.commit();
         }
+        return index;
+    }
+
+    /**
+     * Performs the recursion of `binarySearchRecursive` on an array that has been validated.
+     * 
+     * @param array The sorted array in which the target element is to be searched.
+     * @param target The element that needs to be found in the array.
+     * @param low The lower index of the current search range.
+     * @param high The higher index of the current search range.
+     * @return The index of the target element if found, otherwise returns -1.
+     */
+    private static int search(int[] array, int target, int low, int high) {
         if (low > high) {
             return -1;
         }
@@ -50,9 +108,258 @@ public class BinarySearch {
         if (array[mid] == target) {
             return mid; // Target found
         } else if (target < array[mid]) {
-            return binarySearchRecursive(array, target, low, mid - 1); // Search in the left half
+            return search(array, target, low, mid - 1); // Search in the left half
+        } else {
+            return search(array, target, mid + 1, high); // Search in the right half
+        }
+    }
+
+    /**
+     * Counts the elements `binarySearchRecursive` compares with the target, by replaying its
+     * probes in a loop.
+     * 
+     * @param array The sorted array.
+     * @param target The element searched for.
+     * @param low The lower index of the search range.
+     * @param high The higher index of the search range.
+     * @return The number of probes.
+     */
+    private static int countProbes(int[] array, int target, int low, int high) {
+        int probes = 0;
+        while (low <= high) {
+            int mid = low + (high - low) / 2;
+            probes++;
+            if (array[mid] == target) {
+                break;
+            } else if (target < array[mid]) {
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return probes;
+    }
+
+    /**
+     * Searches a sorted array for every key of a batch.
+     * 
+     * @param sortedArray The sorted array in which the keys are to be searched.
+     * @param keys The keys to be searched, in any order.
+     * @param out The array receiving, at the position of every key, the index 
+     *            `binarySearchRecursive` returns for the whole array, or -1 if the key is absent.
+     * @throws IllegalArgumentException If the array is null or empty, or the output is shorter than the keys.
+     */
+    public static void searchAll(int[] sortedArray, int[] keys, int[] out) {
+        SearchEvent event = SearchEvent.beginIfRecording();
+        long start = Metrics.start();
+        try {
+            if (sortedArray == null || sortedArray.length == 0) {
+                throw new IllegalArgumentException("Array cannot be null or empty");
+            }
+            if (out.length < keys.length) {
+                throw new IllegalArgumentException("Output array is shorter than the keys");
+            }
+            if (keys.length > PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1) {
+                ForkJoinPool.commonPool().invoke(new SearchAllTask(sortedArray, keys, out, 0, keys.length));
+            } else {
+                searchRange(sortedArray, keys, out, 0, keys.length);
+            }
+        } catch (RuntimeException e) {
+            Metrics.SEARCH.recordError(start);
+            if (event != null) {
+                event.commitError("BinarySearch.searchAll", sortedArray == null ? 0 : sortedArray.length,
+                        keys == null ? 0 : keys.length, e);
+            }
+            throw e;
+        }
+        Metrics.SEARCH.record(start);
+        if (event != null && event.endAndShouldCommit()) {
+            event.method = "BinarySearch.searchAll";
+            event.size = sortedArray.length;
+            event.keys = keys.length;
+            event.found = (int) Arrays.stream(out, 0, keys.length).filter(index -> index >= 0).count();
+            event.commit();
+        }
+    }
+
+    /**
+     * Searches the keys of the given range, choosing the strategy by whether they are sorted.
+     * 
+     * @param array The sorted array.
+     * @param keys The keys to be searched.
+     * @param out The array receiving the results.
+     * @param from The first key to search.
+     * @param to The key after the last key to search.
+     */
+    private static void searchRange(int[] array, int[] keys, int[] out, int from, int to) {
+        boolean sorted = true;
+        for (int i = from + 1; i < to && sorted; i++) {
+            sorted = keys[i - 1] <= keys[i];
+        }
+        if (sorted) {
+            searchSorted(array, keys, out, from, to);
         } else {
-            return binarySearchRecursive(array, target, mid + 1, high); // Search in the right half
+            searchInterleaved(array, keys, out, from, to);
+        }
+    }
+
+    /**
+     * Searches sorted keys, galloping forward from the lower bound of the previous key.
+     * 
+     * @param array The sorted array.
+     * @param keys The sorted keys to be searched.
+     * @param out The array receiving the results.
+     * @param from The first key to search.
+     * @param to The key after the last key to search.
+     */
+    private static void searchSorted(int[] array, int[] keys, int[] out, int from, int to) {
+        int lower = 0;
+        for (int i = from; i < to; i++) {
+            lower = gallopLowerBound(array, keys[i], lower);
+            out[i] = resolveRun(array, keys[i], lower);
+        }
+    }
+
+    /**
+     * Searches unsorted keys in groups that descend the array in lockstep. Every step of the 
+     * branch-free lower-bound search loads one element per key, and as these loads do not depend 
+     * on each other the processor overlaps their cache misses.
+     * 
+     * @param array The sorted array.
+     * @param keys The keys to be searched.
+     * @param out The array receiving the results.
+     * @param from The first key to search.
+     * @param to The key after the last key to search.
+     */
+    private static void searchInterleaved(int[] array, int[] keys, int[] out, int from, int to) {
+        int[] bases = new int[LANES];
+        int start = from;
+        for (; start + LANES <= to; start += LANES) {
+            Arrays.fill(bases, 0);
+            int length = array.length;
+            while (length > 1) {
+                int half = length >>> 1;
+                for (int lane = 0; lane < LANES; lane++) {
+                    int base = bases[lane];
+                    bases[lane] = array[base + half] < keys[start + lane] ? base + half : base;
+                }
+                length -= half;
+            }
+            for (int lane = 0; lane < LANES; lane++) {
+                int key = keys[start + lane];
+                int base = bases[lane];
+                out[start + lane] = resolveRun(array, key, array[base] < key ? base + 1 : base);
+            }
+        }
+        for (int i = start; i < to; i++) {
+            out[i] = resolveRun(array, keys[i], gallopLowerBound(array, keys[i], 0));
+        }
+    }
+
+    /**
+     * Finds the first element not less than the key, searching exponentially growing steps 
+     * forward from a position known not to be past it.
+     * 
+     * @param array The sorted array.
+     * @param key The key searched for.
+     * @param start A position whose preceding elements are all less than the key.
+     * @return The index of the first element not less than the key, or the array length if there is none.
+     */
+    private static int gallopLowerBound(int[] array, int key, int start) {
+        int low = start;
+        int step = 1;
+        while (low + step < array.length && array[low + step - 1] < key) {
+            low += step;
+            step <<= 1;
+        }
+        int high = Math.min(low + step, array.length);
+        // The answer now lies in [low, high]
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (array[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Turns the lower bound of a key into the index `binarySearchRecursive` returns for it.
+     * 
+     * @param array The sorted array.
+     * @param key The key searched for.
+     * @param lower The index of the first element not less than the key.
+     * @return The index of the key the recursive search stops at, or -1 if the key is absent.
+     */
+    private static int resolveRun(int[] array, int key, int lower) {
+        if (lower == array.length || array[lower] != key) {
+            return -1;
+        }
+        if (lower + 1 == array.length || array[lower + 1] != key) {
+            return lower;
+        }
+        // The run ends at the lower bound of the next larger key
+        int upper = key == Integer.MAX_VALUE ? array.length : gallopLowerBound(array, key + 1, lower + 1);
+        return resolveIndex(lower, upper, 0, array.length - 1);
+    }
+
+    /**
+     * Returns the index `binarySearchRecursive` would return for a target whose occurrences occupy
+     * the positions from `from` (inclusive) to `to` (exclusive) of the searched array. The probe
+     * sequence is replayed on the indices alone, so no array element is read. This lets faster
+     * search structures that locate the whole run of a duplicated target report the same index as
+     * the recursive search.
+     * 
+     * @param from The index of the first occurrence of the target.
+     * @param to The index after the last occurrence of the target.
+     * @param low The lower index of the search range.
+     * @param high The higher index of the search range.
+     * @return The index the recursive search stops at, or -1 if the run lies outside the range.
+     */
+    static int resolveIndex(int from, int to, int low, int high) {
+        while (low <= high) {
+            int mid = low + (high - low) / 2;
+            if (mid < from) {
+                low = mid + 1;
+            } else if (mid >= to) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Searches a range of keys, splitting it in halves until it is small enough.
+     */
+    private static final class SearchAllTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] array;
+        private final int[] keys;
+        private final int[] out;
+        private final int from;
+        private final int to;
+
+        SearchAllTask(int[] array, int[] keys, int[] out, int from, int to) {
+            this.array = array;
+            this.keys = keys;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                searchRange(array, keys, out, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SearchAllTask(array, keys, out, from, mid), new SearchAllTask(array, keys, out, mid, to));
         }
     }
 
@@ -1,38 +1,140 @@
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.stream.IntStream;
 
 /**
- * The BinarySearchAllIndices class implements a recursive binary search algorithm
- * to find all indices of a target element in a sorted array that may contain duplicates.
+ * The BinarySearchAllIndices class implements binary searches that find all indices of a target
+ * element in a sorted array that may contain duplicates.
  * 
  * Specifications:
  * 
- * - The `binarySearchAllIndices` method takes a sorted array, a target element, and 
- *   a range defined by the indices `low` and `high` to search for all occurrences of the target element.
+ * - The `lowerBound` and `upperBound` methods take a sorted array, a target element, and a range
+ *   defined by the indices `low` and `high`, and return the first index in the range whose element
+ *   is not less than, respectively greater than, the target, or `high + 1` if there is none.
  * 
- * - It throws an `IllegalArgumentException` if the provided array is null or empty.
+ * - The `equalRange` method returns the occurrences of the target in the range as a primitive
+ *   `[from, to)` pair, `countOccurrences` returns their number, and `indices` returns a lazy
+ *   `IntStream` over them. None of them box or sort any index.
  * 
- * - If the target element is found, the method adds all its occurrences to the list `indices`.
+ * - The `binarySearchAllIndices` method returns the same indices as a `List`, in ascending order.
+ *   It is the only method that boxes, one `Integer` per occurrence.
  * 
- * - The method ensures that the list of indices is sorted in ascending order before returning.
+ * - Every method throws an `IllegalArgumentException` if the provided array is null or empty.
+ * 
+ * - Every method but the two bounds, which other searches build on, records its calls, rejected
+ *   ones included, in `Metrics.SEARCH`, timing them only when sampled by `Metrics.startSampled`,
+ *   and reports them to JDK Flight Recorder as a `SearchEvent`. The probes of both bounds are
+ *   counted by replaying them, and only for events that are committed.
  * 
  * - The `main` method demonstrates how to use the `binarySearchAllIndices` method by 
  *   initializing a sorted array and a target element, then searching for all occurrences 
  *   of the target element and printing the result.
  * 
  * Time Complexity:
- * - Best Case: O(log n), if the element is found at the middle on the first attempt.
- * - Average/Worst Case: O(n), as all occurrences of the target might need to be found recursively.
+ * - O(log n) for `lowerBound`, `upperBound`, `equalRange` and `countOccurrences`, regardless of
+ *   the number of occurrences.
+ * - O(log n + k) for `binarySearchAllIndices` and for consuming the stream of `indices`, where k
+ *   is the number of occurrences of the target element.
  * 
  * Space Complexity:
- * - O(log n) for the recursive stack due to the recursive calls, and O(k) for the list of indices 
- *   where k is the number of occurrences of the target element.
+ * - O(1) for the bounds and the stream, and O(k) for the list of indices.
  */
 public class BinarySearchAllIndices {
 
     /**
-     * Performs a recursive binary search on a sorted array to find all indices of a target element.
+     * Finds the first index in a range of a sorted array whose element is not less than the target.
+     * 
+     * @param array The sorted array in which the target element is to be searched.
+     * @param target The element whose lower bound needs to be found.
+     * @param low The lower index of the search range.
+     * @param high The higher index of the search range.
+     * @return The first index in [low, high] whose element is at least the target, or high + 1.
+     * @throws IllegalArgumentException If the array is null or empty.
+     */
+    public static int lowerBound(int[] array, int target, int low, int high) {
+        checkArray(array);
+        while (low <= high) {
+            int mid = low + (high - low) / 2;
+            if (array[mid] < target) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the first index in a range of a sorted array whose element is greater than the target.
+     * 
+     * @param array The sorted array in which the target element is to be searched.
+     * @param target The element whose upper bound needs to be found.
+     * @param low The lower index of the search range.
+     * @param high The higher index of the search range.
+     * @return The first index in [low, high] whose element is greater than the target, or high + 1.
+     * @throws IllegalArgumentException If the array is null or empty.
+     */
+    public static int upperBound(int[] array, int target, int low, int high) {
+        checkArray(array);
+        while (low <= high) {
+            int mid = low + (high - low) / 2;
+            if (array[mid] <= target) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the range of indices holding the target element.
+     * 
+     * @param array The sorted array in which the target element is to be searched.
+     * @param target The element whose indices need to be found in the array.
+     * @param low The lower index of the search range.
+     * @param high The higher index of the search range.
+     * @return A pair {from, to} such that the target occupies exactly the indices [from, to);
+     *         from equals to if the target does not occur in the range.
+     * @throws IllegalArgumentException If the array is null or empty.
+     */
+    public static int[] equalRange(int[] array, int target, int low, int high) {
+        return locate(array, target, low, high, "BinarySearchAllIndices.equalRange");
+    }
+
+    /**
+     * Counts the occurrences of the target element without materializing their indices.
+     * 
+     * @param array The sorted array in which the target element is to be searched.
+     * @param target The element whose occurrences need to be counted.
+     * @param low The lower index of the search range.
+     * @param high The higher index of the search range.
+     * @return The number of indices in [low, high] holding the target.
+     * @throws IllegalArgumentException If the array is null or empty.
+     */
+    public static int countOccurrences(int[] array, int target, int low, int high) {
+        int[] range = locate(array, target, low, high, "BinarySearchAllIndices.countOccurrences");
+        return range[1] - range[0];
+    }
+
+    /**
+     * Returns the indices of the target element as a lazy stream. The range is located eagerly, in
+     * O(log n), and the indices are generated only as the stream is consumed.
+     * 
+     * @param array The sorted array in which the target element is to be searched.
+     * @param target The element whose indices need to be found in the array.
+     * @param low The lower index of the search range.
+     * @param high The higher index of the search range.
+     * @return An ordered stream of the indices in [low, high] holding the target.
+     * @throws IllegalArgumentException If the array is null or empty.
+     */
+    public static IntStream indices(int[] array, int target, int low, int high) {
+        int[] range = locate(array, target, low, high, "BinarySearchAllIndices.indices");
+        return IntStream.range(range[0], range[1]);
+    }
+
+    /**
+     * Performs a binary search on a sorted array to find all indices of a target element.
      * 
      * @param array The sorted array in which the target element is to be searched.
      * @param target The element whose indices need to be found in the array.
@@ -42,33 +144,84 @@ public class BinarySearchAllIndices {
      * @throws IllegalArgumentException If the array is null or empty.
      */
     public static List<Integer> binarySearchAllIndices(int[] array, int target, int low, int high) {
-        List<Integer> indices = new ArrayList<>();
-
-        if (array == null || array.length == 0) {
-            throw new IllegalArgumentException("Array cannot be null or empty");
+        int[] range = locate(array, target, low, high, "BinarySearchAllIndices.binarySearchAllIndices");
+        List<Integer> indices = new ArrayList<>(range[1] - range[0]);
+        for (int i = range[0]; i < range[1]; i++) {
+            indices.add(i);
         }
+        return indices;
+    }
 
-        if (low > high) {
-            return indices; // Return empty list if not found
+    /**
+     * Finds the range of indices holding the target element, recording the search in
+     * `Metrics.SEARCH` and as a `SearchEvent`.
+     * 
+     * @param array The sorted array in which the target element is to be searched.
+     * @param target The element whose indices need to be found in the array.
+     * @param low The lower index of the search range.
+     * @param high The higher index of the search range.
+     * @param method The name of the public method reported in the event.
+     * @return The pair {from, to} of `equalRange`.
+     * @throws IllegalArgumentException If the array is null or empty.
+     */
+    private static int[] locate(int[] array, int target, int low, int high, String method) {
+        SearchEvent event = SearchEvent.beginIfRecording();
+        long start = Metrics.startSampled();
+        int from;
+        int to;
+        try {
+            checkArray(array);
+            from = lowerBound(array, target, low, high);
+            // The occurrences start at from, so only the rest of the range needs to be searched
+            to = upperBound(array, target, from, high);
+        } catch (RuntimeException e) {
+            Metrics.SEARCH.recordError(start);
+            if (event != null) {
+                event.commitError(method, Math.max(0, high - low + 1), 1, e);
+            }
+            throw e;
         }
+        Metrics.SEARCH.record(start);
+        if (event != null && event.endAndShouldCommit()) {
+            event.method = method;
+            event.size = Math.max(0, high - low + 1);
+            event.keys = 1;
+            event.probes = countProbes(array, target, low, high, false) + countProbes(array, target, from, high, true);
+            event.found = to > from ? 1 : 0;
+            event.commit();
+        }
+        return new int[]{from, to};
+    }
 
-        int mid = low + (high - low) / 2;
-
-        if (array[mid] == target) {
-            indices.add(mid);
-            // Search the left side for any other occurrences of the target
-            indices.addAll(binarySearchAllIndices(array, target, low, mid - 1)); 
-            // Search the right side for any other occurrences of the target
-            indices.addAll(binarySearchAllIndices(array, target, mid + 1, high)); 
-            // Ensure indices are in ascending order
-            Collections.sort(indices); 
-        } else if (target < array[mid]) {
-            indices.addAll(binarySearchAllIndices(array, target, low, mid - 1));
-        } else {
-            indices.addAll(binarySearchAllIndices(array, target, mid + 1, high));
+    /**
+     * Counts the elements `lowerBound` or `upperBound` compares with the target, by replaying its
+     * probes.
+     * 
+     * @param array The sorted array.
+     * @param target The element searched for.
+     * @param low The lower index of the search range.
+     * @param high The higher index of the search range.
+     * @param upper Whether to replay `upperBound` rather than `lowerBound`.
+     * @return The number of probes.
+     */
+    private static int countProbes(int[] array, int target, int low, int high, boolean upper) {
+        int probes = 0;
+        while (low <= high) {
+            int mid = low + (high - low) / 2;
+            probes++;
+            if (upper ? array[mid] <= target : array[mid] < target) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
         }
+        return probes;
+    }
 
-        return indices;
+    private static void checkArray(int[] array) {
+        if (array == null || array.length == 0) {
+            throw new IllegalArgumentException("Array cannot be null or empty");
+        }
     }
 
     /**
@@ -85,6 +238,8 @@ public class BinarySearchAllIndices {
         try {
             List<Integer> results = binarySearchAllIndices(sortedArray, target, 0, sortedArray.length - 1);
             System.out.println("Indices of target: " + results);
+            int[] range = equalRange(sortedArray, target, 0, sortedArray.length - 1);
+            System.out.println("Range of target: [" + range[0] + ", " + range[1] + ")");
         } catch (IllegalArgumentException e) {
             System.out.println(e.getMessage());
         }
@@ -15,12 +15,25 @@
  * 
  * - If the target is not found, the method recurses on the left or right half of the array depending on the comparison.
  * 
+ * - The `binarySearchLcp` method probes the same indices and returns the same result, but remembers
+ *   the longest common prefix of the target with the elements just outside the current range.
+ *   Every element inside the range shares at least the smaller of the two prefixes with the target,
+ *   so each comparison starts after it instead of at the first character. `LcpStringIndex` goes
+ *   further with precomputed prefix lengths.
+ * 
+ * - Both methods record their calls, rejected ones included, in `Metrics.SEARCH`, timing them only
+ *   when sampled by `Metrics.startSampled`, and report them to JDK Flight Recorder as a
+ *   `SearchEvent`, with the number of strings compared by `binarySearchRecursive` or the number of
+ *   characters compared by `binarySearchLcp`. Both are only counted while the event is enabled.
+ * 
  * Time Complexity:
  * - Best Case: O(1), if the element is found at the middle on the first attempt.
  * - Average/Worst Case: O(log n), where n is the number of elements in the array.
+ * - Each `compareTo` costs up to O(L) for strings of length L, so `binarySearchRecursive` compares
+ *   O(L log n) characters, while `binarySearchLcp` usually compares close to O(L + log n).
  * 
  * Space Complexity:
- * - O(log n) for the recursive stack due to the recursive calls.
+ * - O(log n) for the recursive stack due to the recursive calls, O(1) for `binarySearchLcp`.
  */
 public class BinarySearchStrings {
 
@@ -35,10 +48,43 @@ public class BinarySearchStrings {
      * @throws IllegalArgumentException If the array is null or empty.
      */
     public static int binarySearchRecursive(String[] array, String target, int low, int high) {
-        if (array == null || array.length == 0) {
-            throw new IllegalArgumentException("Array cannot be null or empty");
+        SearchEvent event = SearchEvent.beginIfRecording();
+        long start = Metrics.startSampled();
+        int index;
+        try {
+            if (array == null || array.length == 0) {
+                throw new IllegalArgumentException("Array cannot be null or empty");
+            }
+            index = search(array, target, low, high);
+        } catch (RuntimeException e) {
+            Metrics.SEARCH.recordError(start);
+            if (event != null) {
+                event.commitError("BinarySearchStrings.binarySearchRecursive", Math.max(0, high - low + 1), 1, e);
+            }
+            throw e;
+        }
+        Metrics.SEARCH.record(start);
+        if (event != null && event.endAndShouldCommit()) {
+            event.method = "BinarySearchStrings.binarySearchRecursive";
+            event.size = Math.max(0, high - low + 1);
+            event.keys = 1;
+            event.probes = countProbes(array, target, low, high);
+            event.found = index >= 0 ? 1 : 0;
+            event.commit();
         }
+        return index;
+    }
 
+    /**
+     * Performs the recursion of `binarySearchRecursive` on an array that has been validated.
+     * 
+     * @param array The sorted array of strings in which the target string is to be searched.
+     * @param target The string whose index needs to be found in the array.
+     * @param low The lower index of the current search range.
+     * @param high The higher index of the current search range.
+     * @return The index of the target string if found, otherwise -1.
+     */
+    private static int search(String[] array, String target, int low, int high) {
         if (low > high) {
             return -1; // Return -1 if the target is not found
         }
@@ -50,11 +96,148 @@ public class BinarySearchStrings {
             return mid; // Target found at mid index
         } else if (comparison < 0) {
             // Search the left half
-            return binarySearchRecursive(array, target, low, mid - 1); 
+            return search(array, target, low, mid - 1); 
         } else {
             // Search the right half
-            return binarySearchRecursive(array, target, mid + 1, high); 
+            return search(array, target, mid + 1, high); 
+        }
+    }
+
+    /**
+     * Counts the strings `binarySearchRecursive` compares with the target, by replaying its
+     * probes in a loop.
+     * 
+     * @param array The sorted array of strings.
+     * @param target The string searched for.
+     * @param low The lower index of the search range.
+     * @param high The higher index of the search range.
+     * @return The number of probes.
+     */
+    private static int countProbes(String[] array, String target, int low, int high) {
+        int probes = 0;
+        while (low <= high) {
+            int mid = low + (high - low) / 2;
+            probes++;
+            int comparison = target.compareTo(array[mid]);
+            if (comparison == 0) {
+                break;
+            } else if (comparison < 0) {
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return probes;
+    }
+
+    /**
+     * Performs a binary search on a sorted array of strings that skips the prefix the target is
+     * known to share with the current range. It probes the same indices as `binarySearchRecursive`.
+     * 
+     * @param array The sorted array of strings in which the target string is to be searched.
+     * @param target The string whose index needs to be found in the array.
+     * @param low The lower index of the search range.
+     * @param high The higher index of the search range.
+     * @return The index of the target string if found, otherwise -1.
+     * @throws IllegalArgumentException If the array is null or empty.
+     */
+    public static int binarySearchLcp(String[] array, String target, int low, int high) {
+        SearchEvent event = SearchEvent.beginIfRecording();
+        // Characters are only counted while a recording enables the event
+        long[] comparisons = event != null && event.isEnabled() ? new long[1] : null;
+        long start = Metrics.startSampled();
+        int index;
+        try {
+            index = binarySearchLcp(array, target, low, high, comparisons);
+        } catch (RuntimeException e) {
+            Metrics.SEARCH.recordError(start);
+            if (event != null) {
+                event.commitError("BinarySearchStrings.binarySearchLcp", Math.max(0, high - low + 1), 1, e);
+            }
+            throw e;
+        }
+        Metrics.SEARCH.record(start);
+        if (comparisons != null && event.endAndShouldCommit()) {
+            event.method = "BinarySearchStrings.binarySearchLcp";
+            event.size = Math.max(0, high - low + 1);
+            event.keys = 1;
+            event.probes = comparisons[0];
+            event.found = index >= 0 ? 1 : 0;
+            event.commit();
+        }
+        return index;
+    }
+
+    /**
+     * Performs the search of `binarySearchLcp`, optionally counting the characters it compares.
+     * 
+     * @param array The sorted array of strings in which the target string is to be searched.
+     * @param target The string whose index needs to be found in the array.
+     * @param low The lower index of the search range.
+     * @param high The higher index of the search range.
+     * @param comparisons A counter incremented by the number of characters compared, or null.
+     * @return The index of the target string if found, otherwise -1.
+     * @throws IllegalArgumentException If the array is null or empty.
+     */
+    static int binarySearchLcp(String[] array, String target, int low, int high, long[] comparisons) {
+        if (array == null || array.length == 0) {
+            throw new IllegalArgumentException("Array cannot be null or empty");
+        }
+        // Common prefix lengths of the target with the elements at low - 1 and high + 1
+        int lowLcp = 0;
+        int highLcp = 0;
+        while (low <= high) {
+            int mid = low + (high - low) / 2;
+            String element = array[mid];
+            int start = Math.min(lowLcp, highLcp);
+            int lcp = commonPrefix(target, element, start);
+            if (comparisons != null) {
+                comparisons[0] += lcp - start + 1;
+            }
+            int comparison = compareAt(target, element, lcp);
+            if (comparison == 0) {
+                return mid;
+            } else if (comparison < 0) {
+                high = mid - 1;
+                highLcp = lcp;
+            } else {
+                low = mid + 1;
+                lowLcp = lcp;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Measures the common prefix of two strings that are known to agree on their first characters.
+     * 
+     * @param a The first string.
+     * @param b The second string.
+     * @param start The number of leading characters known to be equal.
+     * @return The length of the longest common prefix.
+     */
+    static int commonPrefix(String a, String b, int start) {
+        int limit = Math.min(a.length(), b.length());
+        int k = start;
+        while (k < limit && a.charAt(k) == b.charAt(k)) {
+            k++;
+        }
+        return k;
+    }
+
+    /**
+     * Compares two strings given the length of their common prefix, with the sign of `compareTo`.
+     * 
+     * @param a The first string.
+     * @param b The second string.
+     * @param lcp The length of their longest common prefix.
+     * @return A negative number, zero, or a positive number as a is less than, equal to, or greater than b.
+     */
+    static int compareAt(String a, String b, int lcp) {
+        if (lcp < a.length() && lcp < b.length()) {
+            return a.charAt(lcp) - b.charAt(lcp);
         }
+        return a.length() - b.length();
     }
 
     /**
@@ -71,6 +254,8 @@ public class BinarySearchStrings {
         try {
             int result = binarySearchRecursive(sortedArray, target, 0, sortedArray.length - 1);
             System.out.println("Index of target: " + result);
+            result = binarySearchLcp(sortedArray, target, 0, sortedArray.length - 1);
+            System.out.println("Index of target with prefix skipping: " + result);
         } catch (IllegalArgumentException e) {
             System.out.println(e.getMessage());
         }
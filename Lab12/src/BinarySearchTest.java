@@ -1,6 +1,20 @@
 import static org.junit.Assert.*;
 import org.junit.Test;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 public class BinarySearchTest {
 
@@ -28,4 +42,518 @@ public class BinarySearchTest {
         assertTrue(indices.isEmpty());
     }
 
+    @Test
+    public void testEqualRange() {
+        Random random = new Random(9);
+        for (int round = 0; round < 200; round++) {
+            int[] array = sortedArray(random, 1 + random.nextInt(300), 1 + random.nextInt(100));
+            int low = random.nextInt(array.length);
+            int high = low - 1 + random.nextInt(array.length - low + 1);
+            for (int key = -2; key < 102; key++) {
+                int from = low;
+                while (from <= high && array[from] < key) {
+                    from++;
+                }
+                int to = from;
+                while (to <= high && array[to] == key) {
+                    to++;
+                }
+                assertArrayEquals(new int[]{from, to}, BinarySearchAllIndices.equalRange(array, key, low, high));
+                assertEquals(to - from, BinarySearchAllIndices.countOccurrences(array, key, low, high));
+                assertArrayEquals(IntStream.range(from, to).toArray(), BinarySearchAllIndices.indices(array, key, low, high).toArray());
+                assertEquals(IntStream.range(from, to).boxed().collect(Collectors.toList()),
+                        BinarySearchAllIndices.binarySearchAllIndices(array, key, low, high));
+            }
+        }
+        int[] hot = new int[1 << 20];
+        Arrays.fill(hot, 1 << 19, hot.length, 7);
+        assertEquals(1 << 19, BinarySearchAllIndices.countOccurrences(hot, 7, 0, hot.length - 1));
+        assertEquals(1 << 19, BinarySearchAllIndices.lowerBound(hot, 7, 0, hot.length - 1));
+        assertEquals(hot.length, BinarySearchAllIndices.upperBound(hot, 7, 0, hot.length - 1));
+    }
+
+    @Test
+    public void testRunLengthIndex() {
+        Random random = new Random(10);
+        for (int round = 0; round < 200; round++) {
+            int[] array = sortedArray(random, 1 + random.nextInt(500), 1 + random.nextInt(60));
+            RunLengthIndex index = new RunLengthIndex(array);
+            for (int key = -2; key < 62; key++) {
+                int[] range = BinarySearchAllIndices.equalRange(array, key, 0, array.length - 1);
+                assertArrayEquals(range, index.equalRange(key));
+                assertEquals(range[1] - range[0], index.countOccurrences(key));
+                assertEquals(range[0] < range[1] ? range[0] : -1, index.firstIndex(key));
+                assertEquals(range[0] < range[1] ? range[1] - 1 : -1, index.lastIndex(key));
+                assertEquals(BinarySearchAllIndices.binarySearchAllIndices(array, key, 0, array.length - 1), index.allIndices(key));
+            }
+            for (int i = 0; i < array.length; i++) {
+                assertEquals(array[i], index.get(i));
+            }
+        }
+        int[] runs = new int[100_000];
+        Arrays.fill(runs, 50_000, runs.length, 1);
+        RunLengthIndex index = new RunLengthIndex(runs);
+        assertEquals(2, index.distinctCount());
+        assertTrue(index.compressionRatio() > 1000);
+    }
+
+    @Test
+    public void testEytzingerIndex() {
+        Random random = new Random(6);
+        for (int round = 0; round < 200; round++) {
+            int[] array = sortedArray(random, 1 + random.nextInt(300), 1 + random.nextInt(400));
+            EytzingerIndex index = new EytzingerIndex(array);
+            for (int key = -2; key < 402; key++) {
+                assertEquals(BinarySearch.binarySearchRecursive(array, key, 0, array.length - 1), index.indexOf(key));
+            }
+        }
+        try {
+            new EytzingerIndex(new int[]{3, 1});
+            fail("Unsorted array accepted");
+        } catch (IllegalArgumentException expected) {
+            // Unsorted input is rejected
+        }
+    }
+
+    @Test
+    public void testKarySearchIndex() {
+        Random random = new Random(8);
+        for (int round = 0; round < 100; round++) {
+            // Up to three internal layers of 17-way nodes
+            int[] array = sortedArray(random, 1 + random.nextInt(6000), 1 + random.nextInt(8000));
+            KarySearchIndex index = new KarySearchIndex(array);
+            for (int key = -2; key < 8002; key++) {
+                assertEquals(BinarySearch.binarySearchRecursive(array, key, 0, array.length - 1), index.indexOf(key));
+            }
+        }
+        int[] extremes = {Integer.MIN_VALUE, Integer.MIN_VALUE, 0, Integer.MAX_VALUE, Integer.MAX_VALUE};
+        KarySearchIndex index = new KarySearchIndex(extremes);
+        for (int key : new int[]{Integer.MIN_VALUE, 0, 1, Integer.MAX_VALUE}) {
+            assertEquals(BinarySearch.binarySearchRecursive(extremes, key, 0, extremes.length - 1), index.indexOf(key));
+        }
+        // The vector compares count like the scalar fallback
+        int[] node = new int[32];
+        for (int round = 0; round < 1000; round++) {
+            for (int i = 0; i < node.length; i++) {
+                node[i] = random.nextInt(64) - 32;
+            }
+            Arrays.sort(node, 0, 16);
+            Arrays.sort(node, 16, 32);
+            int target = random.nextInt(70) - 35;
+            for (int offset : new int[]{0, 16}) {
+                assertEquals(KarySearchIndex.countLessScalar(node, offset, target), KarySearchIndex.countLess(node, offset, target));
+            }
+        }
+        try {
+            new KarySearchIndex(new int[]{3, 1});
+            fail("Unsorted array accepted");
+        } catch (IllegalArgumentException expected) {
+            // Unsorted input is rejected
+        }
+    }
+
+    @Test
+    public void testPiecewiseLinearIndex() {
+        Random random = new Random(15);
+        for (int round = 0; round < 200; round++) {
+            int[] array = sortedArray(random, 1 + random.nextInt(3000), 1 + random.nextInt(5000));
+            PiecewiseLinearIndex index = new PiecewiseLinearIndex(array, random.nextInt(40));
+            for (int key = -2; key < 5002; key++) {
+                assertEquals(BinarySearch.binarySearchRecursive(array, key, 0, array.length - 1), index.indexOf(key));
+            }
+        }
+        int[] linear = new int[10_000];
+        for (int i = 0; i < linear.length; i++) {
+            linear[i] = 3 * i + 7;
+        }
+        PiecewiseLinearIndex index = new PiecewiseLinearIndex(linear);
+        assertFalse(index.isFallback());
+        assertEquals(1, index.segmentCount());
+        assertEquals(0, index.maxError());
+        int[] extremes = {Integer.MIN_VALUE, Integer.MIN_VALUE, 0, Integer.MAX_VALUE, Integer.MAX_VALUE};
+        index = new PiecewiseLinearIndex(extremes, 0);
+        for (int key : new int[]{Integer.MIN_VALUE, 0, 1, Integer.MAX_VALUE}) {
+            assertEquals(BinarySearch.binarySearchRecursive(extremes, key, 0, extremes.length - 1), index.indexOf(key));
+        }
+    }
+
+    @Test
+    public void testSearchAll() {
+        Random random = new Random(7);
+        for (int round = 0; round < 50; round++) {
+            int[] array = sortedArray(random, 1 + random.nextInt(500), 1 + random.nextInt(800));
+            int[] keys = new int[random.nextInt(100_000)];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = random.nextInt(820) - 10;
+            }
+            if (round % 2 == 0) {
+                Arrays.sort(keys);
+            }
+            int[] out = new int[keys.length];
+            BinarySearch.searchAll(array, keys, out);
+            for (int i = 0; i < keys.length; i++) {
+                assertEquals(BinarySearch.binarySearchRecursive(array, keys[i], 0, array.length - 1), out[i]);
+            }
+        }
+        int[] extremes = {Integer.MIN_VALUE, Integer.MIN_VALUE, 0, Integer.MAX_VALUE, Integer.MAX_VALUE};
+        int[] out = new int[3];
+        BinarySearch.searchAll(extremes, new int[]{Integer.MAX_VALUE, Integer.MIN_VALUE, 1}, out);
+        assertArrayEquals(new int[]{3, 0, -1}, out);
+    }
+
+    @Test
+    public void testLcpStringSearch() {
+        Random random = new Random(11);
+        for (int round = 0; round < 200; round++) {
+            // Short words over a tiny alphabet share prefixes, repeat, and are prefixes of each other
+            String[] words = new String[1 + random.nextInt(200)];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = randomWord(random);
+            }
+            Arrays.sort(words);
+            LcpStringIndex index = new LcpStringIndex(words);
+            for (int probe = 0; probe < 300; probe++) {
+                String key = randomWord(random);
+                int expected = BinarySearchStrings.binarySearchRecursive(words, key, 0, words.length - 1);
+                assertEquals(expected, BinarySearchStrings.binarySearchLcp(words, key, 0, words.length - 1));
+                assertEquals(expected, index.indexOf(key));
+            }
+        }
+        try {
+            new LcpStringIndex(new String[]{"b", "a"});
+            fail("Unsorted array accepted");
+        } catch (IllegalArgumentException expected) {
+            // Unsorted input is rejected
+        }
+    }
+
+    @Test
+    public void testFrontCodedDictionary() {
+        Random random = new Random(12);
+        String[] alphabet = {"a", "b", "\u00e9", "\u4e2d"};
+        for (int round = 0; round < 200; round++) {
+            String[] words = new String[1 + random.nextInt(300)];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = randomWord(random, alphabet);
+            }
+            Arrays.sort(words);
+            FrontCodedDictionary dictionary = new FrontCodedDictionary(words);
+            for (int i = 0; i < words.length; i++) {
+                assertEquals(words[i], dictionary.get(i));
+            }
+            for (int probe = 0; probe < 300; probe++) {
+                String key = randomWord(random, alphabet);
+                assertEquals(BinarySearchStrings.binarySearchRecursive(words, key, 0, words.length - 1), dictionary.indexOf(key));
+                String prefix = key.substring(0, random.nextInt(key.length() + 1));
+                int from = 0;
+                while (from < words.length && words[from].compareTo(prefix) < 0) {
+                    from++;
+                }
+                int to = from;
+                while (to < words.length && words[to].startsWith(prefix)) {
+                    to++;
+                }
+                assertArrayEquals(new int[]{from, to}, dictionary.prefixRange(prefix));
+            }
+        }
+        try {
+            // Sorted as UTF-16, but U+FFFD encodes below the surrogate pair in UTF-8
+            new FrontCodedDictionary(new String[]{"\ud83d\ude00", "\ufffd"});
+            fail("Array sorting differently as UTF-8 accepted");
+        } catch (IllegalArgumentException expected) {
+            // UTF-8 order is verified
+        }
+    }
+
+    @Test
+    public void testSortedStringTable() throws IOException {
+        Random random = new Random(13);
+        String[] alphabet = {"a", "b", "\u00e9", "\u4e2d"};
+        Path path = Files.createTempFile("table", ".sst");
+        try {
+            for (int round = 0; round < 50; round++) {
+                String[] words = new String[random.nextInt(300)];
+                for (int i = 0; i < words.length; i++) {
+                    words[i] = randomWord(random, alphabet);
+                }
+                words = Arrays.stream(words).sorted().distinct().toArray(String[]::new);
+                int interval = 1 + random.nextInt(20);
+                try (SortedStringTable.Writer writer = new SortedStringTable.Writer(path, interval)) {
+                    for (String word : words) {
+                        writer.add(word);
+                    }
+                }
+                try (SortedStringTable table = SortedStringTable.open(path)) {
+                    assertEquals(words.length, table.size());
+                    for (int i = 0; i < words.length; i++) {
+                        assertEquals(words[i], table.get(i));
+                    }
+                    for (int probe = 0; probe < 300; probe++) {
+                        String key = randomWord(random, alphabet);
+                        int expected = words.length == 0 ? -1 : BinarySearchStrings.binarySearchRecursive(words, key, 0, words.length - 1);
+                        assertEquals(expected, table.indexOf(key));
+                    }
+                }
+            }
+            SortedStringTable.Writer twice = new SortedStringTable.Writer(path, 4);
+            twice.add("a");
+            twice.close();
+            twice.close();
+            try (SortedStringTable table = SortedStringTable.open(path)) {
+                assertEquals(1, table.size());
+            }
+            try (SortedStringTable.Writer writer = new SortedStringTable.Writer(path, 4)) {
+                writer.add("b");
+                writer.add("a");
+                fail("Decreasing key accepted");
+            } catch (IllegalArgumentException expected) {
+                // Keys must be strictly increasing
+            }
+            // A writer that failed leaves no truncated table behind
+            assertFalse(Files.exists(path));
+            Files.write(path, new byte[64]);
+            try {
+                SortedStringTable.open(path).close();
+                fail("File without header opened");
+            } catch (IOException expected) {
+                // The header is validated
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testOffHeapSortedArray() throws IOException {
+        Random random = new Random(14);
+        Path path = Files.createTempFile("keys", ".bin");
+        try {
+            for (int round = 0; round < 100; round++) {
+                int[] array = sortedArray(random, 1 + random.nextInt(300), 1 + random.nextInt(400));
+                boolean wide = round % 2 == 0;
+                // Segments of 32 bytes put segment boundaries every 4 or 8 keys
+                OffHeapSortedArray allocated = OffHeapSortedArray.allocate(array.length, wide, 5);
+                ByteBuffer bytes = ByteBuffer.allocate(array.length * (wide ? 8 : 4)).order(ByteOrder.LITTLE_ENDIAN);
+                for (int i = 0; i < array.length; i++) {
+                    allocated.set(i, array[i]);
+                    if (wide) {
+                        bytes.putLong(array[i]);
+                    } else {
+                        bytes.putInt(array[i]);
+                    }
+                }
+                Files.write(path, bytes.array());
+                try (OffHeapSortedArray mapped = OffHeapSortedArray.map(path, ByteOrder.LITTLE_ENDIAN, wide, 5)) {
+                    assertEquals(array.length, mapped.length());
+                    int low = random.nextInt(array.length);
+                    int high = low - 1 + random.nextInt(array.length - low + 1);
+                    for (int key = -2; key < 402; key++) {
+                        int[] range = BinarySearchAllIndices.equalRange(array, key, low, high);
+                        for (OffHeapSortedArray keys : new OffHeapSortedArray[]{allocated, mapped}) {
+                            assertEquals(BinarySearch.binarySearchRecursive(array, key, 0, array.length - 1),
+                                    keys.binarySearch(key, 0, keys.length() - 1));
+                            assertArrayEquals(new long[]{range[0], range[1]}, keys.equalRange(key, low, high));
+                            assertEquals(range[1] - range[0], keys.countOccurrences(key, low, high));
+                        }
+                    }
+                }
+            }
+        } finally {
+            Files.delete(path);
+        }
+        OffHeapSortedArray ints = OffHeapSortedArray.allocateInts(1);
+        assertEquals(-1, ints.binarySearch(1L << 32, 0, 0));
+        try {
+            ints.set(0, 1L << 32);
+            fail("Long value stored as an int");
+        } catch (IllegalArgumentException expected) {
+            // Int keys must fit in an int
+        }
+    }
+
+    @Test
+    public void testConcurrentSortedMultiset() throws InterruptedException {
+        Random random = new Random(16);
+        try (ConcurrentSortedMultiset multiset = new ConcurrentSortedMultiset(8)) {
+            Map<Integer, Integer> expected = new TreeMap<>();
+            for (int step = 0; step < 20_000; step++) {
+                int value = random.nextInt(200) - 100;
+                if (random.nextInt(3) == 0) {
+                    boolean present = expected.containsKey(value);
+                    assertEquals(present, multiset.remove(value));
+                    if (present) {
+                        expected.merge(value, -1, Integer::sum);
+                        expected.remove(value, 0);
+                    }
+                } else {
+                    multiset.add(value);
+                    expected.merge(value, 1, Integer::sum);
+                }
+                if (step % 1000 == 999) {
+                    ConcurrentSortedMultiset.Snapshot snapshot = multiset.snapshot();
+                    int[] array = expected.entrySet().stream()
+                            .flatMapToInt(e -> IntStream.generate(e::getKey).limit(e.getValue())).toArray();
+                    assertArrayEquals(array, snapshot.toArray());
+                    assertEquals(array.length, snapshot.size());
+                    for (int key = -102; key < 102; key++) {
+                        int[] range = BinarySearchAllIndices.equalRange(array, key, 0, array.length - 1);
+                        assertArrayEquals(new long[]{range[0], range[1]}, snapshot.equalRange(key));
+                        assertEquals(range[1] - range[0], snapshot.count(key));
+                        assertEquals(BinarySearch.binarySearchRecursive(array, key, 0, array.length - 1), snapshot.indexOf(key));
+                    }
+                    assertTrue(snapshot.runCount() <= ConcurrentSortedMultiset.MAX_RUNS + 1);
+                }
+            }
+            multiset.compact();
+            assertTrue(multiset.snapshot().runCount() <= 2);
+        }
+
+        // Snapshots seen by a reader never lose elements that only ever get added
+        try (ConcurrentSortedMultiset multiset = new ConcurrentSortedMultiset(16)) {
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    multiset.add(i % 100);
+                }
+            });
+            writer.start();
+            long previous = 0;
+            while (writer.isAlive()) {
+                ConcurrentSortedMultiset.Snapshot snapshot = multiset.snapshot();
+                long total = 0;
+                for (int value = 0; value < 100; value++) {
+                    total += snapshot.count(value);
+                }
+                assertEquals(snapshot.size(), total);
+                assertTrue(total >= previous);
+                previous = total;
+            }
+            writer.join();
+            assertEquals(200, multiset.count(42));
+        }
+    }
+
+    @Test
+    public void testSearchMetrics() {
+        int[] array = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+        Metrics.Snapshot before = Metrics.SEARCH.snapshot();
+        BinarySearch.binarySearchRecursive(array, 7, 0, array.length - 1);
+        BinarySearchAllIndices.countOccurrences(array, 11, 0, array.length - 1);
+        // Rejected searches are recorded as errors
+        assertThrows(IllegalArgumentException.class, () -> BinarySearch.binarySearchRecursive(null, 7, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> BinarySearchAllIndices.equalRange(new int[0], 7, 0, 0));
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> BinarySearchStrings.binarySearchLcp(new String[] {"a"}, "b", 0, 5));
+        Metrics.Snapshot after = Metrics.SEARCH.snapshot();
+        assertEquals("search", after.name());
+        assertEquals(before.count() + 5, after.count());
+        assertEquals(before.errors() + 3, after.errors());
+        assertEquals(after.timed(), Arrays.stream(after.histogram()).sum());
+        assertTrue(after.totalNanos() >= before.totalNanos());
+
+        // Single searches are counted every time but only timed when sampled
+        for (int i = 0; i < 100 * Metrics.SAMPLE_PERIOD; i++) {
+            BinarySearch.binarySearchRecursive(array, i % 12, 0, array.length - 1);
+        }
+        Metrics.Snapshot sampled = Metrics.SEARCH.snapshot();
+        long calls = sampled.count() - after.count();
+        long timed = sampled.timed() - after.timed();
+        assertEquals(100 * Metrics.SAMPLE_PERIOD, calls);
+        assertTrue(timed + " of " + calls + " timed", timed > 0 && timed < calls / 4);
+    }
+
+    @Test
+    public void testMetricsHistogram() {
+        assertEquals(0, Metrics.bucket(0));
+        assertEquals(0, Metrics.bucket(1));
+        assertEquals(1, Metrics.bucket(2));
+        assertEquals(9, Metrics.bucket(1023));
+        assertEquals(10, Metrics.bucket(1024));
+        assertEquals(62, Metrics.bucket(Long.MAX_VALUE));
+
+        long[] histogram = new long[Metrics.BUCKETS];
+        histogram[3] = 60;
+        histogram[10] = 40;
+        Metrics.Snapshot snapshot = new Metrics.Snapshot("test", 400, 0, 100, 100_000, histogram);
+        assertEquals(1000.0, snapshot.meanNanos(), 0);
+        assertEquals(15, snapshot.percentileNanos(0));
+        assertEquals(15, snapshot.percentileNanos(60));
+        assertEquals(2047, snapshot.percentileNanos(61));
+        assertEquals(2047, snapshot.percentileNanos(100));
+        assertEquals(0, new Metrics.Snapshot("empty", 0, 0, 0, 0, new long[Metrics.BUCKETS]).percentileNanos(50));
+        assertThrows(IllegalArgumentException.class, () -> snapshot.percentileNanos(101));
+        assertThrows(IllegalArgumentException.class, () -> snapshot.percentileNanos(Double.NaN));
+    }
+
+    @Test
+    public void testSearchEvents() throws IOException {
+        int[] array = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+        String[] words = {"apple", "banana", "cherry"};
+        Path path = Files.createTempFile("search", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("lab12.Search");
+            recording.start();
+            assertTrue(Metrics.isRecording());
+            Metrics.Snapshot before = Metrics.SEARCH.snapshot();
+            BinarySearch.binarySearchRecursive(array, 7, 0, array.length - 1);
+            BinarySearch.binarySearchRecursive(array, 11, 0, array.length - 1);
+            BinarySearchStrings.binarySearchLcp(words, "cherry", 0, words.length - 1);
+            BinarySearch.searchAll(array, new int[]{3, 0, 10}, new int[3]);
+            assertThrows(IllegalArgumentException.class, () -> BinarySearch.searchAll(array, new int[2], new int[1]));
+            Metrics.Snapshot after = Metrics.SEARCH.snapshot();
+            recording.stop();
+            assertFalse(Metrics.isRecording());
+            // Every call is timed while a recording is running
+            assertEquals(5, after.count() - before.count());
+            assertEquals(5, after.timed() - before.timed());
+            recording.dump(path);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(path);
+            assertEquals(5, events.size());
+            RecordedEvent found = events.get(0);
+            assertEquals("BinarySearch.binarySearchRecursive", found.getString("method"));
+            assertEquals(10, found.getInt("size"));
+            assertEquals(1, found.getInt("keys"));
+            // 5, 8, 6 and 7 are compared
+            assertEquals(4, found.getLong("probes"));
+            assertEquals(1, found.getInt("found"));
+            assertEquals(4, events.get(1).getLong("probes"));
+            assertEquals(0, events.get(1).getInt("found"));
+            assertEquals("BinarySearchStrings.binarySearchLcp", events.get(2).getString("method"));
+            assertTrue(events.get(2).getLong("probes") > 0);
+            assertEquals("BinarySearch.searchAll", events.get(3).getString("method"));
+            assertEquals(3, events.get(3).getInt("keys"));
+            assertEquals(2, events.get(3).getInt("found"));
+            assertNull(events.get(3).getString("error"));
+            assertEquals("BinarySearch.searchAll", events.get(4).getString("method"));
+            assertEquals(2, events.get(4).getInt("keys"));
+            assertEquals("IllegalArgumentException", events.get(4).getString("error"));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    private static String randomWord(Random random) {
+        return randomWord(random, new String[]{"a", "b", "c"});
+    }
+
+    private static String randomWord(Random random, String[] alphabet) {
+        StringBuilder word = new StringBuilder("https://");
+        for (int length = random.nextInt(6); length > 0; length--) {
+            word.append(alphabet[random.nextInt(alphabet.length)]);
+        }
+        return word.toString();
+    }
+
+    /**
+     * Creates a sorted array of the given length whose values are drawn from [0, range),
+     * so that small ranges produce many duplicates.
+     */
+    static int[] sortedArray(Random random, int length, int range) {
+        int[] array = new int[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = random.nextInt(range);
+        }
+        Arrays.sort(array);
+        return array;
+    }
+
 }
\ No newline at end of file
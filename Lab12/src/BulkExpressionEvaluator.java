@@ -0,0 +1,385 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The BulkExpressionEvaluator class evaluates files of newline-delimited arithmetic expressions
+ * and writes one result line per input line, in input order.
+ *
+ * Specifications:
+ *
+ * - The input file is memory-mapped one window at a time. Each window ends at a line boundary and
+ *   is split into line-aligned chunks that are evaluated in parallel by a fixed pool of workers.
+ *
+ * - Every line is evaluated straight from the mapped bytes through a reusable `CharSequence` view,
+ *   using the same single-pass evaluator as `RecursiveParser.evaluate`, so no `String` is created
+ *   per line. Bytes are read as ISO-8859-1 characters; any non-ASCII byte is reported as an invalid
+ *   character, as it would be for the equivalent string.
+ *
+ * - A trailing carriage return is removed from every line, and a final newline at the end of the
+ *   file does not start another line.
+ *
+ * - For every line the output holds either the result, formatted like `Double.toString`, or
+ *   `ERROR ` followed by the message of the exception the evaluator threw, such as an invalid
+ *   character, unbalanced operators and operands, or a division by zero.
+ *
+ * - At most `CHUNKS_PER_WORKER` chunks per worker are evaluated or waiting to be written at a time,
+ *   and their results are written in input order as they complete. A chunk stops once its results
+ *   reach `OUTPUT_LIMIT` bytes, and the rest of its lines are evaluated as a new chunk after its
+ *   results are written. The heap used for results is therefore bounded by the number of workers,
+ *   whatever the size of the input and however much longer the results are than their lines.
+ *
+ * Time Complexity:
+ * - O(n / p), where n is the size of the input and p the number of workers.
+ *
+ * Space Complexity:
+ * - O(p * b) for p workers and an output limit of b bytes per chunk, besides the mapped window.
+ */
+public final class BulkExpressionEvaluator {
+
+    /**
+     * The number of input bytes mapped and evaluated at a time.
+     */
+    private static final int WINDOW_SIZE = 64 << 20;
+
+    /**
+     * The number of chunks per worker, which evens out chunks that take longer than others.
+     */
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    /**
+     * The number of result bytes after which a chunk stops, exceeded by at most one result line.
+     */
+    static final int OUTPUT_LIMIT = 1 << 20;
+
+    private static final byte[] ERROR_PREFIX = "ERROR ".getBytes(StandardCharsets.US_ASCII);
+
+    private BulkExpressionEvaluator() {
+    }
+
+    /**
+     * Evaluates every line of the input file using one worker per available processor.
+     *
+     * @param input The file of newline-delimited expressions.
+     * @param output The file receiving one result line per input line. It is created or truncated.
+     * @return A summary of the number of lines and errors.
+     * @throws IOException If the input cannot be read or the output cannot be written.
+     */
+    public static Summary evaluateFile(Path input, Path output) throws IOException {
+        return evaluateFile(input, output, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Evaluates every line of the input file with the given number of workers.
+     *
+     * @param input The file of newline-delimited expressions.
+     * @param output The file receiving one result line per input line. It is created or truncated.
+     * @param workers The number of threads evaluating chunks in parallel.
+     * @return A summary of the number of lines and errors.
+     * @throws IllegalArgumentException If the number of workers is not positive.
+     * @throws IOException If the input cannot be read or the output cannot be written.
+     */
+    public static Summary evaluateFile(Path input, Path output, int workers) throws IOException {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("Number of workers must be positive");
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-expression-evaluator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long position = 0;
+            long lines = 0;
+            long errors = 0;
+
+            int maxPending = workers * CHUNKS_PER_WORKER;
+            Deque<Future<Chunk>> pending = new ArrayDeque<>(maxPending);
+
+            while (position < size) {
+                MappedByteBuffer window = mapWindow(in, position, size);
+                int length = window.limit();
+                int chunkSize = Math.max(1, length / maxPending);
+                int start = 0;
+                while (start < length || !pending.isEmpty()) {
+                    while (start < length && pending.size() < maxPending) {
+                        int end = start + chunkSize >= length ? length : nextLineStart(window, start + chunkSize, length);
+                        pending.addLast(executor.submit(new Chunk(window, start, end)));
+                        start = end;
+                    }
+                    // Write the chunks in input order as they complete
+                    Chunk chunk = pending.removeFirst().get();
+                    out.write(ByteBuffer.wrap(chunk.results.bytes, 0, chunk.results.size));
+                    lines += chunk.lines;
+                    errors += chunk.errors;
+                    if (chunk.stop < chunk.end) {
+                        // The output limit was reached, the rest goes before the chunks queued after it
+                        pending.addFirst(executor.submit(new Chunk(window, chunk.stop, chunk.end)));
+                    }
+                }
+                position += length;
+            }
+            return new Summary(lines, errors);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while evaluating " + input, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Evaluation failed for " + input, cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Maps the next window of the input, shortened to end right after its last newline. A window
+     * without any newline is grown until it holds a complete line.
+     *
+     * @param in The input channel.
+     * @param position The offset of the first byte of the window.
+     * @param size The size of the input file.
+     * @return The mapped window, whose limit is the number of bytes to evaluate.
+     * @throws IOException If the input cannot be mapped.
+     */
+    private static MappedByteBuffer mapWindow(FileChannel in, long position, long size) throws IOException {
+        long windowSize = WINDOW_SIZE;
+        while (true) {
+            int length = (int) Math.min(windowSize, size - position);
+            MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, position, length);
+            if (position + length == size) {
+                return window;
+            }
+            for (int i = length - 1; i >= 0; i--) {
+                if (window.get(i) == '\n') {
+                    window.limit(i + 1);
+                    return window;
+                }
+            }
+            if (windowSize >= Integer.MAX_VALUE) {
+                throw new IOException("Line longer than " + Integer.MAX_VALUE + " bytes at offset " + position);
+            }
+            windowSize = Math.min(windowSize * 2, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Finds the start of the first line beginning at or after the given offset.
+     *
+     * @param window The mapped window.
+     * @param from The offset to start searching at.
+     * @param limit The end of the window.
+     * @return The offset after the next newline, or the limit if there is none.
+     */
+    private static int nextLineStart(ByteBuffer window, int from, int limit) {
+        for (int i = from - 1; i < limit; i++) {
+            if (window.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * The main method evaluates the file named by the first argument and writes the results to the
+     * file named by the second argument.
+     *
+     * @param args The input and output file names, optionally followed by the number of workers.
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: BulkExpressionEvaluator <input> <output> [workers]");
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            Summary summary = args.length > 2
+                    ? evaluateFile(Paths.get(args[0]), Paths.get(args[1]), Integer.parseInt(args[2]))
+                    : evaluateFile(Paths.get(args[0]), Paths.get(args[1]));
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.println("Evaluated " + summary.lines() + " lines (" + summary.errors() + " errors) in " + millis + " ms");
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * The number of lines evaluated and how many of them failed.
+     */
+    public static final class Summary {
+        private final long lines;
+        private final long errors;
+
+        Summary(long lines, long errors) {
+            this.lines = lines;
+            this.errors = errors;
+        }
+
+        /**
+         * Returns the number of lines evaluated.
+         *
+         * @return The line count.
+         */
+        public long lines() {
+            return lines;
+        }
+
+        /**
+         * Returns the number of lines whose evaluation failed.
+         *
+         * @return The error count.
+         */
+        public long errors() {
+            return errors;
+        }
+    }
+
+    /**
+     * Evaluates the lines of one chunk of a window into a buffer of result lines, stopping early
+     * once the buffer reaches `OUTPUT_LIMIT` bytes.
+     */
+    private static final class Chunk implements Callable<Chunk> {
+        private final ByteBuffer window;
+        private final int start;
+        private final int end;
+        private final ByteOutput results;
+        private int stop;
+        private long lines;
+        private long errors;
+
+        Chunk(ByteBuffer window, int start, int end) {
+            this.window = window;
+            this.start = start;
+            this.end = end;
+            this.results = new ByteOutput(Math.min(end - start + 16, OUTPUT_LIMIT));
+        }
+
+        @Override
+        public Chunk call() {
+            ByteSequence line = new ByteSequence(window);
+            StringBuilder number = new StringBuilder(32);
+            int lineStart = start;
+            while (lineStart < end && results.size < OUTPUT_LIMIT) {
+                int lineEnd = lineStart;
+                while (lineEnd < end && window.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                int contentEnd = lineEnd;
+                if (contentEnd > lineStart && window.get(contentEnd - 1) == '\r') {
+                    contentEnd--;
+                }
+                line.reset(lineStart, contentEnd - lineStart);
+                try {
+                    number.setLength(0);
+                    number.append(RecursiveParser.evaluate(line));
+                    results.writeAscii(number);
+                } catch (IllegalArgumentException | ArithmeticException e) {
+                    results.write(ERROR_PREFIX);
+                    results.write(String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8));
+                    errors++;
+                }
+                results.write('\n');
+                lines++;
+                lineStart = lineEnd + 1;
+            }
+            stop = Math.min(lineStart, end);
+            return this;
+        }
+    }
+
+    /**
+     * A reusable view of a range of bytes as ISO-8859-1 characters.
+     */
+    private static final class ByteSequence implements CharSequence {
+        private final ByteBuffer bytes;
+        private int offset;
+        private int length;
+
+        ByteSequence(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        void reset(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes.get(offset + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            byte[] copy = new byte[length];
+            for (int i = 0; i < length; i++) {
+                copy[i] = bytes.get(offset + i);
+            }
+            return new String(copy, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    /**
+     * A growable byte array holding the result lines of a chunk.
+     */
+    private static final class ByteOutput {
+        private byte[] bytes;
+        private int size;
+
+        ByteOutput(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        void write(int b) {
+            ensureCapacity(1);
+            bytes[size++] = (byte) b;
+        }
+
+        void write(byte[] data) {
+            ensureCapacity(data.length);
+            System.arraycopy(data, 0, bytes, size, data.length);
+            size += data.length;
+        }
+
+        void writeAscii(CharSequence text) {
+            ensureCapacity(text.length());
+            for (int i = 0; i < text.length(); i++) {
+                bytes[size++] = (byte) text.charAt(i);
+            }
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
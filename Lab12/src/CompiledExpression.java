@@ -0,0 +1,520 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The CompiledExpression class represents an arithmetic expression that has been parsed once
+ * into an immutable evaluation tree, so that it can be evaluated any number of times without
+ * scanning the original string again.
+ *
+ * Specifications:
+ *
+ * - Instances are created by `RecursiveParser.compile`, which validates the expression with
+ *   exactly the same rules as `RecursiveParser.evaluateExpression`.
+ *
+ * - The tree consists of constant leaves, variable leaves and binary operator nodes. Subtrees whose
+ *   operands are both constants are folded into a single constant when the tree is built.
+ *
+ * - Folding applies the operators in the same order as the original evaluator, so a division by
+ *   a constant zero is reported with an `ArithmeticException` while compiling, at the same point
+ *   where evaluating the string directly would have failed.
+ *
+ * - Variables are named by identifiers such as `price` or `qty_2` and are numbered in the order in
+ *   which they first appear in the expression. Values are supplied either by that position or by
+ *   name when the expression is evaluated.
+ *
+ * - The `evaluateBatch` methods evaluate the expression over whole columns of values. The tree is
+ *   walked once per block of rows and every node processes its block in a tight loop over
+ *   primitive arrays, which the JIT compiler can vectorize. Large batches can optionally be split
+ *   across cores with fork/join.
+ *
+ * - The `withGeneratedCode` method returns an equivalent expression whose scalar evaluations run
+ *   in a class generated at runtime by `ExpressionClassGenerator`, removing the virtual call per
+ *   node. The generated class is unloaded together with the expression that holds it.
+ *
+ * - Instances are immutable and can be shared freely between threads.
+ *
+ * Time Complexity:
+ * - O(m) per evaluation, where m is the number of nodes left after constant folding.
+ * - O(m * r) per batch of r rows.
+ *
+ * Space Complexity:
+ * - O(m) for the nodes of the tree, plus O(h) blocks of rows per batch worker, where h is the
+ *   height of the tree.
+ */
+public final class CompiledExpression {
+
+    /**
+     * The number of rows processed by every node before moving on to the next block.
+     */
+    private static final int BLOCK_SIZE = 1024;
+
+    /**
+     * The number of rows below which a parallel batch is no longer split.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private static final double[] NO_VALUES = new double[0];
+
+    private final String source;
+    private final Node root;
+    private final String[] variables;
+    private final Kernel kernel;
+
+    /**
+     * Creates a compiled expression from the given source text and evaluation tree.
+     *
+     * @param source The original expression text.
+     * @param root The root node of the evaluation tree.
+     * @param variables The names of the variables, indexed by their position.
+     */
+    CompiledExpression(String source, Node root, String[] variables) {
+        this(source, root, variables, null);
+    }
+
+    private CompiledExpression(String source, Node root, String[] variables, Kernel kernel) {
+        this.source = source;
+        this.root = root;
+        this.variables = variables;
+        this.kernel = kernel;
+    }
+
+    /**
+     * Evaluates the compiled expression, which must not contain any variables.
+     *
+     * @return The result of the evaluation as a double.
+     * @throws IllegalArgumentException If the expression contains variables.
+     * @throws ArithmeticException If a division by zero occurs.
+     */
+    public double evaluate() {
+        return evaluate(NO_VALUES);
+    }
+
+    /**
+     * Evaluates the compiled expression with the given variable values.
+     *
+     * @param values The values of the variables, in the order returned by `variables`.
+     * @return The result of the evaluation as a double.
+     * @throws IllegalArgumentException If the number of values does not match the number of variables.
+     * @throws ArithmeticException If a division by zero occurs.
+     */
+    public double evaluate(double... values) {
+        if (values.length != variables.length) {
+            if (values.length < variables.length) {
+                throw new IllegalArgumentException("Missing value for variable: " + variables[values.length]);
+            }
+            throw new IllegalArgumentException("Expected " + variables.length + " variable values but got " + values.length);
+        }
+        return kernel != null ? kernel.evaluate(values) : root.evaluate(values);
+    }
+
+    /**
+     * Evaluates the compiled expression with the variable values looked up by name.
+     *
+     * @param values The values of the variables keyed by name.
+     * @return The result of the evaluation as a double.
+     * @throws IllegalArgumentException If a variable has no value.
+     * @throws ArithmeticException If a division by zero occurs.
+     */
+    public double evaluate(Map<String, Double> values) {
+        double[] bound = new double[variables.length];
+        for (int i = 0; i < variables.length; i++) {
+            Double value = values.get(variables[i]);
+            if (value == null) {
+                throw new IllegalArgumentException("Missing value for variable: " + variables[i]);
+            }
+            bound[i] = value;
+        }
+        return kernel != null ? kernel.evaluate(bound) : root.evaluate(bound);
+    }
+
+    /**
+     * Evaluates the compiled expression for every row of the given columns on the calling thread.
+     *
+     * @param columns One column of values per variable, in the order returned by `variables`.
+     * @param out The array receiving one result per row. Its length determines the number of rows.
+     *            It must not be one of the columns.
+     * @throws IllegalArgumentException If a column is missing or shorter than the output.
+     * @throws ArithmeticException If a division by zero occurs in any row.
+     */
+    public void evaluateBatch(double[][] columns, double[] out) {
+        evaluateBatch(columns, out, false);
+    }
+
+    /**
+     * Evaluates the compiled expression for every row of the given columns.
+     *
+     * @param columns One column of values per variable, in the order returned by `variables`.
+     * @param out The array receiving one result per row. Its length determines the number of rows.
+     * @param parallel Whether large batches should be split across the common fork/join pool.
+     * @throws IllegalArgumentException If a column is missing or shorter than the output.
+     * @throws ArithmeticException If a division by zero occurs in any row.
+     */
+    public void evaluateBatch(double[][] columns, double[] out, boolean parallel) {
+        if (columns.length != variables.length) {
+            throw new IllegalArgumentException("Expected " + variables.length + " columns but got " + columns.length);
+        }
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] == null || columns[i].length < out.length) {
+                throw new IllegalArgumentException("Column for variable " + variables[i] + " is missing or too short");
+            }
+        }
+        if (parallel && out.length > PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(new BatchTask(columns, out, 0, out.length));
+        } else {
+            evaluateRows(columns, out, 0, out.length);
+        }
+    }
+
+    /**
+     * Evaluates the compiled expression for every row of the given columns, looked up by name.
+     *
+     * @param columns The column of values of every variable keyed by name.
+     * @param out The array receiving one result per row. Its length determines the number of rows.
+     * @param parallel Whether large batches should be split across the common fork/join pool.
+     * @throws IllegalArgumentException If a column is missing or shorter than the output.
+     * @throws ArithmeticException If a division by zero occurs in any row.
+     */
+    public void evaluateBatch(Map<String, double[]> columns, double[] out, boolean parallel) {
+        double[][] bound = new double[variables.length][];
+        for (int i = 0; i < variables.length; i++) {
+            bound[i] = columns.get(variables[i]);
+        }
+        evaluateBatch(bound, out, parallel);
+    }
+
+    /**
+     * Returns an equivalent expression whose scalar evaluations run in a class generated for this
+     * expression. Constant expressions and expressions too large for a method that the JIT compiler
+     * compiles are returned unchanged, as is an expression that already runs generated code.
+     *
+     * @return The expression backed by generated code, or this expression.
+     */
+    public CompiledExpression withGeneratedCode() {
+        if (kernel != null || root instanceof Constant) {
+            return this;
+        }
+        Kernel generated = ExpressionClassGenerator.generate(root);
+        return generated != null ? new CompiledExpression(source, root, variables, generated) : this;
+    }
+
+    /**
+     * Checks whether scalar evaluations of this expression run in a generated class.
+     *
+     * @return True if the expression is backed by generated code.
+     */
+    public boolean hasGeneratedCode() {
+        return kernel != null;
+    }
+
+    /**
+     * Returns the names of the variables in the order in which they first appear in the expression.
+     *
+     * @return An unmodifiable list of variable names.
+     */
+    public List<String> variables() {
+        return Collections.unmodifiableList(Arrays.asList(variables));
+    }
+
+    /**
+     * Checks whether the whole expression has been folded into a single constant.
+     *
+     * @return True if the expression evaluates to a constant without performing any operation.
+     */
+    public boolean isConstant() {
+        return root instanceof Constant;
+    }
+
+    /**
+     * Returns the original expression text this instance was compiled from.
+     *
+     * @return The source expression.
+     */
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    /**
+     * Evaluates a range of rows block by block on the calling thread.
+     *
+     * @param columns The validated columns of variable values.
+     * @param out The array receiving the results.
+     * @param from The first row to evaluate.
+     * @param to The row after the last row to evaluate.
+     */
+    private void evaluateRows(double[][] columns, double[] out, int from, int to) {
+        double[][] scratch = new double[root.scratchDepth][Math.min(BLOCK_SIZE, to - from)];
+        for (int start = from; start < to; start += BLOCK_SIZE) {
+            int length = Math.min(BLOCK_SIZE, to - start);
+            root.evaluate(columns, start, length, out, start, scratch, 0);
+        }
+    }
+
+    /**
+     * Creates a node applying the given operator to two operands, folding it into a constant
+     * when both operands are constants.
+     *
+     * @param operator The operator to be applied.
+     * @param left The left operand.
+     * @param right The right operand.
+     * @return The folded constant or a new operator node.
+     * @throws ArithmeticException If both operands are constants and the divisor is zero.
+     */
+    static Node binary(char operator, Node left, Node right) {
+        if (left instanceof Constant && right instanceof Constant) {
+            return new Constant(RecursiveParser.apply(operator, ((Constant) left).value, ((Constant) right).value));
+        }
+        return new Binary(operator, left, right);
+    }
+
+    /**
+     * Applies the given operator element-wise, storing the results in the target array.
+     *
+     * @param operator The operator to be applied.
+     * @param target The array holding the left operands and receiving the results.
+     * @param offset The index of the first element in the target array.
+     * @param operand The array holding the right operands.
+     * @param operandOffset The index of the first element in the operand array.
+     * @param length The number of elements to process.
+     * @throws ArithmeticException If the operator is a division and a right operand is zero.
+     */
+    private static void combine(char operator, double[] target, int offset, double[] operand, int operandOffset, int length) {
+        switch (operator) {
+            case '+':
+                for (int i = 0; i < length; i++) {
+                    target[offset + i] += operand[operandOffset + i];
+                }
+                break;
+            case '-':
+                for (int i = 0; i < length; i++) {
+                    target[offset + i] -= operand[operandOffset + i];
+                }
+                break;
+            case '*':
+                for (int i = 0; i < length; i++) {
+                    target[offset + i] *= operand[operandOffset + i];
+                }
+                break;
+            case '/':
+                // Check the divisors in a separate pass so that the division loop stays branch-free
+                for (int i = 0; i < length; i++) {
+                    if (operand[operandOffset + i] == 0) {
+                        throw new ArithmeticException("Division by zero");
+                    }
+                }
+                for (int i = 0; i < length; i++) {
+                    target[offset + i] /= operand[operandOffset + i];
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operator: " + operator);
+        }
+    }
+
+    /**
+     * Applies the given operator element-wise with a constant right operand.
+     *
+     * @param operator The operator to be applied.
+     * @param target The array holding the left operands and receiving the results.
+     * @param offset The index of the first element in the target array.
+     * @param b The constant right operand.
+     * @param length The number of elements to process.
+     * @throws ArithmeticException If the operator is a division and the constant is zero.
+     */
+    private static void combine(char operator, double[] target, int offset, double b, int length) {
+        switch (operator) {
+            case '+':
+                for (int i = 0; i < length; i++) {
+                    target[offset + i] += b;
+                }
+                break;
+            case '-':
+                for (int i = 0; i < length; i++) {
+                    target[offset + i] -= b;
+                }
+                break;
+            case '*':
+                for (int i = 0; i < length; i++) {
+                    target[offset + i] *= b;
+                }
+                break;
+            case '/':
+                if (b == 0) {
+                    throw new ArithmeticException("Division by zero");
+                }
+                for (int i = 0; i < length; i++) {
+                    target[offset + i] /= b;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operator: " + operator);
+        }
+    }
+
+    /**
+     * The interface implemented by the classes generated by `ExpressionClassGenerator`.
+     */
+    interface Kernel {
+
+        /**
+         * Evaluates the expression the class was generated for.
+         *
+         * @param values The values of the variables.
+         * @return The result of the evaluation.
+         * @throws ArithmeticException If a division by zero occurs.
+         */
+        double evaluate(double[] values);
+    }
+
+    /**
+     * A node of the evaluation tree.
+     */
+    abstract static class Node {
+
+        /**
+         * The number of scratch blocks needed to evaluate this subtree over columns.
+         */
+        final int scratchDepth;
+
+        Node(int scratchDepth) {
+            this.scratchDepth = scratchDepth;
+        }
+
+        /**
+         * Evaluates the subtree rooted at this node.
+         *
+         * @param values The values of the variables.
+         * @return The value of the subtree.
+         * @throws ArithmeticException If a division by zero occurs.
+         */
+        abstract double evaluate(double[] values);
+
+        /**
+         * Evaluates the subtree rooted at this node for a block of rows.
+         *
+         * @param columns The columns of variable values.
+         * @param row The first row of the block.
+         * @param length The number of rows in the block.
+         * @param target The array receiving the results.
+         * @param offset The index in the target array receiving the result of the first row.
+         * @param scratch The scratch blocks available to this evaluation.
+         * @param depth The index of the first scratch block this subtree may use.
+         * @throws ArithmeticException If a division by zero occurs.
+         */
+        abstract void evaluate(double[][] columns, int row, int length, double[] target, int offset, double[][] scratch, int depth);
+    }
+
+    /**
+     * A leaf holding a numeric literal or a folded subtree.
+     */
+    static final class Constant extends Node {
+        final double value;
+
+        Constant(double value) {
+            super(0);
+            this.value = value;
+        }
+
+        @Override
+        double evaluate(double[] values) {
+            return value;
+        }
+
+        @Override
+        void evaluate(double[][] columns, int row, int length, double[] target, int offset, double[][] scratch, int depth) {
+            Arrays.fill(target, offset, offset + length, value);
+        }
+    }
+
+    /**
+     * A leaf referring to a variable by its position.
+     */
+    static final class Variable extends Node {
+        final int slot;
+
+        Variable(int slot) {
+            super(0);
+            this.slot = slot;
+        }
+
+        @Override
+        double evaluate(double[] values) {
+            return values[slot];
+        }
+
+        @Override
+        void evaluate(double[][] columns, int row, int length, double[] target, int offset, double[][] scratch, int depth) {
+            System.arraycopy(columns[slot], row, target, offset, length);
+        }
+    }
+
+    /**
+     * A node applying one of the operators +, -, * or / to its two children.
+     */
+    static final class Binary extends Node {
+        final char operator;
+        final Node left;
+        final Node right;
+
+        Binary(char operator, Node left, Node right) {
+            // Leaves on the right are read in place, any other right subtree needs its own block
+            super(Math.max(left.scratchDepth, right instanceof Binary ? right.scratchDepth + 1 : 0));
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        double evaluate(double[] values) {
+            return RecursiveParser.apply(operator, left.evaluate(values), right.evaluate(values));
+        }
+
+        @Override
+        void evaluate(double[][] columns, int row, int length, double[] target, int offset, double[][] scratch, int depth) {
+            left.evaluate(columns, row, length, target, offset, scratch, depth);
+            if (right instanceof Constant) {
+                combine(operator, target, offset, ((Constant) right).value, length);
+            } else if (right instanceof Variable) {
+                combine(operator, target, offset, columns[((Variable) right).slot], row, length);
+            } else {
+                double[] block = scratch[depth];
+                right.evaluate(columns, row, length, block, 0, scratch, depth + 1);
+                combine(operator, target, offset, block, 0, length);
+            }
+        }
+    }
+
+    /**
+     * Evaluates a range of rows, splitting it in halves until it is small enough.
+     */
+    private final class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[][] columns;
+        private final double[] out;
+        private final int from;
+        private final int to;
+
+        BatchTask(double[][] columns, double[] out, int from, int to) {
+            this.columns = columns;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                evaluateRows(columns, out, from, to);
+                return;
+            }
+            // Split on a block boundary so that every block is evaluated by a single task
+            int mid = from + ((to - from) / 2 / BLOCK_SIZE) * BLOCK_SIZE;
+            invokeAll(new BatchTask(columns, out, from, mid), new BatchTask(columns, out, mid, to));
+        }
+    }
+}
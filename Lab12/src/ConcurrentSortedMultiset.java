@@ -0,0 +1,565 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The ConcurrentSortedMultiset class is a sorted multiset of integers that accepts concurrent
+ * inserts and deletes while readers search consistent snapshots without ever blocking.
+ *
+ * Specifications:
+ *
+ * - The contents are kept as a log-structured merge tree. Every update goes to a small write
+ *   buffer, which is copied on write so that the previous version stays intact. A full buffer is
+ *   frozen into an immutable run. Every run holds a sorted array of inserted values and a sorted
+ *   array of tombstones, each deleting one occurrence of a value in an older run.
+ *
+ * - All runs and the buffer are published together as an immutable `Snapshot` through a volatile
+ *   field. A read is a single volatile load followed by searches of immutable arrays, so readers
+ *   are wait-free and always see a state that existed between two updates. Writers are serialized
+ *   by a lock.
+ *
+ * - A snapshot answers `count`, `contains`, `rank`, `equalRange` and `indexOf` by adding up the
+ *   results of `BinarySearchAllIndices.lowerBound` and `upperBound` over the inserts and
+ *   tombstones of every run. Its positions refer to the sorted array of all elements, and
+ *   `indexOf` returns the index `BinarySearch.binarySearchRecursive` would return for that array.
+ *
+ * - Frozen runs are merged in the background, newest first, as long as the next older run is at
+ *   most twice as large as the runs merged so far, so run sizes grow geometrically and a snapshot
+ *   holds O(log n) runs. Inserts cancel against tombstones of the same value when they meet, and
+ *   tombstones are dropped when merged into the oldest run. A writer that outruns the background
+ *   thread merges synchronously once there are more than 32 runs.
+ *
+ * Time Complexity:
+ * - O(r log n) per read for r runs, where r is O(log n).
+ * - O(b) per update for a buffer of b entries, plus amortized O(log n) for merging.
+ *
+ * Space Complexity:
+ * - O(n + t) for n elements and t pending tombstones.
+ */
+public final class ConcurrentSortedMultiset implements AutoCloseable {
+
+    /**
+     * The default number of buffered inserts and tombstones before the buffer becomes a run.
+     */
+    public static final int DEFAULT_BUFFER_CAPACITY = 1024;
+
+    /**
+     * The number of runs above which a writer merges runs itself.
+     */
+    static final int MAX_RUNS = 32;
+
+    private static final int[] EMPTY = new int[0];
+
+    private final int bufferCapacity;
+    private final Object writeLock = new Object();
+    private final AtomicBoolean compactionPending = new AtomicBoolean();
+    private final ExecutorService compactor;
+    private volatile Snapshot snapshot;
+
+    /**
+     * Creates an empty multiset with the default buffer capacity.
+     */
+    public ConcurrentSortedMultiset() {
+        this(DEFAULT_BUFFER_CAPACITY);
+    }
+
+    /**
+     * Creates an empty multiset.
+     *
+     * @param bufferCapacity The number of buffered inserts and tombstones before they form a run.
+     * @throws IllegalArgumentException If the buffer capacity is not positive.
+     */
+    public ConcurrentSortedMultiset(int bufferCapacity) {
+        if (bufferCapacity <= 0) {
+            throw new IllegalArgumentException("Buffer capacity must be positive");
+        }
+        this.bufferCapacity = bufferCapacity;
+        this.snapshot = new Snapshot(new Run(EMPTY, EMPTY), new Run[0], 0);
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sorted-multiset-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Inserts one occurrence of a value.
+     *
+     * @param value The value to be inserted.
+     */
+    public void add(int value) {
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            Run buffer = current.buffer;
+            // A buffered tombstone of the value is cancelled instead of recording the insert
+            int tombstone = bound(buffer.tombstones, value, false);
+            if (tombstone < buffer.tombstones.length && buffer.tombstones[tombstone] == value) {
+                buffer = new Run(buffer.inserts, without(buffer.tombstones, tombstone));
+            } else {
+                buffer = new Run(with(buffer.inserts, value), buffer.tombstones);
+            }
+            publish(new Snapshot(buffer, current.runs, current.size + 1));
+        }
+    }
+
+    /**
+     * Deletes one occurrence of a value.
+     *
+     * @param value The value to be deleted.
+     * @return True if the value was present and one occurrence was deleted.
+     */
+    public boolean remove(int value) {
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            if (current.count(value) == 0) {
+                return false;
+            }
+            Run buffer = current.buffer;
+            int insert = bound(buffer.inserts, value, false);
+            if (insert < buffer.inserts.length && buffer.inserts[insert] == value) {
+                buffer = new Run(without(buffer.inserts, insert), buffer.tombstones);
+            } else {
+                buffer = new Run(buffer.inserts, with(buffer.tombstones, value));
+            }
+            publish(new Snapshot(buffer, current.runs, current.size - 1));
+            return true;
+        }
+    }
+
+    /**
+     * Returns the current snapshot, which stays valid and unchanged while the multiset is updated.
+     *
+     * @return The latest published snapshot.
+     */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Counts the occurrences of a value in the current snapshot.
+     *
+     * @param value The value to be counted.
+     * @return The number of occurrences.
+     */
+    public int count(int value) {
+        return snapshot.count(value);
+    }
+
+    /**
+     * Checks whether the current snapshot holds a value.
+     *
+     * @param value The value to be found.
+     * @return True if the value occurs at least once.
+     */
+    public boolean contains(int value) {
+        return snapshot.count(value) > 0;
+    }
+
+    /**
+     * Returns the number of elements, counting every occurrence.
+     *
+     * @return The size of the current snapshot.
+     */
+    public long size() {
+        return snapshot.size;
+    }
+
+    /**
+     * Freezes the write buffer into a run and merges all runs into one, waiting for the result.
+     * Reads are fastest afterwards; updates remain possible.
+     */
+    public void compact() {
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            Run[] runs = current.runs;
+            if (current.buffer.entries() > 0) {
+                runs = Arrays.copyOf(runs, runs.length + 1);
+                runs[runs.length - 1] = current.buffer;
+            }
+            Run merged = runs.length == 0 ? new Run(EMPTY, EMPTY) : merge(runs, 0, runs.length, true);
+            snapshot = new Snapshot(new Run(EMPTY, EMPTY), merged.entries() == 0 ? new Run[0] : new Run[]{merged}, current.size);
+        }
+    }
+
+    /**
+     * Stops the background merging. The multiset stays usable, but runs are then only merged by
+     * writers once there are too many.
+     */
+    @Override
+    public void close() {
+        compactor.shutdownNow();
+    }
+
+    /**
+     * Publishes a snapshot, freezing the buffer into a run when it is full. Called with the write
+     * lock held.
+     *
+     * @param next The snapshot to be published.
+     */
+    private void publish(Snapshot next) {
+        if (next.buffer.entries() >= bufferCapacity) {
+            Run[] runs = Arrays.copyOf(next.runs, next.runs.length + 1);
+            runs[runs.length - 1] = next.buffer;
+            next = new Snapshot(new Run(EMPTY, EMPTY), runs, next.size);
+            if (runs.length > MAX_RUNS) {
+                snapshot = next;
+                mergeRuns();
+                return;
+            }
+            scheduleCompaction();
+        }
+        snapshot = next;
+    }
+
+    private void scheduleCompaction() {
+        if (!compactor.isShutdown() && compactionPending.compareAndSet(false, true)) {
+            try {
+                compactor.execute(() -> {
+                    compactionPending.set(false);
+                    mergeRuns();
+                });
+            } catch (RejectedExecutionException e) {
+                compactionPending.set(false); // Closed concurrently
+            }
+        }
+    }
+
+    /**
+     * Merges the newest runs for as long as the next older run is at most twice their size.
+     */
+    private void mergeRuns() {
+        while (true) {
+            Run[] runs = snapshot.runs;
+            int first = runs.length - 1;
+            long merged = first >= 0 ? runs[first].entries() : 0;
+            while (first > 0 && runs[first - 1].entries() <= 2 * merged) {
+                first--;
+                merged += runs[first].entries();
+            }
+            if (runs.length - first < 2) {
+                return;
+            }
+            // Merge outside the lock; writers only append newer runs meanwhile
+            Run result = merge(runs, first, runs.length, first == 0);
+            synchronized (writeLock) {
+                Snapshot current = snapshot;
+                if (!isPrefix(runs, current.runs)) {
+                    continue; // Merged concurrently by another thread, start over
+                }
+                List<Run> replaced = new ArrayList<>(current.runs.length);
+                for (int i = 0; i < first; i++) {
+                    replaced.add(current.runs[i]);
+                }
+                if (result.entries() > 0) {
+                    replaced.add(result);
+                }
+                for (int i = runs.length; i < current.runs.length; i++) {
+                    replaced.add(current.runs[i]);
+                }
+                snapshot = new Snapshot(current.buffer, replaced.toArray(new Run[0]), current.size);
+            }
+        }
+    }
+
+    private static boolean isPrefix(Run[] runs, Run[] current) {
+        if (runs.length > current.length) {
+            return false;
+        }
+        for (int i = 0; i < runs.length; i++) {
+            if (runs[i] != current[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Merges consecutive runs into one, cancelling inserts against tombstones of the same value.
+     *
+     * @param runs The runs, oldest first.
+     * @param from The first run to merge.
+     * @param to The end of the runs to merge.
+     * @param oldest Whether the first run is the oldest, so that no tombstone is needed any more.
+     * @return The merged run.
+     */
+    private static Run merge(Run[] runs, int from, int to, boolean oldest) {
+        int[] inserts = EMPTY;
+        int[] tombstones = EMPTY;
+        for (int i = from; i < to; i++) {
+            inserts = mergeSorted(inserts, runs[i].inserts);
+            tombstones = mergeSorted(tombstones, runs[i].tombstones);
+        }
+        int[] keptInserts = new int[inserts.length];
+        int[] keptTombstones = new int[tombstones.length];
+        int insertCount = 0;
+        int tombstoneCount = 0;
+        int i = 0;
+        int j = 0;
+        while (i < inserts.length || j < tombstones.length) {
+            if (j == tombstones.length || (i < inserts.length && inserts[i] < tombstones[j])) {
+                keptInserts[insertCount++] = inserts[i++];
+            } else if (i == inserts.length || tombstones[j] < inserts[i]) {
+                keptTombstones[tombstoneCount++] = tombstones[j++];
+            } else {
+                i++;
+                j++;
+            }
+        }
+        return new Run(Arrays.copyOf(keptInserts, insertCount),
+                oldest ? EMPTY : Arrays.copyOf(keptTombstones, tombstoneCount));
+    }
+
+    private static int[] mergeSorted(int[] a, int[] b) {
+        if (a.length == 0) {
+            return b;
+        }
+        if (b.length == 0) {
+            return a;
+        }
+        int[] result = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length && j < b.length) {
+            result[k++] = a[i] <= b[j] ? a[i++] : b[j++];
+        }
+        System.arraycopy(a, i, result, k, a.length - i);
+        System.arraycopy(b, j, result, k + a.length - i, b.length - j);
+        return result;
+    }
+
+    /**
+     * Finds the first position of a sorted array whose value is not less than, or with `inclusive`
+     * greater than, the given value.
+     */
+    private static int bound(int[] sorted, int value, boolean inclusive) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return inclusive ? BinarySearchAllIndices.upperBound(sorted, value, 0, sorted.length - 1)
+                : BinarySearchAllIndices.lowerBound(sorted, value, 0, sorted.length - 1);
+    }
+
+    private static int[] with(int[] sorted, int value) {
+        int position = bound(sorted, value, true);
+        int[] result = new int[sorted.length + 1];
+        System.arraycopy(sorted, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(sorted, position, result, position + 1, sorted.length - position);
+        return result;
+    }
+
+    private static int[] without(int[] sorted, int position) {
+        int[] result = new int[sorted.length - 1];
+        System.arraycopy(sorted, 0, result, 0, position);
+        System.arraycopy(sorted, position + 1, result, position, result.length - position);
+        return result;
+    }
+
+    /**
+     * An immutable sorted array of inserted values and one of tombstones.
+     */
+    private static final class Run {
+        final int[] inserts;
+        final int[] tombstones;
+
+        Run(int[] inserts, int[] tombstones) {
+            this.inserts = inserts;
+            this.tombstones = tombstones;
+        }
+
+        int entries() {
+            return inserts.length + tombstones.length;
+        }
+
+        /**
+         * Counts the values below a bound, net of tombstones.
+         */
+        long below(int value, boolean inclusive) {
+            return bound(inserts, value, inclusive) - bound(tombstones, value, inclusive);
+        }
+    }
+
+    /**
+     * An immutable state of the multiset, safe to search from any thread.
+     */
+    public static final class Snapshot {
+        private final Run buffer;
+        private final Run[] runs;
+        private final long size;
+
+        Snapshot(Run buffer, Run[] runs, long size) {
+            this.buffer = buffer;
+            this.runs = runs;
+            this.size = size;
+        }
+
+        /**
+         * Counts the occurrences of a value.
+         *
+         * @param value The value to be counted.
+         * @return The number of occurrences.
+         */
+        public int count(int value) {
+            return (int) (below(value, true) - below(value, false));
+        }
+
+        /**
+         * Checks whether the snapshot holds a value.
+         *
+         * @param value The value to be found.
+         * @return True if the value occurs at least once.
+         */
+        public boolean contains(int value) {
+            return count(value) > 0;
+        }
+
+        /**
+         * Counts the elements less than a value, which is the position its first occurrence
+         * has or would have in the sorted array of all elements.
+         *
+         * @param value The value to be ranked.
+         * @return The number of elements less than the value.
+         */
+        public long rank(int value) {
+            return below(value, false);
+        }
+
+        /**
+         * Finds the positions of a value in the sorted array of all elements, like
+         * `BinarySearchAllIndices.equalRange` over that array.
+         *
+         * @param value The value whose positions need to be found.
+         * @return A pair {from, to} such that the value occupies exactly the positions [from, to).
+         */
+        public long[] equalRange(int value) {
+            return new long[]{below(value, false), below(value, true)};
+        }
+
+        /**
+         * Searches the sorted array of all elements for a value.
+         *
+         * @param value The value that needs to be found.
+         * @return The index `BinarySearch.binarySearchRecursive` would return for the sorted array
+         *         of all elements, otherwise -1.
+         * @throws IllegalArgumentException If the snapshot is empty or has 2^31 elements or more.
+         */
+        public int indexOf(int value) {
+            if (size == 0 || size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Array cannot be null or empty");
+            }
+            long from = below(value, false);
+            long to = below(value, true);
+            return from == to ? -1 : BinarySearch.resolveIndex((int) from, (int) to, 0, (int) size - 1);
+        }
+
+        /**
+         * Returns the number of elements, counting every occurrence.
+         *
+         * @return The size of the snapshot.
+         */
+        public long size() {
+            return size;
+        }
+
+        /**
+         * Returns the number of runs a read has to search, including the write buffer.
+         *
+         * @return The read amplification of the snapshot.
+         */
+        public int runCount() {
+            return runs.length + 1;
+        }
+
+        /**
+         * Copies all elements into a sorted array.
+         *
+         * @return The sorted array of all elements.
+         * @throws IllegalStateException If the snapshot has 2^31 elements or more.
+         */
+        public int[] toArray() {
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Snapshot too large for an array: " + size);
+            }
+            Run[] all = Arrays.copyOf(runs, runs.length + 1);
+            all[runs.length] = buffer;
+            return merge(all, 0, all.length, true).inserts;
+        }
+
+        private long below(int value, boolean inclusive) {
+            long total = buffer.below(value, inclusive);
+            for (Run run : runs) {
+                total += run.below(value, inclusive);
+            }
+            return total;
+        }
+    }
+
+    /**
+     * The main method inserts and deletes random values from several writer threads while reader
+     * threads search snapshots, and reports the throughput and the number of runs.
+     *
+     * @param args The number of updates per writer, 1M by default.
+     * @throws InterruptedException If interrupted while waiting for the threads.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int updates = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        try (ConcurrentSortedMultiset multiset = new ConcurrentSortedMultiset()) {
+            AtomicBoolean done = new AtomicBoolean();
+            long[] reads = new long[2];
+            Thread[] readers = new Thread[reads.length];
+            for (int r = 0; r < readers.length; r++) {
+                int reader = r;
+                readers[r] = new Thread(() -> {
+                    Random random = new Random(reader);
+                    long found = 0;
+                    while (!done.get()) {
+                        found += multiset.snapshot().count(random.nextInt(1 << 20));
+                        reads[reader]++;
+                    }
+                    if (found < 0) {
+                        System.out.println(found);
+                    }
+                });
+                readers[r].start();
+            }
+            long start = System.nanoTime();
+            Thread[] writers = new Thread[2];
+            for (int w = 0; w < writers.length; w++) {
+                int writer = w;
+                writers[w] = new Thread(() -> {
+                    Random random = new Random(100 + writer);
+                    for (int i = 0; i < updates; i++) {
+                        int value = random.nextInt(1 << 20);
+                        if (random.nextInt(4) == 0) {
+                            multiset.remove(value);
+                        } else {
+                            multiset.add(value);
+                        }
+                    }
+                });
+                writers[w].start();
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            long elapsed = System.nanoTime() - start;
+            done.set(true);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            Snapshot snapshot = multiset.snapshot();
+            System.out.printf("%d updates and %d reads in %d ms, %d elements in %d runs%n",
+                    updates * writers.length, reads[0] + reads[1], TimeUnit.NANOSECONDS.toMillis(elapsed),
+                    snapshot.size(), snapshot.runCount());
+            multiset.compact();
+            System.out.println("After compaction: " + multiset.snapshot().runCount() + " runs");
+        }
+    }
+}
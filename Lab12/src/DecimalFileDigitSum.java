@@ -0,0 +1,364 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The DecimalFileDigitSum class computes the sum of the digits of a decimal number stored as text
+ * in a file, without reading the file onto the heap or converting it to a BigInteger.
+ *
+ * Specifications:
+ *
+ * - The file holds an optional leading sign `+` or `-`, one or more ASCII digits, and optional
+ *   trailing whitespace such as the line terminator a text editor appends. Any other byte is
+ *   rejected with a `NumberFormatException` that names its offset in the file.
+ *
+ * - The digits are memory-mapped with `FileChannel.map` in chunks of 16 MB, which are summed as
+ *   tasks of the common fork/join pool, so the file is read in parallel and the heap in use does
+ *   not grow with its size.
+ *
+ * - Within a chunk, eight digits are validated and summed per step by treating them as one `long`
+ *   (SWAR, SIMD within a register). Every byte must have the high nibble 3, and must still have it
+ *   after adding 6, which holds exactly for '0' to '9'. The low nibbles are the digit values and
+ *   are added lane by lane into a `long` for up to 28 words before their lanes are summed.
+ *
+ * - The sum is returned as a `long`, which cannot overflow for any file. The `digitalRoot` method
+ *   reduces it to the single digit obtained by repeatedly summing digits.
+ *
+ * - Every file summed or rejected is recorded in `Metrics.DIGIT_SUM` and reported to JDK Flight
+ *   Recorder as a `DigitSumEvent`.
+ *
+ * Time Complexity:
+ * - O(n / p) for a file of n bytes and p processors, with a small constant per eight bytes.
+ *
+ * Space Complexity:
+ * - O(1) on the heap, apart from the fork/join tasks of O(n / 16 MB) chunks.
+ */
+public final class DecimalFileDigitSum {
+
+    /**
+     * The default number of bytes mapped and summed by one task.
+     */
+    static final int DEFAULT_CHUNK_BYTES = 1 << 24;
+
+    /**
+     * The number of words whose digits can be added per lane without exceeding a byte: 28 * 9 = 252.
+     */
+    private static final int WORDS_PER_BATCH = 28;
+
+    private static final long HIGH_NIBBLES = 0xF0F0F0F0F0F0F0F0L;
+    private static final long LOW_NIBBLES = 0x0F0F0F0F0F0F0F0FL;
+    private static final long SIXES = 0x0606060606060606L;
+    private static final long THREES = 0x3333333333333333L;
+    private static final long EVEN_BYTES = 0x00FF00FF00FF00FFL;
+
+    /**
+     * The number of bytes read at a time while skipping trailing whitespace.
+     */
+    private static final int TAIL_BLOCK = 4096;
+
+    private DecimalFileDigitSum() {
+    }
+
+    /**
+     * Computes the sum of the digits of the decimal number in a file.
+     *
+     * @param path The file holding the number.
+     * @return The sum of the digits of the number.
+     * @throws NumberFormatException If the file does not hold a decimal number.
+     * @throws IOException If the file cannot be read.
+     */
+    public static long sumOfDigits(Path path) throws IOException {
+        return sumOfDigits(path, DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * Computes the sum of the digits of the decimal number in a file, summing chunks of a given size
+     * in parallel.
+     *
+     * @param path The file holding the number.
+     * @param chunkBytes The number of bytes summed by one task.
+     * @return The sum of the digits of the number.
+     * @throws NumberFormatException If the file does not hold a decimal number.
+     * @throws IOException If the file cannot be read.
+     */
+    static long sumOfDigits(Path path, int chunkBytes) throws IOException {
+        if (chunkBytes < Long.BYTES) {
+            throw new IllegalArgumentException("Chunk size must be at least " + Long.BYTES);
+        }
+        DigitSumEvent event = DigitSumEvent.beginIfRecording();
+        long start = Metrics.start();
+        long size = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            size = channel.size();
+            long sum = sumOfDigits(path, channel, chunkBytes);
+            Metrics.DIGIT_SUM.record(start);
+            return sum;
+        } catch (IOException | RuntimeException e) {
+            Metrics.DIGIT_SUM.recordError(start);
+            if (event != null) {
+                event.error = e.getClass().getSimpleName();
+            }
+            throw e;
+        } finally {
+            if (event != null && event.endAndShouldCommit()) {
+                event.method = "DecimalFileDigitSum.sumOfDigits";
+                event.size = size;
+                event.parallel = size > chunkBytes;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Computes the sum of the digits of the decimal number in an open file.
+     *
+     * @param path The file holding the number, for messages.
+     * @param channel The open file.
+     * @param chunkBytes The number of bytes summed by one task.
+     * @return The sum of the digits of the number.
+     * @throws NumberFormatException If the file does not hold a decimal number.
+     * @throws IOException If the file cannot be read.
+     */
+    private static long sumOfDigits(Path path, FileChannel channel, int chunkBytes) throws IOException {
+        long from = signLength(channel);
+        long to = trimWhitespace(channel, from);
+        if (from == to) {
+            throw new NumberFormatException("No digits in " + path);
+        }
+
+        long result;
+        try {
+            if (to - from <= chunkBytes) {
+                result = sumChunk(channel, from, to);
+            } else {
+                result = ForkJoinPool.commonPool().invoke(new ChunkTask(channel, from, to, chunkBytes));
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (result < 0) {
+            throw new NumberFormatException("Illegal character at byte " + (-result - 1) + " of " + path);
+        }
+        return result;
+    }
+
+    /**
+     * Computes the digital root of a digit sum, the single digit that repeatedly summing the digits
+     * of a number eventually reaches.
+     *
+     * @param digitSum The non-negative sum of the digits of a number.
+     * @return The digital root, 0 only for the number 0.
+     * @throws IllegalArgumentException If the sum is negative.
+     */
+    public static int digitalRoot(long digitSum) {
+        if (digitSum < 0) {
+            throw new IllegalArgumentException("Digit sum cannot be negative");
+        }
+        return digitSum == 0 ? 0 : (int) (1 + (digitSum - 1) % 9);
+    }
+
+    /**
+     * Returns the length of the sign at the start of the file.
+     *
+     * @param channel The open file.
+     * @return 1 if the file starts with '+' or '-', 0 otherwise.
+     * @throws IOException If the file cannot be read.
+     */
+    private static long signLength(FileChannel channel) throws IOException {
+        ByteBuffer first = ByteBuffer.allocate(1);
+        if (channel.read(first, 0) < 1) {
+            return 0;
+        }
+        byte b = first.get(0);
+        return b == '+' || b == '-' ? 1 : 0;
+    }
+
+    /**
+     * Finds the end of the digits by skipping the whitespace at the end of the file.
+     *
+     * @param channel The open file.
+     * @param start The offset of the first digit.
+     * @return The offset just past the last byte that is not whitespace, at least `start`.
+     * @throws IOException If the file cannot be read.
+     */
+    private static long trimWhitespace(FileChannel channel, long start) throws IOException {
+        long end = channel.size();
+        while (end > start) {
+            long from = Math.max(start, end - TAIL_BLOCK);
+            MappedByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY, from, end - from);
+            int i = (int) (end - from);
+            while (i > 0 && isWhitespace(tail.get(i - 1))) {
+                i--;
+            }
+            end = from + i;
+            if (i > 0) {
+                break;
+            }
+        }
+        return end;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    /**
+     * Maps a range of the file and sums its digits.
+     *
+     * @param channel The open file.
+     * @param from The offset of the first byte of the range.
+     * @param to The offset just past the last byte of the range, at most 2 GB after `from`.
+     * @return The sum of the digits, or -(offset + 1) for the offset of the first illegal byte.
+     * @throws UncheckedIOException If the range cannot be mapped.
+     */
+    private static long sumChunk(FileChannel channel, long from, long to) {
+        MappedByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int length = buffer.capacity();
+        int last = length - Long.BYTES;
+        long sum = 0;
+        int i = 0;
+        while (i <= last) {
+            // Add at most WORDS_PER_BATCH words into the byte lanes before they could overflow
+            int batchEnd = Math.min(last, i + (WORDS_PER_BATCH - 1) * Long.BYTES);
+            long lanes = 0;
+            for (; i <= batchEnd; i += Long.BYTES) {
+                long word = buffer.getLong(i);
+                if (!isDigits(word)) {
+                    return -(from + firstNonDigit(buffer, i) + 1);
+                }
+                lanes += word & LOW_NIBBLES;
+            }
+            sum += sumLanes(lanes);
+        }
+        for (; i < length; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -(from + i + 1);
+            }
+            sum += digit;
+        }
+        return sum;
+    }
+
+    /**
+     * Tests whether all eight bytes of a word are ASCII digits. A byte is a digit exactly when its
+     * high nibble is 3 both before and after adding 6, and the first test fails for any byte large
+     * enough for the addition to carry into its neighbour.
+     *
+     * @param word Eight bytes of the file.
+     * @return True if every byte is between '0' and '9'.
+     */
+    static boolean isDigits(long word) {
+        return ((word & HIGH_NIBBLES) | (((word + SIXES) & HIGH_NIBBLES) >>> 4)) == THREES;
+    }
+
+    /**
+     * Adds the eight byte lanes of a word, each at most 252.
+     *
+     * @param lanes The word.
+     * @return The sum of its bytes.
+     */
+    private static long sumLanes(long lanes) {
+        long pairs = (lanes & EVEN_BYTES) + ((lanes >>> 8) & EVEN_BYTES);
+        return (pairs * 0x0001000100010001L) >>> 48;
+    }
+
+    private static int firstNonDigit(MappedByteBuffer buffer, int i) {
+        while (buffer.get(i) >= '0' && buffer.get(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Sums the digits of a range of the file, splitting it in halves until they fit in one chunk.
+     * An illegal byte is reported through a negative result rather than an exception, so that the
+     * lowest offset wins and the message survives the fork/join pool.
+     */
+    private static final class ChunkTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel channel;
+        private final long from;
+        private final long to;
+        private final int chunkBytes;
+
+        ChunkTask(FileChannel channel, long from, long to, int chunkBytes) {
+            this.channel = channel;
+            this.from = from;
+            this.to = to;
+            this.chunkBytes = chunkBytes;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= chunkBytes) {
+                return sumChunk(channel, from, to);
+            }
+            long mid = from + (to - from) / 2;
+            ChunkTask upper = new ChunkTask(channel, mid, to, chunkBytes);
+            upper.fork();
+            long lower = new ChunkTask(channel, from, mid, chunkBytes).compute();
+            long higher = upper.join();
+            if (lower < 0) {
+                return lower;
+            }
+            return higher < 0 ? higher : lower + higher;
+        }
+    }
+
+    /**
+     * Main method to compare summing the digits of a file with converting it to a BigInteger.
+     *
+     * @param args Command-line arguments (not used in this case).
+     * @throws IOException If the temporary file cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        int digits = 200_000;
+        Path path = Files.createTempFile("digits", ".txt");
+        try {
+            Random random = new Random(42);
+            StringBuilder text = new StringBuilder(digits + 2).append('-');
+            text.append((char) ('1' + random.nextInt(9)));
+            for (int i = 1; i < digits; i++) {
+                text.append((char) ('0' + random.nextInt(10)));
+            }
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+                out.write(text.append('\n').toString().getBytes(StandardCharsets.US_ASCII));
+            }
+
+            long start = System.nanoTime();
+            long sum = sumOfDigits(path);
+            long mappedNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            BigInteger number = new BigInteger(Files.readString(path).trim());
+            int expected = RecursiveSumOfDigits.sumOfDigits(number);
+            long bigIntegerNanos = System.nanoTime() - start;
+
+            System.out.println("Digits: " + digits);
+            System.out.println("Sum of digits: " + sum + " (digital root " + digitalRoot(sum) + ")");
+            System.out.println("Matches BigInteger: " + (sum == expected));
+            System.out.printf("Mapped file: %.1f ms, BigInteger: %.1f ms%n", mappedNanos / 1e6, bigIntegerNanos / 1e6);
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The DigitSumEvent class is the JDK Flight Recorder event of one digit sum of a BigInteger, a
+ * batch of primitive values or a file, by `RecursiveSumOfDigits` or `DecimalFileDigitSum`.
+ *
+ * Specifications:
+ *
+ * - The event is named `lab12.DigitSum` and can be enabled, disabled or given a duration threshold
+ *   by that name in the settings of a recording. No event is created unless a flight recording
+ *   is running, so that calls allocate nothing while none is, even in code the JIT compiler has
+ *   not optimized yet.
+ */
+@Name("lab12.DigitSum")
+@Label("Digit Sum")
+@Category({"Lab12", "Digit Sum"})
+@Description("A digit sum of a BigInteger, a batch of values or a file")
+@StackTrace(false)
+final class DigitSumEvent extends Event {
+
+    @Label("Method")
+    String method;
+
+    @Label("Input Size")
+    @Description("The number of decimal digits, of values in a batch, or of bytes in a file")
+    long size;
+
+    @Label("Parallel")
+    @Description("Whether the work was split between tasks of the common fork/join pool")
+    boolean parallel;
+
+    @Label("Error")
+    @Description("The exception thrown for a rejected input, null if it was summed")
+    String error;
+
+    /**
+     * Creates and begins an event, if a flight recording is running.
+     *
+     * @return The event, or null if no recording is running.
+     */
+    static DigitSumEvent beginIfRecording() {
+        if (!Metrics.isRecording()) {
+            return null;
+        }
+        DigitSumEvent event = new DigitSumEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event and tells whether it is to be committed.
+     *
+     * @return True if a recording enables the event and its duration passes the threshold.
+     */
+    boolean endAndShouldCommit() {
+        end();
+        return shouldCommit();
+    }
+}
@@ -0,0 +1,322 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The EvaluationLoadGenerator class measures the throughput of an `EvaluationServer` from many
+ * concurrent connections, each sending pipelined batches of expressions.
+ *
+ * Specifications:
+ *
+ * - Every connection is served by its own thread from `EvaluationServer.threadFactory`, so virtual
+ *   threads on Java 21 and later. All connections are opened before the measurement starts, and
+ *   connections that cannot be opened, or fail later, are counted and left out.
+ *
+ * - A connection repeatedly writes a batch of `pipelineDepth` expressions in one write, then reads
+ *   the `pipelineDepth` answers, until the duration has elapsed. The expressions are taken in turn
+ *   from the given list, starting at a different one for every connection.
+ *
+ * - The result holds the number of requests answered, the answers that were errors, the requests
+ *   per second, and a histogram of the round trips of the batches as a `Metrics.Snapshot`.
+ *
+ * Time Complexity:
+ * - O(d) per round trip of d pipelined expressions.
+ *
+ * Space Complexity:
+ * - O(c * d) for c connections sending batches of d expressions.
+ */
+public final class EvaluationLoadGenerator {
+
+    /**
+     * The expressions sent by `main`.
+     */
+    static final List<String> EXPRESSIONS = List.of("3 + 5 * 2", "(1 + 2) * (3 + 4)", "10 / 4 - 0.5",
+            "2 * (3 + (4 - 1) * 5)", "1 / 0", "((((1))))");
+
+    private static final int INPUT_BUFFER_SIZE = 8192;
+
+    private EvaluationLoadGenerator() {
+    }
+
+    /**
+     * Sends pipelined batches of expressions to a server from many connections for a given time.
+     *
+     * @param address The address of the server.
+     * @param connections The number of concurrent connections.
+     * @param pipelineDepth The number of expressions sent per round trip.
+     * @param duration The duration of the measurement.
+     * @param unit The unit of the duration.
+     * @param expressions The expressions to send, none of them containing a line break.
+     * @return The result of the measurement.
+     * @throws IllegalArgumentException If a count or the duration is not positive, or if there are
+     *         no expressions.
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    public static Result run(InetSocketAddress address, int connections, int pipelineDepth, long duration,
+            TimeUnit unit, List<String> expressions) throws InterruptedException {
+        if (connections < 1 || pipelineDepth < 1) {
+            throw new IllegalArgumentException("Connections and pipeline depth must be positive");
+        }
+        if (duration <= 0) {
+            throw new IllegalArgumentException("Duration must be positive");
+        }
+        if (expressions == null || expressions.isEmpty()) {
+            throw new IllegalArgumentException("Expressions cannot be null or empty");
+        }
+        long durationNanos = unit.toNanos(duration);
+        Counters counters = new Counters();
+        CountDownLatch connected = new CountDownLatch(connections);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(connections);
+        ThreadFactory threads = EvaluationServer.threadFactory("evaluation-client");
+        for (int i = 0; i < connections; i++) {
+            byte[] batch = batch(expressions, i, pipelineDepth);
+            threads.newThread(() -> {
+                try {
+                    drive(address, batch, pipelineDepth, durationNanos, counters, connected, started);
+                } finally {
+                    finished.countDown();
+                }
+            }).start();
+        }
+        connected.await();
+        long start = System.nanoTime();
+        started.countDown();
+        finished.await();
+        long elapsedNanos = System.nanoTime() - start;
+        return new Result(connections, counters.failed.sum(), counters.requests.sum(), counters.errors.sum(),
+                elapsedNanos, counters.snapshot());
+    }
+
+    /**
+     * Builds the bytes of one batch of expressions, each followed by a line break.
+     *
+     * @param expressions The expressions to take in turn.
+     * @param first The index of the first expression taken, modulo their number.
+     * @param pipelineDepth The number of expressions in the batch.
+     * @return The batch.
+     */
+    private static byte[] batch(List<String> expressions, int first, int pipelineDepth) {
+        StringBuilder batch = new StringBuilder();
+        for (int i = 0; i < pipelineDepth; i++) {
+            batch.append(expressions.get((first + i) % expressions.size())).append('\n');
+        }
+        return batch.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Opens one connection and sends batches on it until the duration has elapsed.
+     */
+    private static void drive(InetSocketAddress address, byte[] batch, int pipelineDepth, long durationNanos,
+            Counters counters, CountDownLatch connected, CountDownLatch started) {
+        Socket socket = new Socket();
+        try (socket) {
+            try {
+                socket.setTcpNoDelay(true);
+                socket.connect(address);
+            } finally {
+                connected.countDown();
+            }
+            OutputStream out = socket.getOutputStream();
+            InputStream in = new BufferedInputStream(socket.getInputStream(), INPUT_BUFFER_SIZE);
+            started.await();
+            long deadline = System.nanoTime() + durationNanos;
+            long now;
+            while ((now = System.nanoTime()) < deadline) {
+                out.write(batch);
+                out.flush();
+                int errors = readAnswers(in, pipelineDepth);
+                counters.record(System.nanoTime() - now, pipelineDepth, errors);
+            }
+        } catch (IOException e) {
+            counters.failed.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reads a number of answer lines.
+     *
+     * @param in The input of the connection.
+     * @param count The number of lines to read.
+     * @return The number of lines that were errors.
+     * @throws IOException If the connection ends before all lines are read.
+     */
+    private static int readAnswers(InputStream in, int count) throws IOException {
+        int errors = 0;
+        boolean lineStart = true;
+        while (count > 0) {
+            int b = in.read();
+            if (b == -1) {
+                throw new IOException("Connection closed by the server");
+            }
+            if (lineStart && b == 'E') {
+                // Results are numbers, only errors start with a letter
+                errors++;
+            }
+            lineStart = b == '\n';
+            if (lineStart) {
+                count--;
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * The counters shared by all connections of a run.
+     */
+    private static final class Counters {
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder roundTrips = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder[] histogram = new LongAdder[Metrics.BUCKETS];
+
+        Counters() {
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos, int requests, int errors) {
+            this.requests.add(requests);
+            this.errors.add(errors);
+            roundTrips.increment();
+            totalNanos.add(nanos);
+            histogram[Metrics.bucket(nanos)].increment();
+        }
+
+        Metrics.Snapshot snapshot() {
+            long[] buckets = new long[histogram.length];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = histogram[i].sum();
+            }
+            long count = roundTrips.sum();
+            return new Metrics.Snapshot("roundTrip", count, 0, count, totalNanos.sum(), buckets);
+        }
+    }
+
+    /**
+     * The outcome of a run of the load generator.
+     */
+    public static final class Result {
+        private final int connections;
+        private final long failedConnections;
+        private final long requests;
+        private final long errors;
+        private final long elapsedNanos;
+        private final Metrics.Snapshot roundTrips;
+
+        Result(int connections, long failedConnections, long requests, long errors, long elapsedNanos,
+                Metrics.Snapshot roundTrips) {
+            this.connections = connections;
+            this.failedConnections = failedConnections;
+            this.requests = requests;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+            this.roundTrips = roundTrips;
+        }
+
+        public int connections() {
+            return connections;
+        }
+
+        /**
+         * Returns the number of connections that could not be opened or failed during the run.
+         *
+         * @return The failed connection count.
+         */
+        public long failedConnections() {
+            return failedConnections;
+        }
+
+        /**
+         * Returns the number of requests answered, including errors.
+         *
+         * @return The request count.
+         */
+        public long requests() {
+            return requests;
+        }
+
+        /**
+         * Returns the number of requests answered by an error.
+         *
+         * @return The error count.
+         */
+        public long errors() {
+            return errors;
+        }
+
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Returns the latencies of the round trips of the batches.
+         *
+         * @return The snapshot of the round-trip histogram.
+         */
+        public Metrics.Snapshot roundTrips() {
+            return roundTrips;
+        }
+
+        /**
+         * Returns the throughput of the run.
+         *
+         * @return The number of requests answered per second.
+         */
+        public double requestsPerSecond() {
+            return elapsedNanos == 0 ? 0 : requests * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d connections (%d failed), %d requests, %d errors, %.0f requests/s, "
+                    + "round trip p50 <= %d us, p99 <= %d us", connections, failedConnections, requests, errors,
+                    requestsPerSecond(), roundTrips.percentileNanos(50) / 1000, roundTrips.percentileNanos(99) / 1000);
+        }
+    }
+
+    /**
+     * The main method measures a server with 10,000 connections sending batches of 16 expressions
+     * for ten seconds. Without a port, it starts a server in this process.
+     *
+     * @param args Optionally the number of connections, the pipeline depth, the duration in seconds
+     *        and the port of a server on the loopback interface.
+     * @throws IOException If the in-process server cannot be started.
+     * @throws InterruptedException If the main thread is interrupted.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int pipelineDepth = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        EvaluationServer server = args.length > 3 ? null : EvaluationServer.start(0);
+        try {
+            int port = server == null ? Integer.parseInt(args[3]) : server.port();
+            Result result = run(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), connections, pipelineDepth, seconds,
+                    TimeUnit.SECONDS, EXPRESSIONS);
+            System.out.println(result);
+            if (server != null) {
+                System.out.println(server.stats());
+                System.out.println(Metrics.SERVER.snapshot());
+            }
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+}
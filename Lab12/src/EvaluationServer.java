@@ -0,0 +1,419 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The EvaluationServer class answers arithmetic expressions sent over TCP connections on the
+ * loopback interface, one result line per expression line.
+ *
+ * Specifications:
+ *
+ * - The protocol is line-based ASCII. Every line received is evaluated by
+ *   `RecursiveParser.evaluateExpression`, and answered by the result, formatted like
+ *   `Double.toString`, or by `ERROR ` followed by the message of the exception thrown, as in the
+ *   output of `BulkExpressionEvaluator`. A trailing carriage return is removed from every line, and
+ *   an unterminated last line is answered when the client shuts down its output.
+ *
+ * - Clients may pipeline: they can send any number of lines without waiting for their answers.
+ *   Answers are written to a buffer in the order of the requests, and the buffer is only flushed to
+ *   the socket once every request received so far has been answered, so that a batch of requests
+ *   is answered by as few writes as possible.
+ *
+ * - Each connection is served by its own thread. On Java 21 and later these are virtual threads,
+ *   so that tens of thousands of connections blocked in reads hold no platform thread. They are
+ *   created through reflection, as the class still compiles for Java 17, and earlier versions fall
+ *   back to daemon platform threads with a small stack.
+ *
+ * - Lines longer than `MAX_LINE_LENGTH` bytes are answered by an error and skipped, so that the
+ *   input buffer of a connection never grows beyond that size.
+ *
+ * - When accepting fails for the listening socket itself, for instance because the process ran
+ *   out of file descriptors, the acceptor counts the failure and waits before retrying, doubling
+ *   the wait up to a second while the failures persist, instead of spinning on the error.
+ *
+ * - The server counts the connections accepted and open, the failures to accept, the requests
+ *   answered and the errors, and records the time taken to answer each request in `Metrics.SERVER`.
+ *
+ * Time Complexity:
+ * - O(n) per request of n characters, when the expression is not cached yet.
+ *
+ * Space Complexity:
+ * - O(c * b) for c connections with input and output buffers of b bytes.
+ */
+public final class EvaluationServer implements Closeable {
+
+    /**
+     * The longest line accepted, in bytes.
+     */
+    static final int MAX_LINE_LENGTH = 64 << 10;
+
+    /**
+     * The initial size of the input buffer of a connection, doubled up to `MAX_LINE_LENGTH` for
+     * longer lines.
+     */
+    private static final int INPUT_BUFFER_SIZE = 4096;
+
+    private static final int OUTPUT_BUFFER_SIZE = 8192;
+
+    /**
+     * The number of connections the operating system may queue before they are accepted.
+     */
+    private static final int BACKLOG = 4096;
+
+    /**
+     * The stack size of the platform threads used before Java 21.
+     */
+    private static final long PLATFORM_STACK_SIZE = 256 << 10;
+
+    /**
+     * The first and the longest wait after a failure to accept, in milliseconds.
+     */
+    private static final long MIN_ACCEPT_BACKOFF = 10;
+    private static final long MAX_ACCEPT_BACKOFF = 1000;
+
+    private static final byte[] ERROR_PREFIX = "ERROR ".getBytes(StandardCharsets.US_ASCII);
+
+    private final ServerSocket serverSocket;
+    private final ThreadFactory threads = threadFactory("evaluation-connection");
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder acceptFailures = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final long startNanos = System.nanoTime();
+
+    private EvaluationServer(ServerSocket serverSocket) {
+        this.serverSocket = serverSocket;
+    }
+
+    /**
+     * Starts a server listening on the loopback interface.
+     *
+     * @param port The port to listen on, or 0 for any free port.
+     * @return The running server.
+     * @throws IOException If the port cannot be bound.
+     * @throws IllegalArgumentException If the port is out of range.
+     */
+    public static EvaluationServer start(int port) throws IOException {
+        if (port < 0 || port > 0xFFFF) {
+            throw new IllegalArgumentException("Port must be between 0 and 65535");
+        }
+        EvaluationServer server = new EvaluationServer(new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress()));
+        Thread acceptor = new Thread(server::accept, "evaluation-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server;
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return The local port.
+     */
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until the server is closed, starting a thread for each of them.
+     */
+    private void accept() {
+        long backoff = MIN_ACCEPT_BACKOFF;
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (serverSocket.isClosed()) {
+                    break;
+                }
+                // Such as too many open files, which persists until connections are closed
+                acceptFailures.increment();
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    break;
+                }
+                backoff = Math.min(2 * backoff, MAX_ACCEPT_BACKOFF);
+                continue;
+            }
+            backoff = MIN_ACCEPT_BACKOFF;
+            try {
+                // Answers are batched before they are written, so there is nothing for Nagle to merge
+                socket.setTcpNoDelay(true);
+            } catch (IOException e) {
+                // The connection was reset before it could be served
+                closeQuietly(socket);
+                continue;
+            }
+            accepted.increment();
+            connections.add(socket);
+            if (serverSocket.isClosed()) {
+                // close() may have missed this connection
+                connections.remove(socket);
+                closeQuietly(socket);
+                break;
+            }
+            threads.newThread(() -> serve(socket)).start();
+        }
+    }
+
+    /**
+     * Answers the lines received on one connection until the client closes it.
+     *
+     * @param socket The connection.
+     */
+    private void serve(Socket socket) {
+        try (socket;
+             InputStream in = socket.getInputStream();
+             OutputStream out = new BufferedOutputStream(socket.getOutputStream(), OUTPUT_BUFFER_SIZE)) {
+            byte[] buffer = new byte[INPUT_BUFFER_SIZE];
+            int filled = 0;
+            boolean skipping = false;
+            int n;
+            while ((n = in.read(buffer, filled, buffer.length - filled)) != -1) {
+                int end = filled + n;
+                int lineStart = 0;
+                // The bytes kept from the previous read hold no line break
+                for (int i = filled; i < end; i++) {
+                    if (buffer[i] == '\n') {
+                        if (skipping) {
+                            skipping = false;
+                        } else {
+                            answer(buffer, lineStart, i, out);
+                        }
+                        lineStart = i + 1;
+                    }
+                }
+                filled = end - lineStart;
+                System.arraycopy(buffer, lineStart, buffer, 0, filled);
+                if (filled == buffer.length) {
+                    if (buffer.length < MAX_LINE_LENGTH) {
+                        buffer = Arrays.copyOf(buffer, Math.min(2 * buffer.length, MAX_LINE_LENGTH));
+                    } else {
+                        if (!skipping) {
+                            answerError("Line is longer than " + MAX_LINE_LENGTH + " bytes", System.nanoTime(), out);
+                            skipping = true;
+                        }
+                        filled = 0;
+                    }
+                }
+                // Only write the answers once the requests already received are all answered
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+            if (filled > 0 && !skipping) {
+                answer(buffer, 0, filled, out);
+            }
+        } catch (SocketException e) {
+            // Reset by the client, or closed by close()
+        } catch (IOException e) {
+            // The client is gone, so there is nobody left to answer
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    /**
+     * Evaluates one line and writes its answer to the output buffer.
+     *
+     * @param line The buffer holding the line.
+     * @param from The index of the first byte of the line.
+     * @param to The index of the line break ending the line, or the end of the input.
+     * @param out The output buffer.
+     * @throws IOException If the answer cannot be written.
+     */
+    private void answer(byte[] line, int from, int to, OutputStream out) throws IOException {
+        long start = Metrics.start();
+        if (to > from && line[to - 1] == '\r') {
+            to--;
+        }
+        double result;
+        try {
+            result = RecursiveParser.evaluateExpression(new String(line, from, to - from, StandardCharsets.ISO_8859_1));
+        } catch (RuntimeException e) {
+            answerError(e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage(), start, out);
+            return;
+        }
+        writeLine(Double.toString(result), out);
+        requests.increment();
+        Metrics.SERVER.record(start);
+    }
+
+    private void answerError(String message, long start, OutputStream out) throws IOException {
+        out.write(ERROR_PREFIX);
+        // A line break in the message would answer one request with two lines
+        writeLine(message.replace('\r', ' ').replace('\n', ' '), out);
+        requests.increment();
+        errors.increment();
+        Metrics.SERVER.recordError(start);
+    }
+
+    private static void writeLine(String text, OutputStream out) throws IOException {
+        out.write(text.getBytes(StandardCharsets.ISO_8859_1));
+        out.write('\n');
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones.
+     */
+    @Override
+    public void close() {
+        closeQuietly(serverSocket);
+        for (Socket socket : connections) {
+            closeQuietly(socket);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Closing is best effort, the peer sees the connection end either way
+        }
+    }
+
+    /**
+     * Reads the current values of the counters of this server.
+     *
+     * @return The statistics.
+     */
+    public Stats stats() {
+        return new Stats(accepted.sum(), connections.size(), acceptFailures.sum(), requests.sum(), errors.sum(),
+                System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns a factory of threads for blocking socket I/O: virtual threads when the runtime
+     * supports them, daemon platform threads with a small stack otherwise.
+     *
+     * @param name The prefix of the names of the threads.
+     * @return The thread factory.
+     */
+    static ThreadFactory threadFactory(String name) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, name + "-", 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            // Before Java 21, or a preview feature that is not enabled
+            AtomicLong ids = new AtomicLong();
+            return runnable -> {
+                Thread thread = new Thread(null, runnable, name + "-" + ids.getAndIncrement(), PLATFORM_STACK_SIZE);
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+    /**
+     * The values of the counters of a server at one point in time.
+     */
+    public static final class Stats {
+        private final long connectionsAccepted;
+        private final int openConnections;
+        private final long acceptFailures;
+        private final long requests;
+        private final long errors;
+        private final long uptimeNanos;
+
+        Stats(long connectionsAccepted, int openConnections, long acceptFailures, long requests, long errors,
+                long uptimeNanos) {
+            this.connectionsAccepted = connectionsAccepted;
+            this.openConnections = openConnections;
+            this.acceptFailures = acceptFailures;
+            this.requests = requests;
+            this.errors = errors;
+            this.uptimeNanos = uptimeNanos;
+        }
+
+        public long connectionsAccepted() {
+            return connectionsAccepted;
+        }
+
+        public int openConnections() {
+            return openConnections;
+        }
+
+        /**
+         * Returns the number of times accepting a connection failed for the listening socket, each
+         * followed by a wait before the next attempt.
+         *
+         * @return The accept failure count.
+         */
+        public long acceptFailures() {
+            return acceptFailures;
+        }
+
+        /**
+         * Returns the number of requests answered, including errors.
+         *
+         * @return The request count.
+         */
+        public long requests() {
+            return requests;
+        }
+
+        /**
+         * Returns the number of requests answered by an error.
+         *
+         * @return The error count.
+         */
+        public long errors() {
+            return errors;
+        }
+
+        public long uptimeNanos() {
+            return uptimeNanos;
+        }
+
+        /**
+         * Returns the mean throughput since the server started.
+         *
+         * @return The number of requests answered per second.
+         */
+        public double requestsPerSecond() {
+            return uptimeNanos == 0 ? 0 : requests * 1e9 / uptimeNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d connections (%d open, %d accept failures), %d requests, %d errors, %.0f requests/s",
+                    connectionsAccepted, openConnections, acceptFailures, requests, errors, requestsPerSecond());
+        }
+    }
+
+    /**
+     * The main method runs a server until the process is stopped, printing its statistics and the
+     * latencies of `Metrics.SERVER` every ten seconds.
+     *
+     * @param args The port to listen on, 0 or none for any free port.
+     * @throws IOException If the port cannot be bound.
+     * @throws InterruptedException If the main thread is interrupted.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        try (EvaluationServer server = start(args.length > 0 ? Integer.parseInt(args[0]) : 0)) {
+            System.out.println("Listening on port " + server.port());
+            while (true) {
+                Thread.sleep(10_000);
+                System.out.println(server.stats());
+                System.out.println(Metrics.SERVER.snapshot());
+            }
+        }
+    }
+}
@@ -0,0 +1,268 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The ExpressionCache class keeps a bounded number of compiled expressions keyed by their source
+ * text, so that repeated evaluations of the same expression skip parsing completely.
+ *
+ * Specifications:
+ *
+ * - The cache is split into up to 16 segments selected by the hash of the expression, fewer when
+ *   the capacity is smaller, so that every segment can hold at least one entry.
+ *   Each segment is an access-ordered `LinkedHashMap` guarded by its own lock, which keeps
+ *   contention low when many threads evaluate different expressions.
+ *
+ * - Each segment holds at most its share of the total capacity. When a segment is full, its least
+ *   recently used entry is evicted.
+ *
+ * - Expressions are compiled outside the segment lock. If two threads miss on the same expression
+ *   at the same time, both compile it and the first result stored wins.
+ *
+ * - An entry can be upgraded in place to an expression backed by generated code. Evicting such an
+ *   entry drops the last reference to its generated class, which can then be unloaded.
+ *
+ * - Expressions that fail to compile are never cached; the exception reaches the caller.
+ *
+ * - Hit, miss and eviction counters are kept for monitoring.
+ *
+ * Time Complexity:
+ * - O(1) per lookup on a hit, plus the cost of compiling the expression on a miss.
+ *
+ * Space Complexity:
+ * - O(c) where c is the capacity of the cache.
+ */
+public final class ExpressionCache {
+
+    /**
+     * The number of segments of caches with a capacity of at least that many entries, a power of two.
+     */
+    private static final int SEGMENTS = 16;
+
+    private final int capacity;
+    private final Segment[] segments;
+
+    /**
+     * Creates an empty cache holding at most the given number of compiled expressions.
+     *
+     * @param capacity The maximum number of entries kept by the cache.
+     * @throws IllegalArgumentException If the capacity is not positive.
+     */
+    public ExpressionCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        // A power of two no larger than the capacity, so that no segment has a share of 0
+        int count = Integer.highestOneBit(Math.min(SEGMENTS, capacity));
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            // Spread the capacity so that the segments add up to exactly the requested total
+            int share = capacity / count + (i < capacity % count ? 1 : 0);
+            segments[i] = new Segment(share);
+        }
+    }
+
+    /**
+     * Returns the compiled form of the given expression, compiling and caching it on a miss.
+     *
+     * @param expression The arithmetic expression, which must not be null or empty.
+     * @return The compiled expression.
+     * @throws IllegalArgumentException If the expression contains invalid characters or is unbalanced.
+     * @throws ArithmeticException If a division by a constant zero is found while folding constants.
+     */
+    public CompiledExpression get(String expression) {
+        return get(expression, false);
+    }
+
+    /**
+     * Returns the compiled form of the given expression, compiling and caching it on a miss.
+     *
+     * @param expression The arithmetic expression, which must not be null or empty.
+     * @param generateCode Whether the cached expression should be backed by generated code.
+     * @return The compiled expression.
+     * @throws IllegalArgumentException If the expression contains invalid characters or is unbalanced.
+     * @throws ArithmeticException If a division by a constant zero is found while folding constants.
+     */
+    public CompiledExpression get(String expression, boolean generateCode) {
+        Segment segment = segmentFor(expression);
+        CompiledExpression compiled = segment.lookup(expression);
+        if (compiled != null && (!generateCode || compiled.hasGeneratedCode())) {
+            return compiled;
+        }
+        if (compiled == null) {
+            compiled = RecursiveParser.parse(expression);
+        }
+        if (generateCode) {
+            compiled = compiled.withGeneratedCode();
+        }
+        return segment.store(expression, compiled);
+    }
+
+    /**
+     * Returns the compiled form of the given expression like `get(String)`, but rejects variables
+     * with the message of any other invalid character, at the point where parsing reaches them.
+     *
+     * @param expression The arithmetic expression, which must not be null or empty.
+     * @return The compiled expression, which has no variables.
+     * @throws IllegalArgumentException If the expression contains invalid characters or is unbalanced.
+     * @throws ArithmeticException If a division by a constant zero is found while folding constants.
+     */
+    public CompiledExpression getWithoutVariables(String expression) {
+        Segment segment = segmentFor(expression);
+        CompiledExpression compiled = segment.lookup(expression);
+        if (compiled == null) {
+            return segment.store(expression, RecursiveParser.parse(expression, false));
+        }
+        if (!compiled.variables().isEmpty()) {
+            // Cached by compile, parsing it again reports the first error as evaluateExpression would
+            return RecursiveParser.parse(expression, false);
+        }
+        return compiled;
+    }
+
+    /**
+     * Removes all entries from the cache. The counters are left untouched.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Returns the maximum number of entries kept by the cache.
+     *
+     * @return The capacity of the cache.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of entries currently held by the cache.
+     *
+     * @return The number of cached expressions.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of lookups that found a compiled expression in the cache.
+     *
+     * @return The hit count.
+     */
+    public long hitCount() {
+        long hits = 0;
+        for (Segment segment : segments) {
+            hits += segment.hits();
+        }
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that had to compile the expression.
+     *
+     * @return The miss count.
+     */
+    public long missCount() {
+        long misses = 0;
+        for (Segment segment : segments) {
+            misses += segment.misses();
+        }
+        return misses;
+    }
+
+    /**
+     * Returns the number of entries removed to make room for new ones.
+     *
+     * @return The eviction count.
+     */
+    public long evictionCount() {
+        long evictions = 0;
+        for (Segment segment : segments) {
+            evictions += segment.evictions();
+        }
+        return evictions;
+    }
+
+    /**
+     * Selects the segment responsible for the given expression.
+     *
+     * @param expression The expression used as the key.
+     * @return The segment holding the key.
+     */
+    private Segment segmentFor(String expression) {
+        int h = expression.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (segments.length - 1)];
+    }
+
+    /**
+     * One independently locked part of the cache.
+     */
+    private static final class Segment {
+        private final LinkedHashMap<String, CompiledExpression> entries;
+        private long hits;
+        private long misses;
+        private long evictions;
+
+        Segment(int capacity) {
+            this.entries = new LinkedHashMap<String, CompiledExpression>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CompiledExpression> eldest) {
+                    if (size() > capacity) {
+                        evictions++;
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized CompiledExpression lookup(String expression) {
+            CompiledExpression compiled = entries.get(expression);
+            if (compiled != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+            return compiled;
+        }
+
+        synchronized CompiledExpression store(String expression, CompiledExpression compiled) {
+            CompiledExpression existing = entries.get(expression);
+            if (existing != null && (existing.hasGeneratedCode() || !compiled.hasGeneratedCode())) {
+                return existing;
+            }
+            entries.put(expression, compiled);
+            return compiled;
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        synchronized long hits() {
+            return hits;
+        }
+
+        synchronized long misses() {
+            return misses;
+        }
+
+        synchronized long evictions() {
+            return evictions;
+        }
+    }
+}
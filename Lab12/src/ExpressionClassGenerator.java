@@ -0,0 +1,336 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The ExpressionClassGenerator class translates the evaluation tree of a compiled expression into
+ * the bytecode of a class, so that evaluating the expression runs as straight-line arithmetic
+ * instead of one virtual call per tree node.
+ *
+ * Specifications:
+ *
+ * - The `generate` method emits a final class implementing `CompiledExpression.Kernel`. Its
+ *   `evaluate` method loads constants with `ldc2_w`, reads variables with `daload` and combines
+ *   them with `dadd`, `dsub` and `dmul`, in the same order as the tree evaluator.
+ *
+ * - Divisions call the static `divide` method of this class, which throws the same
+ *   `ArithmeticException` as the tree evaluator for a zero divisor. The call keeps the generated
+ *   code free of branches and is inlined by the JIT compiler.
+ *
+ * - The class is defined with `MethodHandles.Lookup.defineHiddenClass` without the `STRONG`
+ *   option, so it is unloaded once the compiled expression holding it becomes unreachable, for
+ *   instance after being evicted from the expression cache.
+ *
+ * - The `evaluate` method is limited to 8000 bytes of bytecode, HotSpot's `HugeMethodLimit`, as
+ *   larger methods are never compiled by the JIT compiler and would stay interpreted, no faster
+ *   than the tree. Larger expressions, or those exceeding the limits of the class file format, are
+ *   not generated; `generate` returns null and the caller keeps using the tree.
+ *
+ * Time Complexity:
+ * - O(m) to generate, where m is the number of nodes in the tree.
+ *
+ * Space Complexity:
+ * - O(m) for the class file.
+ */
+final class ExpressionClassGenerator {
+
+    /**
+     * The largest `evaluate` method generated, HotSpot's default `HugeMethodLimit`.
+     */
+    static final int MAX_CODE_LENGTH = 8000;
+
+    // Every node takes at least one byte of code
+    private static final int MAX_NODES = MAX_CODE_LENGTH;
+    private static final int MAX_CONSTANT_POOL = 65535;
+
+    // Constant pool entries shared by every generated class
+    private static final int THIS_CLASS = 2;
+    private static final int OBJECT_CLASS = 4;
+    private static final int KERNEL_CLASS = 6;
+    private static final int INIT_NAME = 7;
+    private static final int VOID_DESCRIPTOR = 8;
+    private static final int OBJECT_INIT = 10;
+    private static final int EVALUATE_NAME = 11;
+    private static final int EVALUATE_DESCRIPTOR = 12;
+    private static final int CODE_ATTRIBUTE = 13;
+    private static final int DIVIDE_METHOD = 19;
+    private static final int FIXED_ENTRIES = 20;
+
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+    private final Map<Long, Integer> doubles = new HashMap<>();
+    private final ByteArrayOutputStream doublePool = new ByteArrayOutputStream();
+    private int nextEntry = FIXED_ENTRIES;
+    private int depth;
+    private int maxDepth;
+
+    private ExpressionClassGenerator() {
+    }
+
+    /**
+     * Generates and instantiates a hidden class evaluating the given tree.
+     *
+     * @param root The root node of the evaluation tree.
+     * @return The generated kernel, or null if the expression is too large for a method that the JIT
+     *         compiler compiles.
+     */
+    static CompiledExpression.Kernel generate(CompiledExpression.Node root) {
+        if (countNodes(root, MAX_NODES + 1) > MAX_NODES) {
+            return null;
+        }
+        ExpressionClassGenerator generator = new ExpressionClassGenerator();
+        if (!generator.emit(root)) {
+            return null;
+        }
+        generator.code.write(0xaf); // dreturn
+        if (generator.code.size() > MAX_CODE_LENGTH) {
+            return null;
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(generator.toClassFile(), true);
+            return (CompiledExpression.Kernel) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot define generated expression class", e);
+        }
+    }
+
+    /**
+     * Counts the nodes of a tree without recursion, stopping once the given limit is reached.
+     *
+     * @param root The root node of the tree.
+     * @param limit The count at which to stop.
+     * @return The number of nodes, or the limit if the tree has at least that many nodes.
+     */
+    private static int countNodes(CompiledExpression.Node root, int limit) {
+        ArrayDeque<CompiledExpression.Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        int count = 0;
+        while (!pending.isEmpty() && count < limit) {
+            CompiledExpression.Node node = pending.pop();
+            count++;
+            if (node instanceof CompiledExpression.Binary) {
+                pending.push(((CompiledExpression.Binary) node).left);
+                pending.push(((CompiledExpression.Binary) node).right);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Divides two operands on behalf of the generated code.
+     *
+     * @param a The dividend.
+     * @param b The divisor.
+     * @return The quotient.
+     * @throws ArithmeticException If the divisor is zero.
+     */
+    static double divide(double a, double b) {
+        if (b == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        return a / b;
+    }
+
+    /**
+     * Emits the instructions leaving the value of the given subtree on the operand stack.
+     *
+     * @param node The subtree to be emitted.
+     * @return False if the subtree cannot be represented within the code size and class file limits.
+     */
+    private boolean emit(CompiledExpression.Node node) {
+        if (node instanceof CompiledExpression.Constant) {
+            double value = ((CompiledExpression.Constant) node).value;
+            long bits = Double.doubleToRawLongBits(value);
+            if (bits == 0L) {
+                code.write(0x0e); // dconst_0
+            } else if (bits == Double.doubleToRawLongBits(1.0)) {
+                code.write(0x0f); // dconst_1
+            } else {
+                Integer entry = doubles.get(bits);
+                if (entry == null) {
+                    if (nextEntry + 2 > MAX_CONSTANT_POOL) {
+                        return false;
+                    }
+                    entry = nextEntry;
+                    nextEntry += 2; // A double takes two constant pool entries
+                    doubles.put(bits, entry);
+                    doublePool.write(6); // CONSTANT_Double
+                    writeLong(doublePool, bits);
+                }
+                code.write(0x14); // ldc2_w
+                writeShort(code, entry);
+            }
+            push(2);
+        } else if (node instanceof CompiledExpression.Variable) {
+            int slot = ((CompiledExpression.Variable) node).slot;
+            if (slot > Short.MAX_VALUE) {
+                return false;
+            }
+            code.write(0x2b); // aload_1
+            push(1);
+            if (slot <= 5) {
+                code.write(0x03 + slot); // iconst_<n>
+            } else if (slot <= Byte.MAX_VALUE) {
+                code.write(0x10); // bipush
+                code.write(slot);
+            } else {
+                code.write(0x11); // sipush
+                writeShort(code, slot);
+            }
+            push(1);
+            code.write(0x31); // daload
+            depth -= 2;
+            push(2);
+        } else {
+            CompiledExpression.Binary binary = (CompiledExpression.Binary) node;
+            if (!emit(binary.left) || !emit(binary.right)) {
+                return false;
+            }
+            switch (binary.operator) {
+                case '+':
+                    code.write(0x63); // dadd
+                    break;
+                case '-':
+                    code.write(0x67); // dsub
+                    break;
+                case '*':
+                    code.write(0x6b); // dmul
+                    break;
+                case '/':
+                    code.write(0xb8); // invokestatic divide
+                    writeShort(code, DIVIDE_METHOD);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown operator: " + binary.operator);
+            }
+            depth -= 2;
+        }
+        // Bail out early instead of building a huge method that would be rejected anyway
+        return code.size() <= MAX_CODE_LENGTH;
+    }
+
+    private void push(int slots) {
+        depth += slots;
+        maxDepth = Math.max(maxDepth, depth);
+    }
+
+    /**
+     * Assembles the class file around the emitted code.
+     *
+     * @return The bytes of the class file.
+     */
+    private byte[] toClassFile() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + code.size() + doublePool.size());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(52); // Java 8 class file, which needs no stack map for branch-free code
+
+            out.writeShort(nextEntry);
+            writeUtf8(out, "GeneratedExpression");                  // 1
+            writeClass(out, 1);                                     // 2
+            writeUtf8(out, "java/lang/Object");                     // 3
+            writeClass(out, 3);                                     // 4
+            writeUtf8(out, "CompiledExpression$Kernel");            // 5
+            writeClass(out, 5);                                     // 6
+            writeUtf8(out, "<init>");                               // 7
+            writeUtf8(out, "()V");                                  // 8
+            writeNameAndType(out, INIT_NAME, VOID_DESCRIPTOR);      // 9
+            writeMethodref(out, OBJECT_CLASS, 9);                   // 10
+            writeUtf8(out, "evaluate");                             // 11
+            writeUtf8(out, "([D)D");                                // 12
+            writeUtf8(out, "Code");                                 // 13
+            writeUtf8(out, "ExpressionClassGenerator");             // 14
+            writeClass(out, 14);                                    // 15
+            writeUtf8(out, "divide");                               // 16
+            writeUtf8(out, "(DD)D");                                // 17
+            writeNameAndType(out, 16, 17);                          // 18
+            writeMethodref(out, 15, 18);                            // 19
+            doublePool.writeTo(out);
+
+            out.writeShort(0x0010 | 0x0020); // ACC_FINAL | ACC_SUPER
+            out.writeShort(THIS_CLASS);
+            out.writeShort(OBJECT_CLASS);
+            out.writeShort(1);
+            out.writeShort(KERNEL_CLASS);
+            out.writeShort(0); // no fields
+
+            out.writeShort(2);
+            // public GeneratedExpression() { super(); }
+            out.writeShort(0x0001);
+            out.writeShort(INIT_NAME);
+            out.writeShort(VOID_DESCRIPTOR);
+            out.writeShort(1);
+            out.writeShort(CODE_ATTRIBUTE);
+            out.writeInt(12 + 5);
+            out.writeShort(1);
+            out.writeShort(1);
+            out.writeInt(5);
+            out.writeByte(0x2a); // aload_0
+            out.writeByte(0xb7); // invokespecial Object.<init>
+            out.writeShort(OBJECT_INIT);
+            out.writeByte(0xb1); // return
+            out.writeShort(0);
+            out.writeShort(0);
+
+            // public double evaluate(double[] values) { ... }
+            out.writeShort(0x0001);
+            out.writeShort(EVALUATE_NAME);
+            out.writeShort(EVALUATE_DESCRIPTOR);
+            out.writeShort(1);
+            out.writeShort(CODE_ATTRIBUTE);
+            out.writeInt(12 + code.size());
+            out.writeShort(maxDepth);
+            out.writeShort(2);
+            out.writeInt(code.size());
+            code.writeTo(out);
+            out.writeShort(0);
+            out.writeShort(0);
+
+            out.writeShort(0); // no class attributes
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeUtf8(DataOutputStream out, String value) throws IOException {
+        out.writeByte(1);
+        out.writeUTF(value);
+    }
+
+    private static void writeClass(DataOutputStream out, int name) throws IOException {
+        out.writeByte(7);
+        out.writeShort(name);
+    }
+
+    private static void writeNameAndType(DataOutputStream out, int name, int descriptor) throws IOException {
+        out.writeByte(12);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+    }
+
+    private static void writeMethodref(DataOutputStream out, int owner, int nameAndType) throws IOException {
+        out.writeByte(10);
+        out.writeShort(owner);
+        out.writeShort(nameAndType);
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+}
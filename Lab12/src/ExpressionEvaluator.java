@@ -0,0 +1,293 @@
+import java.util.Arrays;
+
+/**
+ * The ExpressionEvaluator class evaluates arithmetic expressions in a single left-to-right pass
+ * using primitive stacks, without allocating any objects for well-formed input.
+ *
+ * Specifications:
+ *
+ * - The `evaluate` method accepts the same expressions as `RecursiveParser.evaluateExpression` and
+ *   produces the same results and exceptions, including the treatment of whitespace: whitespace is
+ *   skipped wherever it occurs, even between the digits of a number, exactly as if it had been
+ *   removed before parsing.
+ *
+ * - Operands are kept on a `double[]` stack and operators on a `char[]` stack. Parentheses open a
+ *   new frame on an `int[]` stack instead of a recursive call, so arbitrarily deep nesting never
+ *   causes a `StackOverflowError`.
+ *
+ * - Numbers are converted directly from the character sequence. Numbers with at most 15
+ *   significant digits and at most 22 fractional digits are converted with a single exactly rounded
+ *   floating-point operation; any other number, including malformed ones, is converted by
+ *   `Double.parseDouble` so that the result and the exception are the same as before.
+ *
+ * - The stacks grow on demand and are kept for the next call. An instance is not thread-safe and
+ *   is meant to be reused by a single thread, which is how `RecursiveParser` uses it.
+ *
+ * Time Complexity:
+ * - O(n), where n is the number of characters in the expression, as each character is processed once.
+ *
+ * Space Complexity:
+ * - O(n) for the stacks, which are reused across calls.
+ */
+final class ExpressionEvaluator {
+
+    /**
+     * Exact powers of ten representable as doubles.
+     */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private double[] values = new double[16];
+    private char[] operators = new char[16];
+    private int[] frames = new int[16];
+
+    private int valueTop;
+    private int operatorTop;
+    private int frameTop;
+
+    /**
+     * Evaluates the given arithmetic expression.
+     *
+     * @param expression The arithmetic expression to be evaluated.
+     * @return The result of the evaluation as a double.
+     * @throws IllegalArgumentException If the expression is null, empty, or contains invalid characters.
+     * @throws ArithmeticException If a division by zero occurs.
+     */
+    double evaluate(CharSequence expression) {
+        if (expression == null || expression.length() == 0) {
+            throw new IllegalArgumentException("Expression cannot be null or empty");
+        }
+        valueTop = 0;
+        operatorTop = 0;
+        frameTop = 0;
+        int valueBase = 0;
+        int operatorBase = 0;
+        int length = expression.length();
+        int index = 0;
+
+        while (index < length) {
+            char c = expression.charAt(index);
+
+            if (isWhitespace(c)) {
+                index++;
+            } else if (Character.isDigit(c) || c == '.') {
+                index = parseNumber(expression, index);
+            } else if (c == '(') {
+                // Open a frame for the sub-expression instead of recursing
+                pushFrame(valueBase, operatorBase);
+                valueBase = valueTop;
+                operatorBase = operatorTop;
+                index++;
+            } else if (c == ')') {
+                index++;
+                if (frameTop == 0) {
+                    // A closing parenthesis at the top level ends the expression
+                    break;
+                }
+                finishFrame(valueBase, operatorBase);
+                operatorBase = frames[--frameTop];
+                valueBase = frames[--frameTop];
+            } else if (isOperator(c)) {
+                while (operatorTop > operatorBase && precedence(operators[operatorTop - 1]) >= precedence(c)) {
+                    applyOperation(valueBase, operators[--operatorTop]);
+                }
+                pushOperator(c);
+                index++;
+            } else {
+                throw new IllegalArgumentException("Invalid character in expression: " + c);
+            }
+        }
+
+        // Close the sub-expressions still open at the end of the input, innermost first
+        while (frameTop > 0) {
+            finishFrame(valueBase, operatorBase);
+            operatorBase = frames[--frameTop];
+            valueBase = frames[--frameTop];
+        }
+        finishFrame(valueBase, operatorBase);
+        return values[0];
+    }
+
+    /**
+     * Applies the remaining operators of the current frame and checks that it reduced to a single value.
+     *
+     * @param valueBase The index of the first value belonging to the frame.
+     * @param operatorBase The index of the first operator belonging to the frame.
+     * @throws IllegalArgumentException If the frame is unbalanced.
+     * @throws ArithmeticException If a division by zero occurs.
+     */
+    private void finishFrame(int valueBase, int operatorBase) {
+        while (operatorTop > operatorBase) {
+            applyOperation(valueBase, operators[--operatorTop]);
+        }
+        if (valueTop - valueBase != 1) {
+            throw new IllegalArgumentException("Invalid expression: Unbalanced operators and operands");
+        }
+    }
+
+    /**
+     * Applies the given operator on the top two values of the current frame.
+     *
+     * @param valueBase The index of the first value belonging to the current frame.
+     * @param operator The operator to be applied.
+     * @throws IllegalArgumentException If there are not enough values in the frame for the operation.
+     * @throws ArithmeticException If a division by zero occurs.
+     */
+    private void applyOperation(int valueBase, char operator) {
+        if (valueTop - valueBase < 2) {
+            throw new IllegalArgumentException("Invalid expression: Insufficient values for operator " + operator);
+        }
+        double b = values[--valueTop];
+        double a = values[valueTop - 1];
+        values[valueTop - 1] = RecursiveParser.apply(operator, a, b);
+    }
+
+    /**
+     * Parses the number starting at the given index and pushes it onto the value stack.
+     *
+     * @param expression The expression being evaluated.
+     * @param start The index of the first character of the number.
+     * @return The index of the first character after the number.
+     * @throws NumberFormatException If the number is malformed.
+     */
+    private int parseNumber(CharSequence expression, int start) {
+        int length = expression.length();
+        long mantissa = 0;
+        int significantDigits = 0;
+        int fractionDigits = 0;
+        boolean seenPoint = false;
+        boolean exact = true;
+        int end = start;
+
+        while (end < length) {
+            char c = expression.charAt(end);
+            if (c >= '0' && c <= '9') {
+                if (mantissa != 0 || c != '0') {
+                    significantDigits++;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (seenPoint) {
+                    fractionDigits++;
+                }
+                if (significantDigits > 15) {
+                    exact = false;
+                }
+            } else if (c == '.') {
+                if (seenPoint) {
+                    exact = false;
+                }
+                seenPoint = true;
+            } else if (Character.isDigit(c)) {
+                // Digits outside ASCII are rejected by Double.parseDouble
+                exact = false;
+            } else if (!isWhitespace(c)) {
+                break;
+            }
+            end++;
+        }
+
+        double value;
+        // Up to 15 digits the mantissa is below 2^53 and therefore exact as a double
+        if (exact && fractionDigits < POWERS_OF_TEN.length
+                && (significantDigits > 0 || hasDigit(expression, start, end))) {
+            value = mantissa / POWERS_OF_TEN[fractionDigits];
+        } else {
+            value = Double.parseDouble(stripWhitespace(expression, start, end));
+        }
+        pushValue(value);
+        return end;
+    }
+
+    /**
+     * Checks whether the given range contains at least one ASCII digit, which tells a number
+     * made of zeros apart from a lone decimal point.
+     *
+     * @param expression The expression being evaluated.
+     * @param start The first index of the range.
+     * @param end The index after the last character of the range.
+     * @return True if an ASCII digit occurs in the range.
+     */
+    private static boolean hasDigit(CharSequence expression, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = expression.charAt(i);
+            if (c >= '0' && c <= '9') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copies the given range without its whitespace. Only used for numbers outside the fast path.
+     *
+     * @param expression The expression being evaluated.
+     * @param start The first index of the range.
+     * @param end The index after the last character of the range.
+     * @return The characters of the range with whitespace removed.
+     */
+    private static String stripWhitespace(CharSequence expression, int start, int end) {
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = expression.charAt(i);
+            if (!isWhitespace(c)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private void pushValue(double value) {
+        if (valueTop == values.length) {
+            values = Arrays.copyOf(values, valueTop * 2);
+        }
+        values[valueTop++] = value;
+    }
+
+    private void pushOperator(char operator) {
+        if (operatorTop == operators.length) {
+            operators = Arrays.copyOf(operators, operatorTop * 2);
+        }
+        operators[operatorTop++] = operator;
+    }
+
+    private void pushFrame(int valueBase, int operatorBase) {
+        if (frameTop + 2 > frames.length) {
+            frames = Arrays.copyOf(frames, frames.length * 2);
+        }
+        frames[frameTop++] = valueBase;
+        frames[frameTop++] = operatorBase;
+    }
+
+    /**
+     * Checks if the given character is whitespace in the sense of the regular expression `\s`,
+     * which is what the original evaluator removed before parsing.
+     *
+     * @param c The character to be checked.
+     * @return True if the character is a space, tab, line feed, vertical tab, form feed or carriage return.
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Checks if the given character is a valid operator.
+     *
+     * @param c The character to be checked.
+     * @return True if the character is a valid operator (+, -, *, /), otherwise false.
+     */
+    private static boolean isOperator(char c) {
+        return c == '+' || c == '-' || c == '*' || c == '/';
+    }
+
+    /**
+     * Returns the precedence of the given operator.
+     *
+     * @param operator The operator whose precedence is to be determined.
+     * @return The precedence of the operator, where higher values indicate higher precedence.
+     */
+    private static int precedence(char operator) {
+        return operator == '*' || operator == '/' ? 2 : 1;
+    }
+}
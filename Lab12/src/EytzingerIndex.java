@@ -0,0 +1,230 @@
+import java.util.Random;
+
+/**
+ * The EytzingerIndex class is an immutable search index over a sorted array of integers, stored in
+ * Eytzinger (breadth-first) order to make lookups on large arrays cache friendly.
+ *
+ * Specifications:
+ *
+ * - The index is built once from a sorted array. Element k of the layout holds the root of an
+ *   implicit binary search tree for k = 1, and the children of element k are at 2k and 2k + 1.
+ *   The first levels of the tree therefore share a few cache lines that stay hot, and the
+ *   descendants four levels below a node are contiguous, which the hardware prefetcher can follow.
+ *
+ * - The `indexOf` method descends the tree with a branch-free step, computing the next node from
+ *   the comparison result instead of branching on it, so there are no mispredicted branches.
+ *
+ * - Java has no prefetch instruction, so the descent issues an ordinary load of the 16 descendants
+ *   four levels below the current node, which occupy one cache line. The load does not depend on
+ *   any comparison, so the processor fetches that line while the next four levels are compared.
+ *
+ * - The original position of every element is stored next to the layout, and the result is the
+ *   same index `BinarySearch.binarySearchRecursive` returns for the whole array, -1 when the
+ *   target is absent. For duplicated targets the run of occurrences is located and the recursive
+ *   probe sequence is replayed on it with `BinarySearch.resolveIndex`.
+ *
+ * - It throws an `IllegalArgumentException` if the array is null, empty, not sorted, or has more
+ *   than 2^30 - 1 elements, beyond which the node numbers would overflow.
+ *
+ * Time Complexity:
+ * - O(n) to build the index.
+ * - O(log n) per lookup, with far fewer cache misses than a binary search on large arrays.
+ *
+ * Space Complexity:
+ * - O(n) for the layout and the original positions.
+ */
+public final class EytzingerIndex {
+
+    /**
+     * The largest supported size, for which 2k + 1 never overflows while descending.
+     */
+    static final int MAX_SIZE = (1 << 30) - 1;
+
+    private final int size;
+    private final int prefetchLimit;
+    private final int[] layout;
+    private final int[] positions;
+    private final boolean duplicates;
+
+    /**
+     * Builds the index from a sorted array. The array is copied and may be modified afterwards.
+     *
+     * @param sortedArray The sorted array to be indexed.
+     * @throws IllegalArgumentException If the array is null, empty, too large, or not sorted in ascending order.
+     */
+    public EytzingerIndex(int[] sortedArray) {
+        if (sortedArray == null || sortedArray.length == 0) {
+            throw new IllegalArgumentException("Array cannot be null or empty");
+        }
+        if (sortedArray.length > MAX_SIZE) {
+            throw new IllegalArgumentException("Array cannot have more than " + MAX_SIZE + " elements");
+        }
+        boolean repeated = false;
+        for (int i = 1; i < sortedArray.length; i++) {
+            if (sortedArray[i - 1] > sortedArray[i]) {
+                throw new IllegalArgumentException("Array must be sorted in ascending order");
+            }
+            repeated |= sortedArray[i - 1] == sortedArray[i];
+        }
+        this.size = sortedArray.length;
+        this.prefetchLimit = size >>> 4;
+        this.layout = new int[size + 1];
+        this.positions = new int[size + 1];
+        this.duplicates = repeated;
+        build(sortedArray, 0, 1);
+    }
+
+    /**
+     * Fills the subtree rooted at the given node with consecutive sorted elements.
+     *
+     * @param sortedArray The sorted source array.
+     * @param next The index of the next sorted element to place.
+     * @param node The node of the layout to fill.
+     * @return The index of the next sorted element after the subtree.
+     */
+    private int build(int[] sortedArray, int next, int node) {
+        if (node <= size) {
+            next = build(sortedArray, next, 2 * node);
+            layout[node] = sortedArray[next];
+            positions[node] = next++;
+            next = build(sortedArray, next, 2 * node + 1);
+        }
+        return next;
+    }
+
+    /**
+     * Searches the index for the given target.
+     *
+     * @param target The element that needs to be found.
+     * @return The index `binarySearchRecursive` returns for the original array, otherwise -1.
+     */
+    public int indexOf(int target) {
+        int node = lowerBound(target);
+        if (node == 0 || layout[node] != target) {
+            return -1;
+        }
+        int from = positions[node];
+        if (!duplicates) {
+            return from;
+        }
+        int upper = upperBound(target);
+        int to = upper == 0 ? size : positions[upper];
+        return BinarySearch.resolveIndex(from, to, 0, size - 1);
+    }
+
+    /**
+     * Returns the number of elements in the index.
+     *
+     * @return The size of the original array.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the node holding the first element not less than the target.
+     *
+     * @param target The element searched for.
+     * @return The node of the layout, or 0 if every element is less than the target.
+     */
+    private int lowerBound(int target) {
+        int node = 1;
+        int prefetched = 0;
+        while (node <= prefetchLimit) {
+            // Load the cache line four levels down early, it is needed after four more steps
+            prefetched += layout[node << 4];
+            node = 2 * node + (layout[node] < target ? 1 : 0);
+        }
+        while (node <= size) {
+            node = 2 * node + (layout[node] < target ? 1 : 0);
+        }
+        return finish(node, prefetched, target);
+    }
+
+    /**
+     * Finds the node holding the first element greater than the target.
+     *
+     * @param target The element searched for.
+     * @return The node of the layout, or 0 if no element is greater than the target.
+     */
+    private int upperBound(int target) {
+        int node = 1;
+        int prefetched = 0;
+        while (node <= prefetchLimit) {
+            prefetched += layout[node << 4];
+            node = 2 * node + (layout[node] <= target ? 1 : 0);
+        }
+        while (node <= size) {
+            node = 2 * node + (layout[node] <= target ? 1 : 0);
+        }
+        return finish(node, prefetched, target);
+    }
+
+    /**
+     * Turns the position reached below the leaves into the node that ended the search.
+     *
+     * @param node The position reached by the descent.
+     * @param prefetched The sum of the prefetching loads.
+     * @param target The element searched for.
+     * @return The node of the layout, or 0 if the search ran off the right end.
+     */
+    private static int finish(int node, int prefetched, int target) {
+        // Node is never negative, but the check keeps the prefetching loads from being optimized away
+        if (prefetched == target && node < 0) {
+            return 0;
+        }
+        // Undo the right turns taken after the last left turn
+        return node >>> (Integer.numberOfTrailingZeros(~node) + 1);
+    }
+
+    /**
+     * The main method compares the lookup latency of the index with `binarySearchRecursive`.
+     * The array sizes to measure can be given as arguments; 1M, 16M and 64M elements are used
+     * otherwise. Larger sizes need a correspondingly large heap.
+     *
+     * @param args The array sizes to measure.
+     */
+    public static void main(String[] args) {
+        int[] sizes = {1 << 20, 1 << 24, 1 << 26};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        Random random = new Random(42);
+        int lookups = 1 << 22;
+        for (int n : sizes) {
+            int[] sortedArray = new int[n];
+            for (int i = 0; i < n; i++) {
+                sortedArray[i] = 2 * i;
+            }
+            EytzingerIndex index = new EytzingerIndex(sortedArray);
+            int[] keys = new int[lookups];
+            for (int i = 0; i < lookups; i++) {
+                keys[i] = random.nextInt(2 * n);
+            }
+
+            long checksum = 0;
+            for (int round = 0; round < 3; round++) {
+                long start = System.nanoTime();
+                for (int key : keys) {
+                    checksum += BinarySearch.binarySearchRecursive(sortedArray, key, 0, n - 1);
+                }
+                long recursive = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int key : keys) {
+                    checksum -= index.indexOf(key);
+                }
+                long eytzinger = System.nanoTime() - start;
+                if (round == 2) {
+                    System.out.printf("n=%d  recursive: %.1f ns/lookup  eytzinger: %.1f ns/lookup%n",
+                            n, (double) recursive / lookups, (double) eytzinger / lookups);
+                }
+            }
+            if (checksum != 0) {
+                System.out.println("Results differ from binarySearchRecursive");
+            }
+        }
+    }
+}
@@ -0,0 +1,381 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The FrontCodedDictionary class is an immutable, compact dictionary of sorted strings, answering
+ * the lookups of `BinarySearchStrings` and prefix queries from a single byte array.
+ *
+ * Specifications:
+ *
+ * - The keys are encoded in UTF-8 and cut into blocks of 16. The first key of every block, its
+ *   head, is stored in full; every other key stores only the length of the prefix it shares with
+ *   the key before it and the remaining bytes. Lengths are written as variable-length integers of
+ *   7 bits per byte. All blocks live in one byte array, and the offsets of the block heads form a
+ *   sampled index over them.
+ *
+ * - A search first binary searches the block heads, comparing the target with the encoded bytes
+ *   in place, and then scans a single block. The scan follows the common prefix of the target with
+ *   each key from the shared prefix lengths alone and compares only the stored suffix bytes beyond
+ *   it, so no key is ever decoded into a `String`.
+ *
+ * - The `indexOf` method returns the same index as `BinarySearchStrings.binarySearchRecursive` for
+ *   the whole array, -1 when the target is absent. For duplicated keys the run of occurrences is
+ *   located and the recursive probe sequence is replayed on it with `BinarySearch.resolveIndex`.
+ *
+ * - The `prefixRange` method returns the `[from, to)` range of ordinals of all keys starting with
+ *   a prefix. Prefixes are matched by whole characters, so a prefix must be well-formed UTF-16.
+ *
+ * - Byte order of UTF-8 agrees with `String.compareTo` except for supplementary characters
+ *   against characters from U+E000 to U+FFFF. The constructor verifies that the encoded keys are in
+ *   the same order as the strings and throws an `IllegalArgumentException` otherwise, and also if
+ *   the array is null, empty, holds null or malformed strings, or is not sorted.
+ *
+ * Time Complexity:
+ * - O(N) to build the dictionary, where N is the total length of the keys.
+ * - O(L log(n / 16) + 16 L) per lookup for keys of length L, usually far less within a block.
+ *
+ * Space Complexity:
+ * - O(N) bytes in the worst case, and much less for keys sharing long prefixes.
+ */
+public final class FrontCodedDictionary {
+
+    /**
+     * The number of keys per block, of which only the first is stored in full.
+     */
+    static final int BLOCK_SIZE = 16;
+
+    private final int size;
+    private final boolean duplicates;
+    private final byte[] data;
+
+    /**
+     * The offset in the data of the first key of every block.
+     */
+    private final int[] blockHeads;
+
+    /**
+     * Builds the dictionary from a sorted array of strings.
+     *
+     * @param sortedArray The sorted array of strings to be stored.
+     * @throws IllegalArgumentException If the array is null, empty, holds null or malformed strings,
+     *         is not sorted, or does not sort the same way as its UTF-8 encoding.
+     */
+    public FrontCodedDictionary(String[] sortedArray) {
+        if (sortedArray == null || sortedArray.length == 0) {
+            throw new IllegalArgumentException("Array cannot be null or empty");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int[] heads = new int[(sortedArray.length + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        boolean repeated = false;
+        byte[] previous = null;
+        for (int i = 0; i < sortedArray.length; i++) {
+            String key = sortedArray[i];
+            if (key == null) {
+                throw new IllegalArgumentException("Array cannot contain null elements");
+            }
+            if (!isWellFormed(key)) {
+                throw new IllegalArgumentException("Array cannot contain malformed strings: element " + i);
+            }
+            byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+            if (previous != null) {
+                int order = sortedArray[i - 1].compareTo(key);
+                if (order > 0) {
+                    throw new IllegalArgumentException("Array must be sorted in ascending order");
+                }
+                if (Integer.signum(compareBytes(previous, bytes)) != Integer.signum(order)) {
+                    throw new IllegalArgumentException("Array does not sort the same as its UTF-8 encoding at element " + i);
+                }
+                repeated |= order == 0;
+            }
+            if (i % BLOCK_SIZE == 0) {
+                heads[i / BLOCK_SIZE] = out.size();
+                writeVarint(out, bytes.length);
+                out.write(bytes, 0, bytes.length);
+            } else {
+                int shared = commonPrefix(previous, bytes);
+                writeVarint(out, shared);
+                writeVarint(out, bytes.length - shared);
+                out.write(bytes, shared, bytes.length - shared);
+            }
+            previous = bytes;
+        }
+        this.size = sortedArray.length;
+        this.duplicates = repeated;
+        this.data = out.toByteArray();
+        this.blockHeads = heads;
+    }
+
+    /**
+     * Searches the dictionary for the given target string.
+     *
+     * @param target The string that needs to be found.
+     * @return The index `binarySearchRecursive` returns for the original array, otherwise -1.
+     */
+    public int indexOf(String target) {
+        if (!isWellFormed(target)) {
+            return -1; // Every key is well-formed, so a malformed target cannot be among them
+        }
+        byte[] bytes = target.getBytes(StandardCharsets.UTF_8);
+        long found = search(bytes, false, false);
+        if ((found & 1) == 0) {
+            return -1;
+        }
+        int from = (int) (found >>> 1);
+        if (!duplicates) {
+            return from;
+        }
+        int to = (int) (search(bytes, true, false) >>> 1);
+        return BinarySearch.resolveIndex(from, to, 0, size - 1);
+    }
+
+    /**
+     * Finds the ordinals of all keys starting with the given prefix.
+     *
+     * @param prefix The prefix of the keys to be found.
+     * @return A pair {from, to} such that exactly the keys with ordinals in [from, to) start with
+     *         the prefix; from equals to if there are none.
+     * @throws IllegalArgumentException If the prefix is null or not well-formed UTF-16.
+     */
+    public int[] prefixRange(String prefix) {
+        if (prefix == null || !isWellFormed(prefix)) {
+            throw new IllegalArgumentException("Prefix must be a well-formed string");
+        }
+        byte[] bytes = prefix.getBytes(StandardCharsets.UTF_8);
+        return new int[]{(int) (search(bytes, false, false) >>> 1), (int) (search(bytes, true, true) >>> 1)};
+    }
+
+    /**
+     * Decodes the key with the given ordinal.
+     *
+     * @param ordinal The index of the key in the original array.
+     * @return The key.
+     * @throws IndexOutOfBoundsException If the ordinal is negative or not less than the size.
+     */
+    public String get(int ordinal) {
+        if (ordinal < 0 || ordinal >= size) {
+            throw new IndexOutOfBoundsException("Index " + ordinal + " out of bounds for length " + size);
+        }
+        int[] position = {blockHeads[ordinal / BLOCK_SIZE]};
+        int length = readVarint(position);
+        byte[] key = Arrays.copyOfRange(data, position[0], position[0] + length);
+        position[0] += length;
+        for (int i = ordinal % BLOCK_SIZE; i > 0; i--) {
+            int shared = readVarint(position);
+            int suffix = readVarint(position);
+            key = Arrays.copyOf(key, shared + suffix);
+            System.arraycopy(data, position[0], key, shared, suffix);
+            position[0] += suffix;
+        }
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the number of keys in the dictionary.
+     *
+     * @return The size of the original array.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes holding the encoded keys and the block index.
+     *
+     * @return The size of the data plus four bytes per block head.
+     */
+    public long encodedBytes() {
+        return data.length + 4L * blockHeads.length;
+    }
+
+    /**
+     * Finds the first key that is not below the target. A key is below the target if it is less
+     * than the target, or also if it equals the target when `upper` is set. When `prefix` is set as
+     * well, keys starting with the target count as equal to it.
+     *
+     * @param target The encoded target.
+     * @param upper Whether keys equal to the target are below it.
+     * @param prefix Whether keys starting with the target are equal to it.
+     * @return The ordinal of the first key not below the target, or the size if there is none,
+     *         shifted left by one bit, with the lowest bit set if that key equals the target.
+     */
+    private long search(byte[] target, boolean upper, boolean prefix) {
+        // Find the first block whose head is not below the target
+        int low = 0;
+        int high = blockHeads.length - 1;
+        int[] position = new int[1];
+        boolean headMatches = false;
+        while (low <= high) {
+            int mid = low + (high - low) / 2;
+            position[0] = blockHeads[mid];
+            int length = readVarint(position);
+            int lcp = commonPrefix(data, position[0], length, target, 0);
+            int order = compareAt(data, position[0], length, target, lcp);
+            if (isBelow(order, lcp, target.length, upper, prefix)) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+                headMatches = order == 0;
+            }
+        }
+        if (low == 0) {
+            return headMatches ? 1 : 0;
+        }
+        // Every key before the block found is below the target, so scan the block before it
+        int block = low - 1;
+        position[0] = blockHeads[block];
+        int length = readVarint(position);
+        int lcp = commonPrefix(data, position[0], length, target, 0);
+        int order = compareAt(data, position[0], length, target, lcp);
+        position[0] += length;
+        int end = Math.min(size, (block + 1) * BLOCK_SIZE);
+        for (int ordinal = block * BLOCK_SIZE + 1; ordinal < end; ordinal++) {
+            int shared = readVarint(position);
+            int suffix = readVarint(position);
+            if (shared < lcp) {
+                // The key grows where the previous key still agreed with the target
+                lcp = shared;
+                order = 1;
+            } else if (shared == lcp) {
+                // The key continues with its own suffix exactly where the previous one left the target
+                int keyLength = shared + suffix;
+                int start = position[0] - shared;
+                lcp = commonPrefix(data, start, keyLength, target, lcp);
+                order = compareAt(data, start, keyLength, target, lcp);
+            }
+            // A longer shared prefix keeps the common prefix and order of the previous key
+            if (!isBelow(order, lcp, target.length, upper, prefix)) {
+                return (long) ordinal << 1 | (order == 0 ? 1 : 0);
+            }
+            position[0] += suffix;
+        }
+        // The first key of the next block, if any, is the one found by the binary search
+        return (long) end << 1 | (end < size && headMatches ? 1 : 0);
+    }
+
+    private static boolean isBelow(int order, int lcp, int targetLength, boolean upper, boolean prefix) {
+        if (prefix && lcp == targetLength) {
+            return upper;
+        }
+        return upper ? order <= 0 : order < 0;
+    }
+
+    /**
+     * Measures the common prefix of an encoded key and the target beyond a known common prefix.
+     */
+    private static int commonPrefix(byte[] data, int offset, int length, byte[] target, int start) {
+        int limit = Math.min(length, target.length);
+        int k = start;
+        while (k < limit && data[offset + k] == target[k]) {
+            k++;
+        }
+        return k;
+    }
+
+    /**
+     * Compares an encoded key with the target given their common prefix, with unsigned bytes.
+     */
+    private static int compareAt(byte[] data, int offset, int length, byte[] target, int lcp) {
+        if (lcp < length && lcp < target.length) {
+            return (data[offset + lcp] & 0xFF) - (target[lcp] & 0xFF);
+        }
+        return length - target.length;
+    }
+
+    private static int commonPrefix(byte[] a, byte[] b) {
+        return commonPrefix(a, 0, a.length, b, 0);
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        return compareAt(a, 0, a.length, b, commonPrefix(a, b));
+    }
+
+    /**
+     * Checks that every surrogate of a string is part of a pair, so that it survives UTF-8.
+     */
+    static boolean isWellFormed(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Reads a variable-length integer and advances the position past it.
+     */
+    private int readVarint(int[] position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[position[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * The main method compares the heap used by an array of URLs with the size of the dictionary,
+     * and the lookup latency of `binarySearchRecursive` with that of the dictionary.
+     *
+     * @param args The number of URLs, 1M by default.
+     */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 20;
+        String prefix = "https://storage.example.com/tenants/acme-corporation/projects/search-service/objects/";
+        String[] urls = new String[n];
+        long stringBytes = 16 + 4L * n; // The array of references
+        for (int i = 0; i < n; i++) {
+            urls[i] = prefix + String.format("%08d", 2 * i) + "/metadata.json";
+            // A String object of 24 bytes and its Latin-1 byte array
+            stringBytes += 24 + ((16 + urls[i].length() + 7) & ~7);
+        }
+        FrontCodedDictionary dictionary = new FrontCodedDictionary(urls);
+        System.out.printf("String[]: %d bytes  dictionary: %d bytes  (%.1fx smaller)%n",
+                stringBytes, dictionary.encodedBytes(), (double) stringBytes / dictionary.encodedBytes());
+        int[] range = dictionary.prefixRange(prefix + "0000");
+        System.out.println("Keys under .../objects/0000: [" + range[0] + ", " + range[1] + ")");
+
+        Random random = new Random(42);
+        String[] keys = new String[1 << 18];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = prefix + String.format("%08d", random.nextInt(2 * n)) + "/metadata.json";
+        }
+        int mismatches = 0;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            int[] expected = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                expected[i] = BinarySearchStrings.binarySearchRecursive(urls, keys[i], 0, n - 1);
+            }
+            long recursive = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < keys.length; i++) {
+                mismatches += dictionary.indexOf(keys[i]) != expected[i] ? 1 : 0;
+            }
+            long coded = System.nanoTime() - start;
+            if (round == 4) {
+                System.out.printf("n=%d  recursive: %.1f ns/lookup  dictionary: %.1f ns/lookup%n",
+                        n, (double) recursive / keys.length, (double) coded / keys.length);
+            }
+        }
+        if (mismatches != 0) {
+            System.out.println("Results differ from binarySearchRecursive");
+        }
+    }
+}
@@ -0,0 +1,265 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The KarySearchIndex class is an immutable search index over a sorted array of integers that
+ * compares a whole node of 16 separators per step instead of one element, which is a 17-ary search
+ * laid out for SIMD-width comparisons.
+ *
+ * Specifications:
+ *
+ * - The index is a static B+ tree. The leaf layer holds the sorted elements in blocks of 16,
+ *   padded with `Integer.MAX_VALUE`. Every internal node holds 16 separators, the largest element
+ *   of each of its first 16 children, and has up to 17 children. Each node fills exactly one
+ *   64-byte cache line.
+ *
+ * - At every node the search counts how many separators are less than the target. The count is
+ *   the child to descend into, so one step replaces four levels of a binary search and touches a
+ *   single cache line.
+ *
+ * - The separators of a node are compared with the target by `jdk.incubator.vector` `IntVector`
+ *   compares, one 512-bit or two 256-bit vectors, and the lanes that are less are counted. Where
+ *   the preferred vector holds fewer than 8 ints, a fixed 16-lane, branch-free scalar loop counts
+ *   them instead. The incubator module has to be added with `--add-modules jdk.incubator.vector`,
+ *   as the build does for compiling, testing and benchmarking.
+ *
+ * - The `indexOf` method returns the same index as `BinarySearch.binarySearchRecursive` for the
+ *   whole array, -1 when the target is absent. For duplicated targets the run of occurrences is
+ *   located and the recursive probe sequence is replayed on it with `BinarySearch.resolveIndex`.
+ *
+ * - It throws an `IllegalArgumentException` if the array is null, empty or not sorted.
+ *
+ * Time Complexity:
+ * - O(n) to build the index.
+ * - O(log n / log 17) node visits per lookup, each comparing 16 separators.
+ *
+ * Space Complexity:
+ * - O(n) for the leaves plus about n / 16 for the internal nodes.
+ */
+public final class KarySearchIndex {
+
+    /**
+     * The number of separators per node, 16 ints filling one 64-byte cache line.
+     */
+    private static final int NODE_SIZE = 16;
+
+    /**
+     * The number of children of an internal node.
+     */
+    private static final int FANOUT = NODE_SIZE + 1;
+
+    /**
+     * The vector species comparing a node, at most 16 lanes wide.
+     */
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED.length() >= NODE_SIZE
+            ? IntVector.SPECIES_512 : IntVector.SPECIES_PREFERRED;
+
+    /**
+     * Whether nodes are compared with vectors of at least 8 lanes rather than the scalar loop.
+     */
+    static final boolean VECTORIZED = SPECIES.length() >= 8;
+
+    private final int size;
+    private final int max;
+    private final boolean duplicates;
+    private final int[] leaves;
+
+    /**
+     * The internal layers from the root down, each an array of nodes of 16 separators.
+     */
+    private final int[][] layers;
+
+    /**
+     * Builds the index from a sorted array. The array is copied and may be modified afterwards.
+     *
+     * @param sortedArray The sorted array to be indexed.
+     * @throws IllegalArgumentException If the array is null, empty, or not sorted in ascending order.
+     */
+    public KarySearchIndex(int[] sortedArray) {
+        if (sortedArray == null || sortedArray.length == 0) {
+            throw new IllegalArgumentException("Array cannot be null or empty");
+        }
+        boolean repeated = false;
+        for (int i = 1; i < sortedArray.length; i++) {
+            if (sortedArray[i - 1] > sortedArray[i]) {
+                throw new IllegalArgumentException("Array must be sorted in ascending order");
+            }
+            repeated |= sortedArray[i - 1] == sortedArray[i];
+        }
+        this.size = sortedArray.length;
+        this.max = sortedArray[size - 1];
+        this.duplicates = repeated;
+
+        int blocks = (size + NODE_SIZE - 1) / NODE_SIZE;
+        this.leaves = new int[blocks * NODE_SIZE];
+        System.arraycopy(sortedArray, 0, leaves, 0, size);
+        Arrays.fill(leaves, size, leaves.length, Integer.MAX_VALUE);
+
+        // The largest element below every node of the current layer, starting with the leaf blocks
+        int[] maxima = new int[blocks];
+        for (int block = 0; block < blocks; block++) {
+            maxima[block] = sortedArray[Math.min(size, (block + 1) * NODE_SIZE) - 1];
+        }
+        List<int[]> built = new ArrayList<>();
+        while (maxima.length > 1) {
+            int nodes = (maxima.length + FANOUT - 1) / FANOUT;
+            int[] layer = new int[nodes * NODE_SIZE];
+            int[] parentMaxima = new int[nodes];
+            for (int node = 0; node < nodes; node++) {
+                for (int j = 0; j < NODE_SIZE; j++) {
+                    int child = node * FANOUT + j;
+                    layer[node * NODE_SIZE + j] = child < maxima.length ? maxima[child] : Integer.MAX_VALUE;
+                }
+                parentMaxima[node] = maxima[Math.min(maxima.length, (node + 1) * FANOUT) - 1];
+            }
+            built.add(0, layer);
+            maxima = parentMaxima;
+        }
+        this.layers = built.toArray(new int[0][]);
+    }
+
+    /**
+     * Searches the index for the given target.
+     *
+     * @param target The element that needs to be found.
+     * @return The index `binarySearchRecursive` returns for the original array, otherwise -1.
+     */
+    public int indexOf(int target) {
+        if (target > max) {
+            return -1;
+        }
+        int from = lowerBound(target);
+        if (leaves[from] != target) {
+            return -1;
+        }
+        if (!duplicates) {
+            return from;
+        }
+        int to = target == max ? size : lowerBound(target + 1);
+        return BinarySearch.resolveIndex(from, to, 0, size - 1);
+    }
+
+    /**
+     * Returns the number of elements in the index.
+     *
+     * @return The size of the original array.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the first element not less than a target that is at most the largest element.
+     *
+     * @param target The element searched for.
+     * @return The index of the first element not less than the target.
+     */
+    private int lowerBound(int target) {
+        int node = 0;
+        for (int[] layer : layers) {
+            node = node * FANOUT + countLess(layer, node * NODE_SIZE, target);
+        }
+        int offset = node * NODE_SIZE;
+        return offset + countLess(leaves, offset, target);
+    }
+
+    /**
+     * Counts the separators of a node that are less than the target with one or two vector
+     * compares, or with `countLessScalar` where vectors of 8 ints are not available.
+     *
+     * @param keys The layer holding the node.
+     * @param offset The index of the first separator of the node.
+     * @param target The element searched for.
+     * @return The number of separators less than the target.
+     */
+    static int countLess(int[] keys, int offset, int target) {
+        if (!VECTORIZED) {
+            return countLessScalar(keys, offset, target);
+        }
+        int count = 0;
+        for (int j = 0; j < NODE_SIZE; j += SPECIES.length()) {
+            count += IntVector.fromArray(SPECIES, keys, offset + j).compare(VectorOperators.LT, target).trueCount();
+        }
+        return count;
+    }
+
+    /**
+     * Counts the separators of a node that are less than the target. The loop has a fixed trip
+     * count and no branches.
+     *
+     * @param keys The layer holding the node.
+     * @param offset The index of the first separator of the node.
+     * @param target The element searched for.
+     * @return The number of separators less than the target.
+     */
+    static int countLessScalar(int[] keys, int offset, int target) {
+        int count = 0;
+        for (int j = 0; j < NODE_SIZE; j++) {
+            count += keys[offset + j] < target ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * The main method compares the lookup latency of the index with `binarySearchRecursive` and
+     * the `EytzingerIndex`. The array sizes to measure can be given as arguments; 1M, 16M and 64M
+     * elements are used otherwise.
+     *
+     * @param args The array sizes to measure.
+     */
+    public static void main(String[] args) {
+        int[] sizes = {1 << 20, 1 << 24, 1 << 26};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        Random random = new Random(42);
+        int lookups = 1 << 22;
+        for (int n : sizes) {
+            int[] sortedArray = new int[n];
+            for (int i = 0; i < n; i++) {
+                sortedArray[i] = 2 * i;
+            }
+            KarySearchIndex kary = new KarySearchIndex(sortedArray);
+            EytzingerIndex eytzinger = new EytzingerIndex(sortedArray);
+            int[] keys = new int[lookups];
+            for (int i = 0; i < lookups; i++) {
+                keys[i] = random.nextInt(2 * n);
+            }
+
+            int[] expected = new int[lookups];
+            int mismatches = 0;
+            for (int round = 0; round < 3; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < lookups; i++) {
+                    expected[i] = BinarySearch.binarySearchRecursive(sortedArray, keys[i], 0, n - 1);
+                }
+                long recursive = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int i = 0; i < lookups; i++) {
+                    mismatches += kary.indexOf(keys[i]) != expected[i] ? 1 : 0;
+                }
+                long karyTime = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int i = 0; i < lookups; i++) {
+                    mismatches += eytzinger.indexOf(keys[i]) != expected[i] ? 1 : 0;
+                }
+                long eytzingerTime = System.nanoTime() - start;
+                if (round == 2) {
+                    System.out.printf("n=%d  recursive: %.1f ns/lookup  k-ary: %.1f ns/lookup  eytzinger: %.1f ns/lookup%n",
+                            n, (double) recursive / lookups, (double) karyTime / lookups, (double) eytzingerTime / lookups);
+                }
+            }
+            if (mismatches != 0) {
+                System.out.println("Results differ from binarySearchRecursive");
+            }
+        }
+    }
+}
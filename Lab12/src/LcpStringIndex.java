@@ -0,0 +1,237 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The LcpStringIndex class is an immutable search index over a sorted array of strings that
+ * shares long prefixes, such as URLs or file paths, and compares each character of the target at
+ * most once per lookup in the common case.
+ *
+ * Specifications:
+ *
+ * - The index follows the binary search of Manber and Myers. The probes are the same as those of
+ *   `BinarySearchStrings.binarySearchRecursive` over the whole array, so each index is the middle
+ *   of exactly one search range. For every index the longest common prefix of its element with the
+ *   elements just outside that range is precomputed.
+ *
+ * - A lookup remembers the prefix the target shares with both ends of the current range. When the
+ *   precomputed prefix of the middle element with the nearer end differs from the target's, the
+ *   order of the target and the middle element follows without comparing a single character.
+ *   Otherwise the comparison starts after the known prefix.
+ *
+ * - The `indexOf` method returns the same index as `binarySearchRecursive` for the whole array,
+ *   -1 when the target is absent.
+ *
+ * - It throws an `IllegalArgumentException` if the array is null, empty, holds a null element or
+ *   is not sorted.
+ *
+ * Time Complexity:
+ * - O(n L) to build the index for strings of length L.
+ * - O(L + log n) character comparisons per lookup.
+ *
+ * Space Complexity:
+ * - O(n) for two prefix lengths per element.
+ */
+public final class LcpStringIndex {
+
+    private final String[] array;
+
+    /**
+     * The common prefix length of each element with the element just below its search range.
+     */
+    private final int[] lowLcp;
+
+    /**
+     * The common prefix length of each element with the element just above its search range.
+     */
+    private final int[] highLcp;
+
+    /**
+     * Builds the index from a sorted array of strings. The array is copied.
+     *
+     * @param sortedArray The sorted array of strings to be indexed.
+     * @throws IllegalArgumentException If the array is null, empty, holds null, or is not sorted.
+     */
+    public LcpStringIndex(String[] sortedArray) {
+        if (sortedArray == null || sortedArray.length == 0) {
+            throw new IllegalArgumentException("Array cannot be null or empty");
+        }
+        for (int i = 0; i < sortedArray.length; i++) {
+            if (sortedArray[i] == null) {
+                throw new IllegalArgumentException("Array cannot contain null elements");
+            }
+            if (i > 0 && sortedArray[i - 1].compareTo(sortedArray[i]) > 0) {
+                throw new IllegalArgumentException("Array must be sorted in ascending order");
+            }
+        }
+        this.array = Arrays.copyOf(sortedArray, sortedArray.length);
+        this.lowLcp = new int[array.length];
+        this.highLcp = new int[array.length];
+        build(0, array.length - 1);
+    }
+
+    /**
+     * Precomputes the prefix lengths of every middle element of the search range [low, high].
+     *
+     * @param low The lower index of the search range.
+     * @param high The higher index of the search range.
+     */
+    private void build(int low, int high) {
+        if (low > high) {
+            return;
+        }
+        int mid = low + (high - low) / 2;
+        lowLcp[mid] = low > 0 ? BinarySearchStrings.commonPrefix(array[low - 1], array[mid], 0) : 0;
+        highLcp[mid] = high < array.length - 1 ? BinarySearchStrings.commonPrefix(array[mid], array[high + 1], 0) : 0;
+        build(low, mid - 1);
+        build(mid + 1, high);
+    }
+
+    /**
+     * Searches the index for the given target string.
+     *
+     * @param target The string that needs to be found.
+     * @return The index `binarySearchRecursive` returns for the original array, otherwise -1.
+     */
+    public int indexOf(String target) {
+        return indexOf(target, null);
+    }
+
+    /**
+     * Searches the index, optionally counting the characters compared.
+     *
+     * @param target The string that needs to be found.
+     * @param comparisons A counter incremented by the number of characters compared, or null.
+     * @return The index `binarySearchRecursive` returns for the original array, otherwise -1.
+     */
+    int indexOf(String target, long[] comparisons) {
+        int low = 0;
+        int high = array.length - 1;
+        // Common prefix lengths of the target with the elements at low - 1 and high + 1
+        int l = 0;
+        int r = 0;
+        while (low <= high) {
+            int mid = low + (high - low) / 2;
+            if (l >= r && lowLcp[mid] != l) {
+                if (lowLcp[mid] > l) {
+                    // The middle element agrees with the lower end where the target exceeds it
+                    low = mid + 1;
+                } else {
+                    // The middle element exceeds the lower end where the target agrees with it
+                    high = mid - 1;
+                    r = lowLcp[mid];
+                }
+                continue;
+            }
+            if (r > l && highLcp[mid] != r) {
+                if (highLcp[mid] > r) {
+                    high = mid - 1;
+                } else {
+                    low = mid + 1;
+                    l = highLcp[mid];
+                }
+                continue;
+            }
+            String element = array[mid];
+            int start = Math.max(l, r);
+            int lcp = BinarySearchStrings.commonPrefix(target, element, start);
+            if (comparisons != null) {
+                comparisons[0] += lcp - start + 1;
+            }
+            int comparison = BinarySearchStrings.compareAt(target, element, lcp);
+            if (comparison == 0) {
+                return mid;
+            } else if (comparison < 0) {
+                high = mid - 1;
+                r = lcp;
+            } else {
+                low = mid + 1;
+                l = lcp;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of strings in the index.
+     *
+     * @return The size of the original array.
+     */
+    public int size() {
+        return array.length;
+    }
+
+    /**
+     * The main method compares the number of characters compared and the lookup latency of
+     * `binarySearchRecursive`, `binarySearchLcp` and the index on URLs sharing a long prefix.
+     *
+     * @param args The number of URLs, 1M by default.
+     */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 20;
+        String prefix = "https://storage.example.com/tenants/acme-corporation/projects/search-service/objects/";
+        String[] urls = new String[n];
+        for (int i = 0; i < n; i++) {
+            urls[i] = prefix + String.format("%08d", 2 * i) + "/metadata.json";
+        }
+        Random random = new Random(42);
+        String[] keys = new String[1 << 18];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = prefix + String.format("%08d", random.nextInt(2 * n)) + "/metadata.json";
+        }
+        LcpStringIndex index = new LcpStringIndex(urls);
+
+        long[] lcpComparisons = new long[1];
+        long[] indexComparisons = new long[1];
+        long recursiveComparisons = 0;
+        for (String key : keys) {
+            // compareTo examines the common prefix plus one character at every probe
+            int low = 0;
+            int high = n - 1;
+            while (low <= high) {
+                int mid = low + (high - low) / 2;
+                int lcp = BinarySearchStrings.commonPrefix(key, urls[mid], 0);
+                recursiveComparisons += lcp + 1;
+                int comparison = BinarySearchStrings.compareAt(key, urls[mid], lcp);
+                if (comparison == 0) {
+                    break;
+                } else if (comparison < 0) {
+                    high = mid - 1;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            BinarySearchStrings.binarySearchLcp(urls, key, 0, n - 1, lcpComparisons);
+            index.indexOf(key, indexComparisons);
+        }
+        System.out.printf("Characters compared per lookup  recursive: %.1f  lcp: %.1f  index: %.1f%n",
+                (double) recursiveComparisons / keys.length, (double) lcpComparisons[0] / keys.length,
+                (double) indexComparisons[0] / keys.length);
+
+        int mismatches = 0;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            int[] expected = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                expected[i] = BinarySearchStrings.binarySearchRecursive(urls, keys[i], 0, n - 1);
+            }
+            long recursive = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < keys.length; i++) {
+                mismatches += BinarySearchStrings.binarySearchLcp(urls, keys[i], 0, n - 1) != expected[i] ? 1 : 0;
+            }
+            long lcp = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < keys.length; i++) {
+                mismatches += index.indexOf(keys[i]) != expected[i] ? 1 : 0;
+            }
+            long indexed = System.nanoTime() - start;
+            if (round == 4) {
+                System.out.printf("n=%d  recursive: %.1f ns/lookup  lcp: %.1f ns/lookup  index: %.1f ns/lookup%n",
+                        n, (double) recursive / keys.length, (double) lcp / keys.length, (double) indexed / keys.length);
+            }
+        }
+        if (mismatches != 0) {
+            System.out.println("Results differ from binarySearchRecursive");
+        }
+    }
+}
@@ -0,0 +1,368 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * The Metrics class keeps always-on counters and latency histograms for the searches, the parser
+ * and the digit sums, cheap enough to leave enabled in production.
+ *
+ * Specifications:
+ *
+ * - There is one instance per area: `SEARCH` for the searches of `BinarySearch`,
+ *   `BinarySearchStrings` and `BinarySearchAllIndices`, `PARSE` for the evaluations of
+ *   `RecursiveParser`, `DIGIT_SUM` for `RecursiveSumOfDigits` and `DecimalFileDigitSum`, and
+ *   `SERVER` for the requests answered by `EvaluationServer`.
+ *
+ * - Each instance counts calls, calls that ended with an exception, and the total time of the
+ *   calls that were timed, and keeps a histogram of their latencies with one bucket per power of
+ *   two of nanoseconds. All counters are `LongAdder`s, which spread concurrent updates over cells
+ *   instead of contending on one variable, so recording takes no lock.
+ *
+ * - Calls started with `start` are always timed. Calls that take well under a microsecond, such as
+ *   single searches, are started with `startSampled` instead, which times one call in
+ *   `SAMPLE_PERIOD`, picked at random, or every call while a flight recording is running. The
+ *   other calls are only counted, which spares them the two reads of the clock and the updates of
+ *   the histogram. Means and percentiles are taken over the timed calls.
+ *
+ * - The `snapshot` method reads the counters into an immutable `Snapshot`. As the counters are read
+ *   one by one while calls are still being recorded, a snapshot taken under load may be off by the
+ *   calls in flight.
+ *
+ * - Recording is switched off for the whole JVM with `-Dlab12.metrics=false`. The setting is read
+ *   once into a constant, so that the JIT compiler removes the recording code entirely.
+ *
+ * - Individual calls, with their probe counts and input sizes, are reported to JDK Flight Recorder
+ *   by `SearchEvent`, `ParseEvent` and `DigitSumEvent`. Whether a recording is running is tracked
+ *   by a listener of the flight recorder, so that the events are not even allocated while none is.
+ *
+ * Time Complexity:
+ * - O(1) to record a call.
+ * - O(b) to take a snapshot, where b = 64 is the number of buckets.
+ *
+ * Space Complexity:
+ * - O(b) per instance, plus the cells added under contention.
+ */
+public final class Metrics {
+
+    /**
+     * Whether calls are recorded, false when the system property `lab12.metrics` is "false".
+     */
+    static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("lab12.metrics"));
+
+    /**
+     * The number of histogram buckets. Bucket k counts latencies in [2^k, 2^(k + 1)) nanoseconds,
+     * and bucket 0 also counts latencies below one nanosecond.
+     */
+    public static final int BUCKETS = Long.SIZE;
+
+    /**
+     * One in this many calls started with `startSampled` is timed while no recording is running.
+     * A power of two.
+     */
+    public static final int SAMPLE_PERIOD = 64;
+
+    /**
+     * The start time of calls that are not timed.
+     */
+    static final long UNTIMED = Long.MIN_VALUE;
+
+    public static final Metrics SEARCH = new Metrics("search");
+
+    public static final Metrics PARSE = new Metrics("parse");
+
+    public static final Metrics DIGIT_SUM = new Metrics("digitSum");
+
+    public static final Metrics SERVER = new Metrics("server");
+
+    /**
+     * Whether a flight recording is running, updated by the listener registered below.
+     */
+    private static volatile boolean recording;
+
+    static {
+        FlightRecorder.addListener(new FlightRecorderListener() {
+            @Override
+            public void recorderInitialized(FlightRecorder recorder) {
+                updateRecording();
+            }
+
+            @Override
+            public void recordingStateChanged(Recording changed) {
+                updateRecording();
+            }
+        });
+    }
+
+    private final String name;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder timed = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder[] histogram = new LongAdder[BUCKETS];
+
+    private Metrics(String name) {
+        this.name = name;
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Returns the start time of a call to be recorded and timed.
+     *
+     * @return The current value of `System.nanoTime`, or `UNTIMED` if recording is switched off.
+     */
+    static long start() {
+        return ENABLED ? System.nanoTime() : UNTIMED;
+    }
+
+    /**
+     * Returns the start time of a call to be recorded, and timed if it is sampled.
+     *
+     * @return The current value of `System.nanoTime` for one call in `SAMPLE_PERIOD`, or for every
+     *         call while a flight recording is running, otherwise `UNTIMED`.
+     */
+    static long startSampled() {
+        if (ENABLED && (recording || (ThreadLocalRandom.current().nextInt() & (SAMPLE_PERIOD - 1)) == 0)) {
+            return System.nanoTime();
+        }
+        return UNTIMED;
+    }
+
+    /**
+     * Records a call that completed normally.
+     *
+     * @param start The start time of the call, as returned by `start` or `startSampled`.
+     */
+    void record(long start) {
+        if (ENABLED) {
+            count.increment();
+            if (start != UNTIMED) {
+                addTime(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Records a call that ended with an exception.
+     *
+     * @param start The start time of the call, as returned by `start` or `startSampled`.
+     */
+    void recordError(long start) {
+        if (ENABLED) {
+            count.increment();
+            errors.increment();
+            if (start != UNTIMED) {
+                addTime(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private void addTime(long nanos) {
+        timed.increment();
+        totalNanos.add(nanos);
+        histogram[bucket(nanos)].increment();
+    }
+
+    /**
+     * Tells whether a flight recording is running, in which case the events are created.
+     *
+     * @return True if a recording is running.
+     */
+    static boolean isRecording() {
+        return recording;
+    }
+
+    private static void updateRecording() {
+        recording = FlightRecorder.isInitialized() && FlightRecorder.getFlightRecorder().getRecordings().stream()
+                .anyMatch(r -> r.getState() == RecordingState.RUNNING);
+    }
+
+    /**
+     * Returns the histogram bucket of a latency.
+     *
+     * @param nanos The latency in nanoseconds.
+     * @return The index of its bucket, the base-2 logarithm of the latency rounded down.
+     */
+    static int bucket(long nanos) {
+        return Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos | 1);
+    }
+
+    /**
+     * Returns the name of the area measured.
+     *
+     * @return The name.
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Reads the current values of the counters.
+     *
+     * @return The snapshot.
+     */
+    public Snapshot snapshot() {
+        long[] buckets = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = histogram[i].sum();
+        }
+        return new Snapshot(name, count.sum(), errors.sum(), timed.sum(), totalNanos.sum(), buckets);
+    }
+
+    /**
+     * Reads the current values of the counters of every area.
+     *
+     * @return The snapshots of `SEARCH`, `PARSE`, `DIGIT_SUM` and `SERVER`.
+     */
+    public static List<Snapshot> snapshotAll() {
+        return List.of(SEARCH.snapshot(), PARSE.snapshot(), DIGIT_SUM.snapshot(), SERVER.snapshot());
+    }
+
+    /**
+     * The values of the counters of one area at one point in time.
+     */
+    public static final class Snapshot {
+        private final String name;
+        private final long count;
+        private final long errors;
+        private final long timed;
+        private final long totalNanos;
+        private final long[] histogram;
+
+        Snapshot(String name, long count, long errors, long timed, long totalNanos, long[] histogram) {
+            this.name = name;
+            this.count = count;
+            this.errors = errors;
+            this.timed = timed;
+            this.totalNanos = totalNanos;
+            this.histogram = histogram;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        /**
+         * Returns the number of calls recorded, including those that failed.
+         *
+         * @return The call count.
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * Returns the number of calls that ended with an exception, such as rejected expressions.
+         *
+         * @return The error count.
+         */
+        public long errors() {
+            return errors;
+        }
+
+        /**
+         * Returns the number of calls that were timed, all of them unless they were sampled.
+         *
+         * @return The timed call count.
+         */
+        public long timed() {
+            return timed;
+        }
+
+        /**
+         * Returns the total latency of the timed calls.
+         *
+         * @return The total latency in nanoseconds.
+         */
+        public long totalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * Returns the number of timed calls whose latency fell into each bucket.
+         *
+         * @return A copy of the histogram, indexed by the base-2 logarithm of the latency in nanoseconds.
+         */
+        public long[] histogram() {
+            return histogram.clone();
+        }
+
+        /**
+         * Returns the mean latency of the timed calls.
+         *
+         * @return The mean latency in nanoseconds, or 0 if no call was timed.
+         */
+        public double meanNanos() {
+            return timed == 0 ? 0 : (double) totalNanos / timed;
+        }
+
+        /**
+         * Returns an upper bound of a latency percentile, the upper end of the bucket it falls into,
+         * which exceeds the exact value by less than a factor of two.
+         *
+         * @param percentile The percentile, between 0 and 100.
+         * @return The upper bound in nanoseconds, or 0 if no call was timed.
+         * @throws IllegalArgumentException If the percentile is out of range.
+         */
+        public long percentileNanos(double percentile) {
+            if (!(percentile >= 0 && percentile <= 100)) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100");
+            }
+            long total = Arrays.stream(histogram).sum();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+            long seen = 0;
+            int bucket = 0;
+            while (seen + histogram[bucket] < rank) {
+                seen += histogram[bucket];
+                bucket++;
+            }
+            return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (2L << bucket) - 1;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d calls (%d timed), %d errors, mean %.0f ns, p50 <= %d ns, p99 <= %d ns",
+                    name, count, timed, errors, meanNanos(), percentileNanos(50), percentileNanos(99));
+        }
+    }
+
+    /**
+     * Main method to run a few searches, evaluations and digit sums and print the metrics.
+     *
+     * @param args Command-line arguments (not used in this case).
+     */
+    public static void main(String[] args) {
+        int[] sortedArray = new int[1 << 16];
+        for (int i = 0; i < sortedArray.length; i++) {
+            sortedArray[i] = 2 * i;
+        }
+        for (int i = 0; i < 100_000; i++) {
+            BinarySearch.binarySearchRecursive(sortedArray, i, 0, sortedArray.length - 1);
+            RecursiveSumOfDigits.sumOfDigits(BigInteger.valueOf(i));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            try {
+                RecursiveParser.evaluate(i % 100 == 0 ? "1 / 0" : "3 + (2 * (5 - " + i + "))");
+            } catch (ArithmeticException e) {
+                // Counted as an error
+            }
+        }
+        if (!ENABLED) {
+            System.out.println("Metrics are switched off by -Dlab12.metrics=false");
+        }
+        for (Snapshot snapshot : snapshotAll()) {
+            System.out.println(snapshot);
+        }
+    }
+}
@@ -0,0 +1,379 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * The OffHeapSortedArray class is a sorted array of int or long keys stored outside the Java heap,
+ * indexed by `long` positions, so that arrays of more than 2^31 elements or larger than the heap
+ * can be searched.
+ *
+ * Specifications:
+ *
+ * - The keys live in direct or memory-mapped `ByteBuffer` segments of 1 GB, each holding a whole
+ *   number of keys, so that no key spans two segments. An element is located by shifting and
+ *   masking its position, without copying and without any object per key for the garbage collector
+ *   to trace.
+ *
+ * - The `mapInts` and `mapLongs` methods map a file of keys read-only, with a given byte order;
+ *   the mappings are shared through the page cache of the operating system. The `allocateInts` and
+ *   `allocateLongs` methods allocate writable direct memory filled with `set`.
+ *
+ * - The `binarySearch` method probes the same positions as `BinarySearch.binarySearchRecursive`,
+ *   with `long` arithmetic, and returns the same result, -1 when the target is absent. The
+ *   `lowerBound`, `upperBound`, `equalRange` and `countOccurrences` methods have the semantics of
+ *   those of `BinarySearchAllIndices`. Int keys are compared with targets as longs.
+ *
+ * - The keys must be sorted in ascending order; this is not verified, as that would read the whole
+ *   array. Every search throws an `IllegalArgumentException` if the array is empty.
+ *
+ * - Direct and mapped memory is released when the array becomes unreachable; `close` only closes
+ *   the mapped file.
+ *
+ * Time Complexity:
+ * - O(log n) per search, where n is the number of keys.
+ *
+ * Space Complexity:
+ * - O(n) off the heap, and O(n / 2^30) on the heap for the segments.
+ */
+public final class OffHeapSortedArray implements Closeable {
+
+    /**
+     * The base-2 logarithm of the size of a segment in bytes.
+     */
+    static final int SEGMENT_SHIFT = 30;
+
+    private final ByteBuffer[] segments;
+    private final long length;
+    private final boolean wide;
+    private final int keyShift;
+    private final int elementShift;
+    private final long elementMask;
+    private final FileChannel channel;
+
+    private OffHeapSortedArray(ByteBuffer[] segments, long length, boolean wide, int segmentShift, FileChannel channel) {
+        this.segments = segments;
+        this.length = length;
+        this.wide = wide;
+        this.keyShift = wide ? 3 : 2;
+        this.elementShift = segmentShift - keyShift;
+        this.elementMask = (1L << elementShift) - 1;
+        this.channel = channel;
+    }
+
+    /**
+     * Allocates an array of int keys in direct memory, initially all zero.
+     *
+     * @param length The number of keys.
+     * @return The array, to be filled in ascending order with `set`.
+     * @throws IllegalArgumentException If the length is negative.
+     */
+    public static OffHeapSortedArray allocateInts(long length) {
+        return allocate(length, false, SEGMENT_SHIFT);
+    }
+
+    /**
+     * Allocates an array of long keys in direct memory, initially all zero.
+     *
+     * @param length The number of keys.
+     * @return The array, to be filled in ascending order with `set`.
+     * @throws IllegalArgumentException If the length is negative.
+     */
+    public static OffHeapSortedArray allocateLongs(long length) {
+        return allocate(length, true, SEGMENT_SHIFT);
+    }
+
+    /**
+     * Maps a file of sorted 4-byte int keys.
+     *
+     * @param path The file, whose size is a multiple of 4 bytes.
+     * @param order The byte order of the keys in the file.
+     * @return The read-only array, which should be closed after use.
+     * @throws IOException If the file cannot be mapped or its size is not a multiple of 4.
+     */
+    public static OffHeapSortedArray mapInts(Path path, ByteOrder order) throws IOException {
+        return map(path, order, false, SEGMENT_SHIFT);
+    }
+
+    /**
+     * Maps a file of sorted 8-byte long keys.
+     *
+     * @param path The file, whose size is a multiple of 8 bytes.
+     * @param order The byte order of the keys in the file.
+     * @return The read-only array, which should be closed after use.
+     * @throws IOException If the file cannot be mapped or its size is not a multiple of 8.
+     */
+    public static OffHeapSortedArray mapLongs(Path path, ByteOrder order) throws IOException {
+        return map(path, order, true, SEGMENT_SHIFT);
+    }
+
+    static OffHeapSortedArray allocate(long length, boolean wide, int segmentShift) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Length cannot be negative");
+        }
+        long bytes = length << (wide ? 3 : 2);
+        ByteBuffer[] segments = new ByteBuffer[(int) ((bytes + (1L << segmentShift) - 1) >>> segmentShift)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = (long) i << segmentShift;
+            segments[i] = ByteBuffer.allocateDirect((int) Math.min(1L << segmentShift, bytes - start)).order(ByteOrder.nativeOrder());
+        }
+        return new OffHeapSortedArray(segments, length, wide, segmentShift, null);
+    }
+
+    static OffHeapSortedArray map(Path path, ByteOrder order, boolean wide, int segmentShift) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long bytes = channel.size();
+            if ((bytes & (wide ? 7 : 3)) != 0) {
+                throw new IOException("File size is not a multiple of the key size: " + path);
+            }
+            ByteBuffer[] segments = new ByteBuffer[(int) ((bytes + (1L << segmentShift) - 1) >>> segmentShift)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << segmentShift;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(1L << segmentShift, bytes - start)).order(order);
+            }
+            return new OffHeapSortedArray(segments, bytes >>> (wide ? 3 : 2), wide, segmentShift, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the key at a position.
+     *
+     * @param index The position of the key.
+     * @return The key, widened to a long for int keys.
+     * @throws IndexOutOfBoundsException If the position is negative or not less than the length.
+     */
+    public long get(long index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        }
+        return key(index);
+    }
+
+    /**
+     * Stores a key at a position of an allocated array.
+     *
+     * @param index The position of the key.
+     * @param value The key, which must fit in an int for int keys.
+     * @throws IndexOutOfBoundsException If the position is negative or not less than the length.
+     * @throws IllegalArgumentException If an int array is given a value outside the int range.
+     * @throws java.nio.ReadOnlyBufferException If the array is a mapped file.
+     */
+    public void set(long index, long value) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        }
+        ByteBuffer segment = segments[(int) (index >>> elementShift)];
+        int offset = (int) (index & elementMask) << keyShift;
+        if (wide) {
+            segment.putLong(offset, value);
+        } else if (value == (int) value) {
+            segment.putInt(offset, (int) value);
+        } else {
+            throw new IllegalArgumentException("Value does not fit in an int: " + value);
+        }
+    }
+
+    /**
+     * Returns the number of keys.
+     *
+     * @return The length of the array.
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Performs a binary search for a target key.
+     *
+     * @param target The key that needs to be found.
+     * @param low The lower position of the search range.
+     * @param high The higher position of the search range.
+     * @return The position `binarySearchRecursive` would return, otherwise -1.
+     * @throws IllegalArgumentException If the array is empty.
+     */
+    public long binarySearch(long target, long low, long high) {
+        checkNotEmpty();
+        while (low <= high) {
+            long mid = low + (high - low) / 2;
+            long key = key(mid);
+            if (key == target) {
+                return mid;
+            } else if (target < key) {
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the first position in a range whose key is not less than the target.
+     *
+     * @param target The key whose lower bound needs to be found.
+     * @param low The lower position of the search range.
+     * @param high The higher position of the search range.
+     * @return The first position in [low, high] whose key is at least the target, or high + 1.
+     * @throws IllegalArgumentException If the array is empty.
+     */
+    public long lowerBound(long target, long low, long high) {
+        checkNotEmpty();
+        while (low <= high) {
+            long mid = low + (high - low) / 2;
+            if (key(mid) < target) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the first position in a range whose key is greater than the target.
+     *
+     * @param target The key whose upper bound needs to be found.
+     * @param low The lower position of the search range.
+     * @param high The higher position of the search range.
+     * @return The first position in [low, high] whose key is greater than the target, or high + 1.
+     * @throws IllegalArgumentException If the array is empty.
+     */
+    public long upperBound(long target, long low, long high) {
+        checkNotEmpty();
+        while (low <= high) {
+            long mid = low + (high - low) / 2;
+            if (key(mid) <= target) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the range of positions holding the target key.
+     *
+     * @param target The key whose positions need to be found.
+     * @param low The lower position of the search range.
+     * @param high The higher position of the search range.
+     * @return A pair {from, to} such that the target occupies exactly the positions [from, to);
+     *         from equals to if the target does not occur in the range.
+     * @throws IllegalArgumentException If the array is empty.
+     */
+    public long[] equalRange(long target, long low, long high) {
+        long from = lowerBound(target, low, high);
+        return new long[]{from, upperBound(target, from, high)};
+    }
+
+    /**
+     * Counts the occurrences of the target key.
+     *
+     * @param target The key whose occurrences need to be counted.
+     * @param low The lower position of the search range.
+     * @param high The higher position of the search range.
+     * @return The number of positions in [low, high] holding the target.
+     * @throws IllegalArgumentException If the array is empty.
+     */
+    public long countOccurrences(long target, long low, long high) {
+        long from = lowerBound(target, low, high);
+        return upperBound(target, from, high) - from;
+    }
+
+    /**
+     * Closes the mapped file, if any.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private long key(long index) {
+        ByteBuffer segment = segments[(int) (index >>> elementShift)];
+        int offset = (int) (index & elementMask) << keyShift;
+        return wide ? segment.getLong(offset) : segment.getInt(offset);
+    }
+
+    private void checkNotEmpty() {
+        if (length == 0) {
+            throw new IllegalArgumentException("Array cannot be null or empty");
+        }
+    }
+
+    /**
+     * The main method writes a file of sorted long keys, maps it and compares the lookup latency
+     * with `binarySearchRecursive` on the same keys held as an int array.
+     *
+     * @param args The number of keys, 16M by default.
+     */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 24;
+        try {
+            Path path = Files.createTempFile("keys", ".bin");
+            int[] sortedArray = new int[n];
+            try (FileChannel out = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+                for (int i = 0; i < n; i++) {
+                    sortedArray[i] = 2 * i;
+                    if (!buffer.hasRemaining()) {
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            out.write(buffer);
+                        }
+                        buffer.clear();
+                    }
+                    buffer.putLong(2L * i);
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+            }
+            try (OffHeapSortedArray keys = mapLongs(path, ByteOrder.BIG_ENDIAN)) {
+                Random random = new Random(42);
+                int[] targets = new int[1 << 20];
+                for (int i = 0; i < targets.length; i++) {
+                    targets[i] = random.nextInt(2 * n);
+                }
+                int mismatches = 0;
+                for (int round = 0; round < 3; round++) {
+                    long start = System.nanoTime();
+                    int[] expected = new int[targets.length];
+                    for (int i = 0; i < targets.length; i++) {
+                        expected[i] = BinarySearch.binarySearchRecursive(sortedArray, targets[i], 0, n - 1);
+                    }
+                    long recursive = System.nanoTime() - start;
+                    start = System.nanoTime();
+                    for (int i = 0; i < targets.length; i++) {
+                        mismatches += keys.binarySearch(targets[i], 0, keys.length() - 1) != expected[i] ? 1 : 0;
+                    }
+                    long mapped = System.nanoTime() - start;
+                    if (round == 2) {
+                        System.out.printf("n=%d  recursive: %.1f ns/lookup  mapped: %.1f ns/lookup%n",
+                                n, (double) recursive / targets.length, (double) mapped / targets.length);
+                    }
+                }
+                if (mismatches != 0) {
+                    System.out.println("Results differ from binarySearchRecursive");
+                }
+            } finally {
+                Files.delete(path);
+            }
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
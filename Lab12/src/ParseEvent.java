@@ -0,0 +1,69 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The ParseEvent class is the JDK Flight Recorder event of one evaluation of an expression by
+ * `RecursiveParser`.
+ *
+ * Specifications:
+ *
+ * - The event is named `lab12.Parse` and can be enabled, disabled or given a duration threshold
+ *   by that name in the settings of a recording. No event is created unless a flight recording
+ *   is running, so that calls allocate nothing while none is, even in code the JIT compiler has
+ *   not optimized yet.
+ *
+ * - The nesting depth is only computed for events that are committed, by scanning the expression.
+ *
+ * - Rejected expressions are recorded with the simple name of the exception thrown, such as
+ *   `IllegalArgumentException` for malformed input or `ArithmeticException` for a division by zero.
+ */
+@Name("lab12.Parse")
+@Label("Parse")
+@Category({"Lab12", "Parser"})
+@Description("An evaluation of an arithmetic expression")
+@StackTrace(false)
+final class ParseEvent extends Event {
+
+    @Label("Method")
+    String method;
+
+    @Label("Length")
+    @Description("The number of characters of the expression")
+    int length;
+
+    @Label("Nesting Depth")
+    @Description("The deepest nesting of parentheses")
+    int depth;
+
+    @Label("Error")
+    @Description("The exception thrown for a rejected expression, null if it was evaluated")
+    String error;
+
+    /**
+     * Creates and begins an event, if a flight recording is running.
+     *
+     * @return The event, or null if no recording is running.
+     */
+    static ParseEvent beginIfRecording() {
+        if (!Metrics.isRecording()) {
+            return null;
+        }
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event and tells whether it is to be committed.
+     *
+     * @return True if a recording enables the event and its duration passes the threshold.
+     */
+    boolean endAndShouldCommit() {
+        end();
+        return shouldCommit();
+    }
+}
@@ -0,0 +1,346 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The PiecewiseLinearIndex class is a learned index over a sorted array of integers: a piecewise
+ * linear model predicts where a target is, and a short local search finishes the lookup.
+ *
+ * Specifications:
+ *
+ * - The model maps every distinct key to the position of its first occurrence. It is built in one
+ *   pass with the shrinking cone method of the PGM index: a segment keeps the range of slopes that
+ *   predict all its keys within `epsilon` positions, and a new segment starts when a key leaves
+ *   that range. Each segment stores its first key, its first position and a slope.
+ *
+ * - After building, the error of the model is measured on every distinct key, so the search window
+ *   is exact even where floating-point rounding adds to `epsilon`.
+ *
+ * - A lookup finds the segment of the target by a binary search over the first keys of the
+ *   segments, predicts a position, and searches the window of the maximum error around it. A
+ *   target that is absent can lie farther from its prediction, next to a long run of duplicates;
+ *   the window is then widened exponentially until it contains the answer, so results are always
+ *   exact.
+ *
+ * - The `indexOf` method returns the same index as `BinarySearch.binarySearchRecursive` for the
+ *   whole array, -1 when the target is absent. For duplicated targets the run of occurrences is
+ *   located and the recursive probe sequence is replayed on it with `BinarySearch.resolveIndex`.
+ *
+ * - The search over s segments and a window of 2e + 1 positions takes log2(s (2e + 1)) probes,
+ *   against log2(d) for a plain binary search over d distinct keys. On distributions that no small
+ *   model fits, where the model would save fewer than two probes to pay for the prediction, it is
+ *   discarded and lookups fall back to `binarySearchRecursive`.
+ *   The `segmentCount`, `maxError`, `modelBytes` and `isFallback` methods report the outcome.
+ *
+ * - It throws an `IllegalArgumentException` if the array is null, empty or not sorted, or if the
+ *   error bound is negative.
+ *
+ * Time Complexity:
+ * - O(n) to build the index.
+ * - O(log s + log e) per lookup for s segments and a maximum error of e, O(log n) as a fallback.
+ *
+ * Space Complexity:
+ * - O(n) for the copy of the array, plus O(s) for the model.
+ */
+public final class PiecewiseLinearIndex {
+
+    /**
+     * The default bound on the distance between a predicted and an actual position.
+     */
+    public static final int DEFAULT_EPSILON = 32;
+
+    /**
+     * The fewest binary search probes the model must save to be kept.
+     */
+    static final int MIN_PROBES_SAVED = 2;
+
+    private final int[] keys;
+    private final boolean duplicates;
+    private final int[] firstKeys;
+    private final int[] firstPositions;
+    private final double[] slopes;
+    private final int maxError;
+
+    /**
+     * Builds the index with the default error bound.
+     *
+     * @param sortedArray The sorted array to be indexed.
+     * @throws IllegalArgumentException If the array is null, empty, or not sorted in ascending order.
+     */
+    public PiecewiseLinearIndex(int[] sortedArray) {
+        this(sortedArray, DEFAULT_EPSILON);
+    }
+
+    /**
+     * Builds the index from a sorted array. The array is copied and may be modified afterwards.
+     *
+     * @param sortedArray The sorted array to be indexed.
+     * @param epsilon The bound on the prediction error the model is fitted to.
+     * @throws IllegalArgumentException If the array is null, empty, or not sorted in ascending
+     *         order, or if epsilon is negative.
+     */
+    public PiecewiseLinearIndex(int[] sortedArray, int epsilon) {
+        if (sortedArray == null || sortedArray.length == 0) {
+            throw new IllegalArgumentException("Array cannot be null or empty");
+        }
+        if (epsilon < 0) {
+            throw new IllegalArgumentException("Error bound cannot be negative");
+        }
+        int distinct = 1;
+        for (int i = 1; i < sortedArray.length; i++) {
+            if (sortedArray[i - 1] > sortedArray[i]) {
+                throw new IllegalArgumentException("Array must be sorted in ascending order");
+            }
+            if (sortedArray[i - 1] != sortedArray[i]) {
+                distinct++;
+            }
+        }
+        this.keys = Arrays.copyOf(sortedArray, sortedArray.length);
+        this.duplicates = distinct < keys.length;
+
+        // Fit the segments with a shrinking cone of admissible slopes
+        int[] segmentKeys = new int[16];
+        int[] segmentPositions = new int[16];
+        double[] segmentSlopes = new double[16];
+        int segments = 0;
+        long originKey = keys[0];
+        int originPosition = 0;
+        double lowSlope = 0;
+        double highSlope = Double.POSITIVE_INFINITY;
+        for (int i = 1; i <= keys.length; i++) {
+            if (i < keys.length && keys[i] == keys[i - 1]) {
+                continue;
+            }
+            boolean inside = false;
+            if (i < keys.length) {
+                double dx = (double) ((long) keys[i] - originKey);
+                double low = (i - epsilon - originPosition) / dx;
+                double high = (i + epsilon - originPosition) / dx;
+                inside = low <= highSlope && high >= lowSlope;
+                if (inside) {
+                    lowSlope = Math.max(lowSlope, low);
+                    highSlope = Math.min(highSlope, high);
+                }
+            }
+            if (!inside) {
+                if (segments == segmentKeys.length) {
+                    segmentKeys = Arrays.copyOf(segmentKeys, segments * 2);
+                    segmentPositions = Arrays.copyOf(segmentPositions, segments * 2);
+                    segmentSlopes = Arrays.copyOf(segmentSlopes, segments * 2);
+                }
+                segmentKeys[segments] = (int) originKey;
+                segmentPositions[segments] = originPosition;
+                segmentSlopes[segments] = highSlope == Double.POSITIVE_INFINITY ? 0 : (lowSlope + highSlope) / 2;
+                segments++;
+                if (i < keys.length) {
+                    originKey = keys[i];
+                    originPosition = i;
+                    lowSlope = 0;
+                    highSlope = Double.POSITIVE_INFINITY;
+                }
+            }
+        }
+
+        // Measure the error the model actually makes on the first occurrence of every key
+        int error = 0;
+        int segment = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0 && keys[i] == keys[i - 1]) {
+                continue;
+            }
+            while (segment + 1 < segments && segmentKeys[segment + 1] <= keys[i]) {
+                segment++;
+            }
+            double position = segmentPositions[segment] + segmentSlopes[segment] * ((long) keys[i] - segmentKeys[segment]);
+            error = Math.max(error, Math.abs(clamp(position) - i));
+        }
+
+        if (((long) segments * (2L * error + 1) << MIN_PROBES_SAVED) > distinct) {
+            this.firstKeys = null;
+            this.firstPositions = null;
+            this.slopes = null;
+            this.maxError = -1;
+        } else {
+            this.firstKeys = Arrays.copyOf(segmentKeys, segments);
+            this.firstPositions = Arrays.copyOf(segmentPositions, segments);
+            this.slopes = Arrays.copyOf(segmentSlopes, segments);
+            this.maxError = error;
+        }
+    }
+
+    /**
+     * Searches the index for the given target.
+     *
+     * @param target The element that needs to be found.
+     * @return The index `binarySearchRecursive` returns for the original array, otherwise -1.
+     */
+    public int indexOf(int target) {
+        if (firstKeys == null) {
+            return BinarySearch.binarySearchRecursive(keys, target, 0, keys.length - 1);
+        }
+        if (target < keys[0] || target > keys[keys.length - 1]) {
+            return -1;
+        }
+        int from = lowerBound(target);
+        if (keys[from] != target) {
+            return -1;
+        }
+        if (!duplicates) {
+            return from;
+        }
+        // Gallop over the run of the target to find its end
+        int step = 1;
+        int low = from;
+        int high = from + 1;
+        while (high < keys.length && keys[high] == target) {
+            low = high;
+            step <<= 1;
+            high = (int) Math.min(keys.length, (long) high + step);
+        }
+        int to = BinarySearchAllIndices.upperBound(keys, target, low, high - 1);
+        return BinarySearch.resolveIndex(from, to, 0, keys.length - 1);
+    }
+
+    /**
+     * Returns the number of segments of the model.
+     *
+     * @return The number of segments, 0 if lookups fall back to a plain binary search.
+     */
+    public int segmentCount() {
+        return firstKeys == null ? 0 : firstKeys.length;
+    }
+
+    /**
+     * Returns the largest distance between a predicted position and the first occurrence of a key.
+     *
+     * @return The measured maximum error, -1 if lookups fall back to a plain binary search.
+     */
+    public int maxError() {
+        return maxError;
+    }
+
+    /**
+     * Returns the size of the model, excluding the copy of the array.
+     *
+     * @return The number of bytes of the segment arrays.
+     */
+    public long modelBytes() {
+        return segmentCount() * (4L + 4L + 8L);
+    }
+
+    /**
+     * Tells whether the model was discarded for a plain binary search.
+     *
+     * @return True if lookups use `binarySearchRecursive`.
+     */
+    public boolean isFallback() {
+        return firstKeys == null;
+    }
+
+    /**
+     * Finds the first position whose element is not less than a target within the key range.
+     *
+     * @param target The element searched for, between the smallest and the largest element.
+     * @return The first position whose element is not less than the target.
+     */
+    private int lowerBound(int target) {
+        // The last segment whose first key is not greater than the target
+        int low = 0;
+        int high = firstKeys.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (firstKeys[mid] <= target) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        int predicted = predict(low, target);
+        int last = keys.length - 1;
+        low = Math.max(0, predicted - maxError);
+        high = Math.min(last, predicted + maxError);
+        // Widen the window until it holds the answer, which lies in [low, high + 1]
+        int step = maxError + 1;
+        while (low > 0 && keys[low - 1] >= target) {
+            high = low - 1;
+            low = Math.max(0, low - step);
+            step <<= 1;
+        }
+        while (high < last && keys[high] < target) {
+            low = high + 1;
+            high = (int) Math.min(last, (long) high + step);
+            step <<= 1;
+        }
+        return BinarySearchAllIndices.lowerBound(keys, target, low, high);
+    }
+
+    private int predict(int segment, int key) {
+        return clamp(firstPositions[segment] + slopes[segment] * ((long) key - firstKeys[segment]));
+    }
+
+    private int clamp(double position) {
+        return (int) Math.max(0, Math.min(keys.length - 1, Math.round(position)));
+    }
+
+    /**
+     * The main method builds the index over uniform, piecewise and scale-free key distributions,
+     * prints the model size and error, and compares the lookup latency with `binarySearchRecursive`.
+     * The last distribution is also fitted with an error bound of 0, which no model can meet with
+     * few segments, to show the fallback.
+     *
+     * @param args The array size, 16M by default.
+     */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 24;
+        Random random = new Random(42);
+        String[] names = {"uniform", "piecewise", "scale-free", "scale-free"};
+        int[] epsilons = {DEFAULT_EPSILON, DEFAULT_EPSILON, DEFAULT_EPSILON, 0};
+        for (int c = 0; c < names.length; c++) {
+            String name = names[c];
+            int[] sortedArray = new int[n];
+            long value = 0;
+            for (int i = 0; i < n; i++) {
+                if (name.equals("uniform")) {
+                    value += 1 + random.nextInt(100);
+                } else if (name.equals("piecewise")) {
+                    value += i < n / 2 ? 1 + random.nextInt(10) : 50 + random.nextInt(200);
+                } else {
+                    // Gaps of every scale from 1 to the whole key range, which no small set of lines follows
+                    value += 1 + random.nextInt(1 << random.nextInt(31 - (32 - Integer.numberOfLeadingZeros(n))));
+                }
+                sortedArray[i] = (int) Math.min(Integer.MAX_VALUE, value);
+            }
+            long start = System.nanoTime();
+            PiecewiseLinearIndex index = new PiecewiseLinearIndex(sortedArray, epsilons[c]);
+            long build = System.nanoTime() - start;
+            System.out.printf("%s, epsilon %d: %d segments, %d bytes, max error %d%s, built in %d ms%n", name,
+                    epsilons[c], index.segmentCount(), index.modelBytes(), index.maxError(),
+                    index.isFallback() ? " (fallback)" : "", build / 1_000_000);
+
+            int[] targets = new int[1 << 22];
+            for (int i = 0; i < targets.length; i++) {
+                targets[i] = sortedArray[random.nextInt(n)] + random.nextInt(2);
+            }
+            int mismatches = 0;
+            for (int round = 0; round < 3; round++) {
+                start = System.nanoTime();
+                int[] expected = new int[targets.length];
+                for (int i = 0; i < targets.length; i++) {
+                    expected[i] = BinarySearch.binarySearchRecursive(sortedArray, targets[i], 0, n - 1);
+                }
+                long recursive = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int i = 0; i < targets.length; i++) {
+                    mismatches += index.indexOf(targets[i]) != expected[i] ? 1 : 0;
+                }
+                long learned = System.nanoTime() - start;
+                if (round == 2) {
+                    System.out.printf("  recursive: %.1f ns/lookup  learned: %.1f ns/lookup%n",
+                            (double) recursive / targets.length, (double) learned / targets.length);
+                }
+            }
+            if (mismatches != 0) {
+                System.out.println("Results differ from binarySearchRecursive");
+            }
+        }
+    }
+}
@@ -1,59 +1,249 @@
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Stack;
 
 /**
  * The RecursiveParser class evaluates arithmetic expressions represented as strings.
  * It supports basic arithmetic operations (addition, subtraction, multiplication, division)
- * as well as parentheses for grouping sub-expressions.
+ * as well as parentheses for grouping sub-expressions and, in compiled expressions, named variables.
  * 
  * Specifications:
  * 
  * - The `evaluateExpression` method is the main entry point for evaluating an expression. 
- *   It validates the input expression and invokes the recursive `evaluate` method.
+ *   It validates the input expression, obtains its compiled form and evaluates it. Variables are
+ *   only accepted by `compile`: `evaluateExpression` rejects a letter as an invalid character where
+ *   parsing reaches it, so an earlier error such as a division by zero is still reported first.
  * 
- * - The `evaluate` method recursively processes the expression character by character, 
- *   handling numbers, operators, and parentheses. It uses two stacks: one for values 
- *   (operands) and one for operators.
+ * - The `compile` method turns an expression into an immutable `CompiledExpression` tree with
+ *   constant subtrees folded ahead of time. Compiled expressions are kept in a bounded,
+ *   thread-safe LRU cache, so repeated evaluations of the same string skip parsing completely.
+ *   Compiled expressions may contain variables such as `price * qty - discount`, whose values are
+ *   supplied per evaluation or as whole columns for batch evaluation. For the hottest expressions,
+ *   compilation can opt in to generating a class whose code evaluates the expression directly.
+ * 
+ * - The `evaluate` method evaluates an expression in a single pass without compiling or caching
+ *   it. It uses primitive stacks that are reused per thread instead of recursion, allocates nothing
+ *   for well-formed input, and handles arbitrarily deep nesting of parentheses.
+ * 
+ * - The `parse` method recursively processes the expression character by character, 
+ *   handling numbers, variables, operators, and parentheses. It uses two stacks: one for operand nodes 
+ *   and one for operators.
  * 
  * - The expression is parsed from left to right, and operators are applied based on their 
- *   precedence. Parentheses are handled by recursive evaluation of sub-expressions.
+ *   precedence. Parentheses are handled by recursive parsing of sub-expressions.
  * 
  * - The method ensures correct order of operations and handles invalid or unbalanced expressions 
  *   with appropriate exceptions.
  * 
+ * - The `evaluateExpression` and `evaluate` methods record their calls, and the expressions they
+ *   reject, in `Metrics.PARSE`, and report them to JDK Flight Recorder as a `ParseEvent`. The
+ *   nesting depth is only measured for events that are committed to a recording.
+ * 
  * Time Complexity:
- * - O(n), where n is the number of characters in the expression, as each character is processed once.
+ * - O(n) to compile, where n is the number of characters in the expression, as each character is processed once.
+ * - O(m) to evaluate a cached expression, where m is the number of nodes left after constant folding.
  * 
  * Space Complexity:
  * - O(n) for the stacks that store operands and operators, where n is the number of operands and operators in the expression.
  */
 public class RecursiveParser {
 
+    /**
+     * The maximum number of compiled expressions kept by the shared cache.
+     */
+    private static final int CACHE_CAPACITY = 8192;
+
+    private static final ExpressionCache CACHE = new ExpressionCache(CACHE_CAPACITY);
+
+    private static final ThreadLocal<ExpressionEvaluator> EVALUATOR = ThreadLocal.withInitial(ExpressionEvaluator::new);
+
     /**
      * Evaluates the given arithmetic expression and returns the result.
+     * Repeated evaluations of the same expression reuse its cached compiled form.
      * 
      * @param expression The arithmetic expression to be evaluated, represented as a string.
      * @return The result of the evaluation as a double.
-     * @throws IllegalArgumentException If the expression is null, empty, or contains invalid characters.
+     * @throws IllegalArgumentException If the expression is null, empty, or contains invalid characters,
+     *         letters included.
      * @throws ArithmeticException If a division by zero occurs.
      */
     public static double evaluateExpression(String expression) {
+        ParseEvent event = ParseEvent.beginIfRecording();
+        long start = Metrics.start();
+        double result;
+        try {
+            if (expression == null || expression.isEmpty()) {
+                throw new IllegalArgumentException("Expression cannot be null or empty");
+            }
+            result = CACHE.getWithoutVariables(expression).evaluate();
+        } catch (RuntimeException e) {
+            Metrics.PARSE.recordError(start);
+            if (event != null && event.endAndShouldCommit()) {
+                commit(event, "RecursiveParser.evaluateExpression", expression, e);
+            }
+            throw e;
+        }
+        Metrics.PARSE.record(start);
+        if (event != null && event.endAndShouldCommit()) {
+            commit(event, "RecursiveParser.evaluateExpression", expression, null);
+        }
+        return result;
+    }
+
+    /**
+     * Evaluates the given arithmetic expression in a single pass, without compiling or caching it.
+     * The result and the exceptions are the same as for `evaluateExpression`, but no objects are
+     * allocated for well-formed input and deeply nested parentheses do not use the call stack.
+     * 
+     * @param expression The arithmetic expression to be evaluated.
+     * @return The result of the evaluation as a double.
+     * @throws IllegalArgumentException If the expression is null, empty, or contains invalid characters.
+     * @throws ArithmeticException If a division by zero occurs.
+     */
+    public static double evaluate(CharSequence expression) {
+        ParseEvent event = ParseEvent.beginIfRecording();
+        long start = Metrics.start();
+        double result;
+        try {
+            result = EVALUATOR.get().evaluate(expression);
+        } catch (RuntimeException e) {
+            Metrics.PARSE.recordError(start);
+            if (event != null && event.endAndShouldCommit()) {
+                commit(event, "RecursiveParser.evaluate", expression, e);
+            }
+            throw e;
+        }
+        Metrics.PARSE.record(start);
+        if (event != null && event.endAndShouldCommit()) {
+            commit(event, "RecursiveParser.evaluate", expression, null);
+        }
+        return result;
+    }
+
+    /**
+     * Describes and commits an evaluation event that a recording enables.
+     * 
+     * @param event The event begun and ended with the evaluation.
+     * @param method The name of the method reported in the event.
+     * @param expression The expression evaluated, possibly null.
+     * @param error The exception that rejected the expression, or null if it was evaluated.
+     */
+    private static void commit(ParseEvent event, String method, CharSequence expression, RuntimeException error) {
+        event.method = method;
+        event.error = error == null ? null : error.getClass().getSimpleName();
+        event.length = expression == null ? 0 : expression.length();
+        event.depth = nestingDepth(expression);
+        event.commit();
+    }
+
+    /**
+     * Measures the deepest nesting of parentheses in an expression, which need not be balanced.
+     * 
+     * @param expression The expression, possibly null.
+     * @return The largest number of parentheses open at any point.
+     */
+    static int nestingDepth(CharSequence expression) {
+        int depth = 0;
+        int maxDepth = 0;
+        for (int i = 0; expression != null && i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (c == '(') {
+                maxDepth = Math.max(maxDepth, ++depth);
+            } else if (c == ')') {
+                depth--;
+            }
+        }
+        return maxDepth;
+    }
+
+    /**
+     * Compiles the given arithmetic expression into a reusable evaluation tree, using the shared
+     * cache so that each distinct expression is parsed only once while it stays cached.
+     * Identifiers made of letters, digits and underscores, starting with a letter or underscore,
+     * are compiled as variables.
+     * 
+     * @param expression The arithmetic expression to be compiled, represented as a string.
+     * @return The compiled expression.
+     * @throws IllegalArgumentException If the expression is null, empty, or contains invalid characters.
+     * @throws ArithmeticException If a division by a constant zero is found while folding constants.
+     */
+    public static CompiledExpression compile(String expression) {
         if (expression == null || expression.isEmpty()) {
             throw new IllegalArgumentException("Expression cannot be null or empty");
         }
-        return evaluate(expression.replaceAll("\\s", ""), new int[]{0});
+        return CACHE.get(expression);
     }
 
     /**
-     * Recursively evaluates the arithmetic expression, processing each character one by one.
+     * Compiles the given arithmetic expression like `compile(String)`, optionally backing the cached
+     * expression with a class generated at runtime. Once generated, later evaluations of the same
+     * cached expression, including through `evaluateExpression`, run the generated code.
      * 
-     * @param expression The arithmetic expression to be evaluated.
+     * @param expression The arithmetic expression to be compiled, represented as a string.
+     * @param generateCode Whether the expression should be backed by generated code.
+     * @return The compiled expression.
+     * @throws IllegalArgumentException If the expression is null, empty, or contains invalid characters.
+     * @throws ArithmeticException If a division by a constant zero is found while folding constants.
+     */
+    public static CompiledExpression compile(String expression, boolean generateCode) {
+        if (expression == null || expression.isEmpty()) {
+            throw new IllegalArgumentException("Expression cannot be null or empty");
+        }
+        return CACHE.get(expression, generateCode);
+    }
+
+    /**
+     * Returns the shared cache used by `compile` and `evaluateExpression`, which exposes its
+     * hit, miss and eviction counters.
+     * 
+     * @return The shared expression cache.
+     */
+    public static ExpressionCache cache() {
+        return CACHE;
+    }
+
+    /**
+     * Parses the given expression into a compiled expression without consulting the cache.
+     * 
+     * @param expression The arithmetic expression to be parsed, which must not be null or empty.
+     * @return The compiled expression.
+     * @throws IllegalArgumentException If the expression contains invalid characters or is unbalanced.
+     * @throws ArithmeticException If a division by a constant zero is found while folding constants.
+     */
+    static CompiledExpression parse(String expression) {
+        return parse(expression, true);
+    }
+
+    /**
+     * Parses the given expression like `parse(String)`, optionally rejecting variables with the
+     * message of any other invalid character.
+     * 
+     * @param expression The arithmetic expression to be parsed, which must not be null or empty.
+     * @param allowVariables Whether identifiers are parsed as variables.
+     * @return The compiled expression.
+     * @throws IllegalArgumentException If the expression contains invalid characters or is unbalanced.
+     * @throws ArithmeticException If a division by a constant zero is found while folding constants.
+     */
+    static CompiledExpression parse(String expression, boolean allowVariables) {
+        List<String> variables = allowVariables ? new ArrayList<>() : null;
+        CompiledExpression.Node root = parse(expression.replaceAll("\\s", ""), new int[]{0}, variables);
+        return new CompiledExpression(expression, root,
+                allowVariables ? variables.toArray(new String[0]) : new String[0]);
+    }
+
+    /**
+     * Recursively parses the arithmetic expression into a tree, processing each character one by one.
+     * 
+     * @param expression The arithmetic expression to be parsed.
      * @param index An array with a single element to track the current index in the expression.
-     * @return The result of the evaluation as a double.
+     * @param variables The names of the variables found so far, indexed by their position, or null
+     *        if variables are not allowed.
+     * @return The root node of the parsed (sub-)expression.
      * @throws IllegalArgumentException If the expression contains invalid characters or is unbalanced.
-     * @throws ArithmeticException If a division by zero occurs.
+     * @throws ArithmeticException If a division by a constant zero is found while folding constants.
      */
-    private static double evaluate(String expression, int[] index) {
-        Stack<Double> values = new Stack<>();
+    private static CompiledExpression.Node parse(String expression, int[] index, List<String> variables) {
+        Stack<CompiledExpression.Node> values = new Stack<>();
         Stack<Character> operators = new Stack<>();
 
         while (index[0] < expression.length()) {
@@ -66,11 +256,25 @@ public class RecursiveParser {
                         (Character.isDigit(expression.charAt(index[0])) || expression.charAt(index[0]) == '.')) {
                     sb.append(expression.charAt(index[0]++));
                 }
-                values.push(Double.parseDouble(sb.toString()));
+                values.push(new CompiledExpression.Constant(Double.parseDouble(sb.toString())));
             } else if (c == '(') {
-                // Start evaluating sub-expression
+                // Start parsing sub-expression
                 index[0]++;
-                values.push(evaluate(expression, index));
+                values.push(parse(expression, index, variables));
+            } else if ((Character.isLetter(c) || c == '_') && variables != null) {
+                // Parse a variable name
+                int start = index[0];
+                while (index[0] < expression.length() &&
+                        (Character.isLetterOrDigit(expression.charAt(index[0])) || expression.charAt(index[0]) == '_')) {
+                    index[0]++;
+                }
+                String name = expression.substring(start, index[0]);
+                int slot = variables.indexOf(name);
+                if (slot < 0) {
+                    slot = variables.size();
+                    variables.add(name);
+                }
+                values.push(new CompiledExpression.Variable(slot));
             } else if (c == ')') {
                 // End of sub-expression
                 index[0]++;
@@ -123,35 +327,44 @@ public class RecursiveParser {
     }
 
     /**
-     * Applies the given operator on the top two values in the values stack.
+     * Combines the top two nodes in the values stack with the given operator.
      * 
-     * @param values The stack of values on which the operation will be applied.
+     * @param values The stack of nodes on which the operation will be applied.
      * @param operator The operator to be applied.
      * @throws IllegalArgumentException If there are not enough values in the stack for the operation.
-     * @throws ArithmeticException If a division by zero occurs.
+     * @throws ArithmeticException If both nodes are constants and the divisor is zero.
      */
-    private static void applyOperation(Stack<Double> values, char operator) {
+    private static void applyOperation(Stack<CompiledExpression.Node> values, char operator) {
         if (values.size() < 2) {
             throw new IllegalArgumentException("Invalid expression: Insufficient values for operator " + operator);
         }
-        double b = values.pop();
-        double a = values.pop();
+        CompiledExpression.Node b = values.pop();
+        CompiledExpression.Node a = values.pop();
+        values.push(CompiledExpression.binary(operator, a, b));
+    }
+
+    /**
+     * Applies the given operator to two operands.
+     * 
+     * @param operator The operator to be applied.
+     * @param a The left operand.
+     * @param b The right operand.
+     * @return The result of the operation.
+     * @throws ArithmeticException If a division by zero occurs.
+     */
+    static double apply(char operator, double a, double b) {
         switch (operator) {
             case '+':
-                values.push(a + b);
-                break;
+                return a + b;
             case '-':
-                values.push(a - b);
-                break;
+                return a - b;
             case '*':
-                values.push(a * b);
-                break;
+                return a * b;
             case '/':
                 if (b == 0) {
                     throw new ArithmeticException("Division by zero");
                 }
-                values.push(a / b);
-                break;
+                return a / b;
             default:
                 throw new IllegalArgumentException("Unknown operator: " + operator);
         }
@@ -1,5 +1,22 @@
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 class RecursiveParserTest {
 
@@ -27,4 +44,297 @@ class RecursiveParserTest {
         assertThrows(IllegalArgumentException.class, () -> RecursiveParser.evaluateExpression("3 + 5 @ 2"));
         assertThrows(ArithmeticException.class, () -> RecursiveParser.evaluateExpression("10 / 0"));
     }
+
+    @Test
+    void testCompiledExpressions() {
+        CompiledExpression compiled = RecursiveParser.compile("(3 + 5) * 2");
+        assertTrue(compiled.isConstant());
+        assertEquals(16, compiled.evaluate());
+        assertSame(compiled, RecursiveParser.compile("(3 + 5) * 2"));
+
+        assertThrows(ArithmeticException.class, () -> RecursiveParser.compile("1 + 10 / (2 - 2)"));
+        assertThrows(IllegalArgumentException.class, () -> RecursiveParser.compile("3 + 5 @ 2"));
+    }
+
+    @Test
+    void testExpressionCache() {
+        ExpressionCache cache = new ExpressionCache(16);
+        cache.get("1 + 2");
+        cache.get("1 + 2");
+        assertEquals(1, cache.missCount());
+        assertEquals(1, cache.hitCount());
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i + 1, cache.get(i + " + 1").evaluate());
+        }
+        assertTrue(cache.size() <= cache.capacity());
+        assertTrue(cache.evictionCount() > 0);
+
+        // Every key keeps its entry until the next one, even with fewer entries than segments
+        for (int capacity : new int[] {1, 3, 15}) {
+            ExpressionCache small = new ExpressionCache(capacity);
+            for (int i = 0; i < 100; i++) {
+                small.get(i + " * 2");
+                small.get(i + " * 2");
+            }
+            assertEquals(100, small.hitCount());
+            assertEquals(100, small.missCount());
+            assertTrue(small.size() <= capacity);
+        }
+    }
+
+    @Test
+    void testSinglePassEvaluation() {
+        assertEquals(13, RecursiveParser.evaluate("3 + 5 * 2"));
+        assertEquals(7, RecursiveParser.evaluate("3 + (2 * (5 - 3))"));
+        assertEquals(1.5, RecursiveParser.evaluate("1 . 5"));
+        assertEquals(0.1, RecursiveParser.evaluate(".1"));
+        assertThrows(IllegalArgumentException.class, () -> RecursiveParser.evaluate(""));
+        assertThrows(IllegalArgumentException.class, () -> RecursiveParser.evaluate("3 + 5 @ 2"));
+        assertThrows(IllegalArgumentException.class, () -> RecursiveParser.evaluate("(3)(4)"));
+        assertThrows(NumberFormatException.class, () -> RecursiveParser.evaluate("1.2.3"));
+        assertThrows(ArithmeticException.class, () -> RecursiveParser.evaluate("10 / 0"));
+
+        // Nesting far deeper than the call stack could handle recursively
+        StringBuilder deep = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) {
+            deep.append('(');
+        }
+        deep.append('1');
+        for (int i = 0; i < 200_000; i++) {
+            deep.append(')');
+        }
+        assertEquals(1, RecursiveParser.evaluate(deep));
+    }
+
+    @Test
+    void testSinglePassEvaluationDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long thread = Thread.currentThread().getId();
+        String[] expressions = {"3 + 5 * 2", "(1.25 + 2.75) * (10 - 4) / 3", "((((7))))", "100 / 8 - 0.5"};
+
+        double sum = 0;
+        for (int i = 0; i < 20_000; i++) {
+            sum += RecursiveParser.evaluate(expressions[i & 3]);
+        }
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 100_000; i++) {
+            sum += RecursiveParser.evaluate(expressions[i & 3]);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        assertTrue(sum > 0);
+        // Allow for the few bytes the measurement itself may allocate
+        assertTrue(allocated < 1024, "Allocated " + allocated + " bytes");
+    }
+
+    @Test
+    void testParseMetricsAndEvents(@TempDir Path directory) throws IOException {
+        Metrics.Snapshot before = Metrics.PARSE.snapshot();
+        Path path = directory.resolve("parse.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("lab12.Parse");
+            recording.start();
+            assertEquals(14, RecursiveParser.evaluate("2 * ((3 + 4))"));
+            assertThrows(ArithmeticException.class, () -> RecursiveParser.evaluate("1 / (0)"));
+            assertThrows(IllegalArgumentException.class, () -> RecursiveParser.evaluateExpression("3 + @"));
+            recording.stop();
+            recording.dump(path);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(path);
+            assertEquals(3, events.size());
+            assertEquals("RecursiveParser.evaluate", events.get(0).getString("method"));
+            assertEquals(13, events.get(0).getInt("length"));
+            assertEquals(2, events.get(0).getInt("depth"));
+            assertNull(events.get(0).getString("error"));
+            assertEquals("ArithmeticException", events.get(1).getString("error"));
+            assertEquals(1, events.get(1).getInt("depth"));
+            assertEquals("RecursiveParser.evaluateExpression", events.get(2).getString("method"));
+            assertEquals("IllegalArgumentException", events.get(2).getString("error"));
+        }
+        Metrics.Snapshot after = Metrics.PARSE.snapshot();
+        assertEquals(before.count() + 3, after.count());
+        assertEquals(before.errors() + 2, after.errors());
+
+        assertEquals(0, RecursiveParser.nestingDepth("1 + 2"));
+        assertEquals(3, RecursiveParser.nestingDepth("(1 + (2 * (3))) + (4)"));
+        assertEquals(0, RecursiveParser.nestingDepth(null));
+    }
+
+    @Test
+    void testEvaluationServer() throws IOException, InterruptedException {
+        try (EvaluationServer server = EvaluationServer.start(0)) {
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.port())) {
+                // All requests are sent before any answer is read
+                String requests = "1 + 2\n10 / 0\n2 * (3 + 4)\r\n\n3 + @\n" + "1".repeat(EvaluationServer.MAX_LINE_LENGTH + 10)
+                        + "\n4 * 4\n5 - 1";
+                socket.getOutputStream().write(requests.getBytes(StandardCharsets.US_ASCII));
+                socket.shutdownOutput();
+                List<String> answers = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                        StandardCharsets.US_ASCII)).lines().collect(Collectors.toList());
+                assertEquals(List.of("3.0", "ERROR Division by zero", "14.0", "ERROR Expression cannot be null or empty",
+                        "ERROR Invalid character in expression: @",
+                        "ERROR Line is longer than " + EvaluationServer.MAX_LINE_LENGTH + " bytes", "16.0", "4.0"), answers);
+            }
+            EvaluationServer.Stats stats = server.stats();
+            assertEquals(1, stats.connectionsAccepted());
+            assertEquals(8, stats.requests());
+            assertEquals(4, stats.errors());
+
+            EvaluationLoadGenerator.Result result = EvaluationLoadGenerator.run(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), server.port()), 50, 8, 200,
+                    TimeUnit.MILLISECONDS, List.of("1 + 1", "2 * 3", "1 / 0"));
+            assertEquals(0, result.failedConnections());
+            assertTrue(result.requests() > 0);
+            assertEquals(result.requests(), 8 * result.roundTrips().count());
+            // One expression in three is a division by zero
+            assertEquals(result.requests() / 3, result.errors(), result.requests() / 30 + 50);
+            assertEquals(8 + result.requests(), server.stats().requests());
+            assertEquals(51, server.stats().connectionsAccepted());
+            assertEquals(0, server.stats().acceptFailures());
+        }
+        assertThrows(IllegalArgumentException.class, () -> EvaluationServer.start(70_000));
+        assertThrows(IllegalArgumentException.class, () -> EvaluationLoadGenerator.run(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 1), 0, 1, 1, TimeUnit.SECONDS, List.of("1")));
+    }
+
+    @Test
+    void testVariables() {
+        CompiledExpression expression = RecursiveParser.compile("price * qty - discount");
+        assertEquals(java.util.List.of("price", "qty", "discount"), expression.variables());
+        assertEquals(17.5, expression.evaluate(4.5, 5, 5));
+        assertEquals(17.5, expression.evaluate(java.util.Map.of("price", 4.5, "qty", 5.0, "discount", 5.0)));
+        assertEquals(6, RecursiveParser.compile("x * (x + 1)").evaluate(2));
+        assertThrows(IllegalArgumentException.class, () -> expression.evaluate(1, 2));
+        assertThrows(IllegalArgumentException.class, () -> RecursiveParser.evaluateExpression("x + 1"));
+
+        // Without values, identifiers are invalid characters, whatever else the expression holds
+        for (String invalid : new String[] {"x+1/0", "2+abc", "a", "1e5", "price * qty - discount"}) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> RecursiveParser.evaluateExpression(invalid), invalid);
+            String expected = "Invalid character in expression: " + invalid.replaceAll("[^a-z]", "").charAt(0);
+            assertEquals(expected, e.getMessage());
+            assertEquals(expected, assertThrows(IllegalArgumentException.class, () -> RecursiveParser.evaluate(invalid)).getMessage());
+        }
+        assertThrows(ArithmeticException.class, () -> RecursiveParser.evaluateExpression("1 + 1 / 0"));
+        assertThrows(ArithmeticException.class, () -> RecursiveParser.compile("a / b").evaluate(1, 0));
+
+        // An error found before the invalid character is reached is reported instead
+        for (String invalid : new String[] {"1/0 + @", "1/0+x"}) {
+            assertEquals("Division by zero", assertThrows(ArithmeticException.class,
+                    () -> RecursiveParser.evaluateExpression(invalid), invalid).getMessage());
+            assertEquals("Division by zero", assertThrows(ArithmeticException.class,
+                    () -> RecursiveParser.evaluate(invalid), invalid).getMessage());
+        }
+    }
+
+    @Test
+    void testBatchEvaluation() {
+        CompiledExpression expression = RecursiveParser.compile("(a + b) * (a - b) / 2 + 1");
+        int rows = 300_000;
+        double[] a = new double[rows];
+        double[] b = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            a[i] = i * 0.5;
+            b[i] = rows - i;
+        }
+        double[] sequential = new double[rows];
+        double[] parallel = new double[rows];
+        expression.evaluateBatch(new double[][]{a, b}, sequential);
+        expression.evaluateBatch(new double[][]{a, b}, parallel, true);
+        for (int i = 0; i < rows; i++) {
+            assertEquals(expression.evaluate(a[i], b[i]), sequential[i]);
+        }
+        assertArrayEquals(sequential, parallel);
+
+        b[rows - 1] = 0;
+        assertThrows(ArithmeticException.class,
+                () -> RecursiveParser.compile("a / b").evaluateBatch(new double[][]{a, b}, new double[rows], true));
+    }
+
+    @Test
+    void testGeneratedCode() {
+        CompiledExpression tree = RecursiveParser.compile("(a + 2.5) * b - c / (a - 1) + 1");
+        CompiledExpression generated = RecursiveParser.compile("(a + 2.5) * b - c / (a - 1) + 1", true);
+        assertTrue(generated.hasGeneratedCode());
+        assertSame(generated, RecursiveParser.compile("(a + 2.5) * b - c / (a - 1) + 1"));
+        java.util.Random random = new java.util.Random(7);
+        for (int i = 0; i < 1000; i++) {
+            double a = random.nextInt(10);
+            double b = random.nextDouble();
+            double c = random.nextGaussian();
+            if (a == 1) {
+                assertThrows(ArithmeticException.class, () -> generated.evaluate(1, b, c));
+            } else {
+                assertEquals(tree.evaluate(a, b, c), generated.evaluate(a, b, c));
+            }
+        }
+
+        // Constant expressions have nothing left to generate
+        assertFalse(RecursiveParser.compile("1 + 2", true).hasGeneratedCode());
+        assertEquals(3, RecursiveParser.evaluateExpression("1 + 2"));
+
+        // Code over the JIT compiler's size limit would stay interpreted, so large formulas keep the tree
+        StringBuilder formula = new StringBuilder("a");
+        for (int i = 0; i < 100; i++) {
+            formula.append(" + ").append(i + 2.5).append(" * a");
+        }
+        assertTrue(RecursiveParser.compile(formula.toString(), true).hasGeneratedCode());
+        for (int i = 100; i < 3000; i++) {
+            formula.append(" + ").append(i + 2.5).append(" * a");
+        }
+        CompiledExpression large = RecursiveParser.compile(formula.toString(), true);
+        assertFalse(large.hasGeneratedCode());
+        assertEquals(9_012_002, large.evaluate(2));
+    }
+
+    @Test
+    void testBulkEvaluation(@TempDir Path directory) throws IOException {
+        Path input = directory.resolve("expressions.txt");
+        Path output = directory.resolve("results.txt");
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            text.append(i).append(" * (2 + 3)\n");
+        }
+        text.append("3 + 5 @ 2\r\n").append("10 / 0\n").append("(3)(4)\n").append("\n").append("1.5 + 1");
+        Files.write(input, text.toString().getBytes(StandardCharsets.US_ASCII));
+
+        BulkExpressionEvaluator.Summary summary = BulkExpressionEvaluator.evaluateFile(input, output, 4);
+        assertEquals(10_005, summary.lines());
+        assertEquals(4, summary.errors());
+
+        List<String> results = Files.readAllLines(output, StandardCharsets.UTF_8);
+        assertEquals(10_005, results.size());
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(String.valueOf(i * 5.0), results.get(i));
+        }
+        assertEquals("ERROR Invalid character in expression: @", results.get(10_000));
+        assertEquals("ERROR Division by zero", results.get(10_001));
+        assertEquals("ERROR Invalid expression: Unbalanced operators and operands", results.get(10_002));
+        assertEquals("ERROR Expression cannot be null or empty", results.get(10_003));
+        assertEquals("2.5", results.get(10_004));
+    }
+
+    @Test
+    void testBulkEvaluationWithSmallHeap(@TempDir Path directory) throws Exception {
+        // Every empty line becomes a 41 byte error line, far more than the heap of the child JVM
+        Path input = directory.resolve("empty.txt");
+        Path output = directory.resolve("errors.txt");
+        int lines = 4 << 20;
+        byte[] newlines = new byte[lines];
+        java.util.Arrays.fill(newlines, (byte) '\n');
+        Files.write(input, newlines);
+
+        Path classes = Path.of(BulkExpressionEvaluator.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        Process process = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Xmx48m", "-cp", classes.toString(), "BulkExpressionEvaluator",
+                input.toString(), output.toString(), "2")
+                .redirectErrorStream(true).start();
+        String log = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(process.waitFor(2, TimeUnit.MINUTES), log);
+        assertEquals(0, process.exitValue(), log);
+        assertTrue(log.startsWith("Evaluated " + lines + " lines (" + lines + " errors)"), log);
+        assertEquals((long) lines * "ERROR Expression cannot be null or empty\n".length(), Files.size(output));
+    }
 }
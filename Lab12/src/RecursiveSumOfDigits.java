@@ -1,56 +1,345 @@
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * The RecursiveSumOfDigits class computes the sum of digits of a given BigInteger.
  * It handles both positive and negative input numbers and employs recursion to
- * calculate the sum by repeatedly extracting the last digit and adding it to the sum of the remaining digits.
+ * split the number into halves whose digits are summed independently.
  * 
  * Specifications:
  * 
- * - The `sumOfDigits` method is a recursive function that calculates the sum of digits of a BigInteger. 
+ * - The `sumOfDigits` method calculates the sum of digits of a BigInteger. 
  *   It handles both positive and negative inputs, using the absolute value of the number.
  * 
- * - The recursion works by dividing the number by 10 repeatedly, extracting the last digit at each step, 
- *   and adding it to the sum.
+ * - The recursion divides the number by a power of ten of the form 10^(18 * 2^k) that splits its
+ *   digits roughly in half. The quotient and the remainder hold the upper and the lower digits,
+ *   and since leading zeros add nothing to a digit sum, the two halves are summed independently.
+ *   The powers are computed once by repeated squaring and cached.
  * 
- * - The base case for the recursion is when the number becomes 0, at which point the recursion ends and returns 0.
+ * - The base case is a number below 10^18, which fits in a `long` and whose digits are summed
+ *   by `sumOfDigits(long)` instead of one `BigInteger` division per digit.
+ * 
+ * - The `sumOfDigits(long)` method sums the digits of a primitive value four at a time, looking up
+ *   the sum of each block of four digits in a table of 10,000 entries. The blocks are split off
+ *   without a division instruction, by multiplying with a precomputed reciprocal of 10,000 and
+ *   keeping the high bits of the product. The magnitude is treated as unsigned, so that
+ *   `Long.MIN_VALUE`, whose magnitude has no positive `long`, is handled without a special case.
+ * 
+ * - The `sumOfDigits(long[], int[])` method sums the digits of a batch of values, splitting large
+ *   batches across the common fork/join pool.
+ * 
+ * - The BigInteger and batch methods record their calls in `Metrics.DIGIT_SUM` and report them to
+ *   JDK Flight Recorder as a `DigitSumEvent`. The primitive method is too short to be measured.
+ * 
+ * - Numbers of more than about 40,000 digits fork their two halves as tasks of the common
+ *   fork/join pool, so the largest inputs use every processor.
  * 
  * Time Complexity:
- * - O(d), where d is the number of digits in the input number, as each recursive call reduces the number 
- *   by a factor of 10, which corresponds to the number of digits.
+ * - O(1) for a `long`, with at most five table lookups.
+ * - O(M(d) log d), where d is the number of digits in the input number and M(d) the cost of
+ *   multiplying d-digit numbers, which `BigInteger` keeps well below O(d^2) for large numbers.
  * 
  * Space Complexity:
- * - O(d), where d is the depth of the recursion, which corresponds to the number of digits in the input.
+ * - O(d) for the halves and the cached powers, with a recursion depth of O(log d).
  */
 public class RecursiveSumOfDigits {
 
+    /**
+     * The number of decimal digits of the base case, the most that always fit in a `long`.
+     */
+    private static final int LEAF_DIGITS = 18;
+
+    /**
+     * The bit length above which the two halves are summed in parallel.
+     */
+    private static final int PARALLEL_BIT_LENGTH = 1 << 17;
+
+    private static final double DIGITS_PER_BIT = Math.log10(2);
+
+    /**
+     * The number of values of a batch above which it is split between parallel tasks.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+    /**
+     * The number of digits looked up at a time.
+     */
+    private static final int BLOCK = 10_000;
+
+    /**
+     * The digit sums of the numbers 0 to 9999.
+     */
+    private static final byte[] BLOCK_DIGIT_SUMS = new byte[BLOCK];
+
+    /**
+     * ceil(2^72 / 625). For every n below 2^60, the high 64 bits of n * RECIPROCAL shifted right by
+     * RECIPROCAL_SHIFT equal n / 625, since the rounding error of the reciprocal is below 2^-12.
+     */
+    private static final long RECIPROCAL = 7_555_786_372_591_432_342L;
+
+    private static final int RECIPROCAL_SHIFT = 8;
+
+    static {
+        for (int i = 1; i < BLOCK; i++) {
+            BLOCK_DIGIT_SUMS[i] = (byte) (BLOCK_DIGIT_SUMS[i / 10] + i % 10);
+        }
+    }
+
+    /**
+     * The powers 10^(18 * 2^k) for k = 0, 1, 2, ..., extended on demand.
+     */
+    private static volatile BigInteger[] powers = {BigInteger.TEN.pow(LEAF_DIGITS)};
+
     /**
      * Computes the sum of digits of a given BigInteger.
      * Handles both positive and negative inputs.
      * 
      * @param number The BigInteger whose digits are to be summed.
      * @return The sum of the digits of the number.
+     * @throws ArithmeticException If the sum does not fit in an int, which takes over 238 million digits.
      */
     public static int sumOfDigits(BigInteger number) {
         // Handle negative numbers by converting to positive
         number = number.abs();
 
-        // Base case: If number is 0, return 0
-        if (number.equals(BigInteger.ZERO)) {
-            return 0;
+        DigitSumEvent event = DigitSumEvent.beginIfRecording();
+        long start = Metrics.start();
+        boolean parallel = number.bitLength() >= PARALLEL_BIT_LENGTH;
+        try {
+            long sum;
+            if (parallel) {
+                sum = ForkJoinPool.commonPool().invoke(new DigitSumTask(number));
+            } else {
+                sum = sumOfDigitsSequential(number);
+            }
+            int result = Math.toIntExact(sum);
+            Metrics.DIGIT_SUM.record(start);
+            return result;
+        } catch (RuntimeException e) {
+            Metrics.DIGIT_SUM.recordError(start);
+            if (event != null) {
+                event.error = e.getClass().getSimpleName();
+            }
+            throw e;
+        } finally {
+            if (event != null && event.endAndShouldCommit()) {
+                event.method = "RecursiveSumOfDigits.sumOfDigits(BigInteger)";
+                event.size = (long) (number.bitLength() * DIGITS_PER_BIT) + 1;
+                event.parallel = parallel;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Sums the digits of a non-negative number by splitting it in the calling thread.
+     * 
+     * @param number The non-negative number whose digits are to be summed.
+     * @return The sum of the digits.
+     */
+    private static long sumOfDigitsSequential(BigInteger number) {
+        // Base case: the number fits in a long
+        if (number.bitLength() < Long.SIZE) {
+            return sumOfDigits(number.longValue());
+        }
+        BigInteger[] halves = number.divideAndRemainder(splitPower(number));
+        return sumOfDigitsSequential(halves[0]) + sumOfDigitsSequential(halves[1]);
+    }
+
+    /**
+     * Computes the sum of digits of a long, with the same result as the BigInteger method.
+     * Handles both positive and negative inputs, including `Long.MIN_VALUE`.
+     * 
+     * @param value The value whose digits are to be summed.
+     * @return The sum of the digits of the value.
+     */
+    public static int sumOfDigits(long value) {
+        // The magnitude as an unsigned number, which is 2^63 for Long.MIN_VALUE
+        long magnitude = value < 0 ? -value : value;
+        int sum = 0;
+        while (Long.compareUnsigned(magnitude, BLOCK) >= 0) {
+            long quotient = divideByBlock(magnitude);
+            sum += BLOCK_DIGIT_SUMS[(int) (magnitude - quotient * BLOCK)];
+            magnitude = quotient;
+        }
+        return sum + BLOCK_DIGIT_SUMS[(int) magnitude];
+    }
+
+    /**
+     * Computes the sum of digits of every value of a batch.
+     * 
+     * @param in The values whose digits are to be summed.
+     * @param out The array receiving, at the position of every value, the sum of its digits.
+     * @throws IllegalArgumentException If an array is null, or the output is shorter than the input.
+     */
+    public static void sumOfDigits(long[] in, int[] out) {
+        if (in == null || out == null) {
+            throw new IllegalArgumentException("Arrays cannot be null");
+        }
+        if (out.length < in.length) {
+            throw new IllegalArgumentException("Output array is shorter than the input");
+        }
+        DigitSumEvent event = DigitSumEvent.beginIfRecording();
+        long start = Metrics.start();
+        boolean parallel = in.length > PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1;
+        if (parallel) {
+            ForkJoinPool.commonPool().invoke(new BatchTask(in, out, 0, in.length));
+        } else {
+            sumOfDigitsRange(in, out, 0, in.length);
+        }
+        Metrics.DIGIT_SUM.record(start);
+        if (event != null && event.endAndShouldCommit()) {
+            event.method = "RecursiveSumOfDigits.sumOfDigits(long[], int[])";
+            event.size = in.length;
+            event.parallel = parallel;
+            event.commit();
+        }
+    }
+
+    /**
+     * Sums the digits of a range of a batch.
+     * 
+     * @param in The values whose digits are to be summed.
+     * @param out The array receiving the digit sums.
+     * @param from The first value to sum.
+     * @param to The value after the last value to sum.
+     */
+    private static void sumOfDigitsRange(long[] in, int[] out, int from, int to) {
+        for (int i = from; i < to; i++) {
+            out[i] = sumOfDigits(in[i]);
         }
+    }
+
+    /**
+     * Divides an unsigned number by 10,000 without a division instruction. Dividing by 16 first
+     * leaves a non-negative number below 2^60, which is then divided by 625 through its reciprocal.
+     * 
+     * @param magnitude The dividend, read as an unsigned number.
+     * @return The quotient.
+     */
+    private static long divideByBlock(long magnitude) {
+        return Math.multiplyHigh(magnitude >>> 4, RECIPROCAL) >>> RECIPROCAL_SHIFT;
+    }
 
-        // Recursive case: Add the last digit to the sum of digits of the remaining number
-        return (number.mod(BigInteger.TEN)).intValue() + sumOfDigits(number.divide(BigInteger.TEN));
+    /**
+     * Chooses the largest cached power of ten with at most half the digits of a number, so that the
+     * quotient and the remainder have about the same size.
+     * 
+     * @param number A non-negative number of at least 19 digits.
+     * @return A power of the form 10^(18 * 2^k) not greater than the number.
+     */
+    private static BigInteger splitPower(BigInteger number) {
+        long digits = (long) (number.bitLength() * DIGITS_PER_BIT) + 1;
+        int level = 0;
+        while ((long) LEAF_DIGITS << (level + 1) <= digits / 2) {
+            level++;
+        }
+        return power(level);
+    }
+
+    /**
+     * Returns 10^(18 * 2^level), squaring the largest cached power until it is available.
+     * 
+     * @param level The level k of the power.
+     * @return The power.
+     */
+    private static BigInteger power(int level) {
+        BigInteger[] cached = powers;
+        if (level < cached.length) {
+            return cached[level];
+        }
+        synchronized (RecursiveSumOfDigits.class) {
+            cached = powers;
+            if (level >= cached.length) {
+                BigInteger[] extended = Arrays.copyOf(cached, level + 1);
+                for (int k = cached.length; k <= level; k++) {
+                    extended[k] = extended[k - 1].multiply(extended[k - 1]);
+                }
+                powers = extended;
+                cached = extended;
+            }
+            return cached[level];
+        }
+    }
+
+    /**
+     * Sums the digits of a large non-negative number, summing its upper half in a forked task.
+     */
+    private static final class DigitSumTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final BigInteger number;
+
+        DigitSumTask(BigInteger number) {
+            this.number = number;
+        }
+
+        @Override
+        protected Long compute() {
+            if (number.bitLength() < PARALLEL_BIT_LENGTH) {
+                return sumOfDigitsSequential(number);
+            }
+            BigInteger[] halves = number.divideAndRemainder(splitPower(number));
+            DigitSumTask upper = new DigitSumTask(halves[0]);
+            upper.fork();
+            long lower = new DigitSumTask(halves[1]).compute();
+            return upper.join() + lower;
+        }
+    }
+
+    /**
+     * Sums the digits of a range of a batch, splitting it in halves until it is small enough.
+     */
+    private static final class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] in;
+        private final int[] out;
+        private final int from;
+        private final int to;
+
+        BatchTask(long[] in, int[] out, int from, int to) {
+            this.in = in;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                sumOfDigitsRange(in, out, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BatchTask(in, out, from, mid), new BatchTask(in, out, mid, to));
+        }
     }
 
     /**
      * Main method to accept user input, compute the sum of digits, and display the result.
+     * Given file names, it instead sums the digits of the number in each file with
+     * `DecimalFileDigitSum`, which maps the file rather than reading it into a BigInteger.
      * 
-     * @param args Command-line arguments (not used in this case).
+     * @param args Command-line arguments: files holding decimal numbers, or none to read standard input.
+     * @throws IOException If a file cannot be read.
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0) {
+            for (String file : args) {
+                long sum = DecimalFileDigitSum.sumOfDigits(Paths.get(file));
+                System.out.println(file + ": the sum of the digits is " + sum
+                        + " (digital root " + DecimalFileDigitSum.digitalRoot(sum) + ")");
+            }
+            return;
+        }
+
         Scanner scanner = new Scanner(System.in);
 
         // Prompt the user to enter a non-negative integer
@@ -1,6 +1,19 @@
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 class RecursiveSumOfDigitsTest {
 
@@ -31,4 +44,171 @@ class RecursiveSumOfDigitsTest {
         assertEquals(6, RecursiveSumOfDigits.sumOfDigits(new BigInteger("-123")));
         assertEquals(15, RecursiveSumOfDigits.sumOfDigits(new BigInteger("-12345")));
     }
+
+    @Test
+    void testDivideAndConquer() {
+        Random random = new Random(17);
+        for (int round = 0; round < 200; round++) {
+            String digits = randomDigits(random, 1 + random.nextInt(3000));
+            assertEquals(digitSum(digits), RecursiveSumOfDigits.sumOfDigits(new BigInteger(digits)));
+            assertEquals(digitSum(digits), RecursiveSumOfDigits.sumOfDigits(new BigInteger("-" + digits)));
+        }
+        // Powers of ten and their predecessors cross every split point
+        for (int exponent = 0; exponent < 600; exponent++) {
+            BigInteger power = BigInteger.TEN.pow(exponent);
+            assertEquals(1, RecursiveSumOfDigits.sumOfDigits(power));
+            assertEquals(9 * exponent, RecursiveSumOfDigits.sumOfDigits(power.subtract(BigInteger.ONE)));
+        }
+        assertEquals(9 * 18, RecursiveSumOfDigits.sumOfDigits(BigInteger.valueOf(999_999_999_999_999_999L)));
+        assertEquals(89, RecursiveSumOfDigits.sumOfDigits(BigInteger.valueOf(Long.MIN_VALUE)));
+    }
+
+    @Test
+    void testParallelDigitSum() {
+        // Large enough to be split across the fork/join pool
+        String digits = randomDigits(new Random(18), 200_000);
+        assertEquals(digitSum(digits), RecursiveSumOfDigits.sumOfDigits(new BigInteger(digits)));
+        assertEquals(9 * 100_000, RecursiveSumOfDigits.sumOfDigits(BigInteger.TEN.pow(100_000).subtract(BigInteger.ONE).negate()));
+    }
+
+    @Test
+    void testPrimitiveDigitSum() {
+        assertEquals(0, RecursiveSumOfDigits.sumOfDigits(0L));
+        assertEquals(89, RecursiveSumOfDigits.sumOfDigits(Long.MIN_VALUE));
+        assertEquals(88, RecursiveSumOfDigits.sumOfDigits(Long.MAX_VALUE));
+        assertEquals(88, RecursiveSumOfDigits.sumOfDigits(-Long.MAX_VALUE));
+        long power = 1;
+        for (int k = 0; k <= 18; k++, power *= 10) {
+            for (long value : new long[] {power - 1, power, power + 1, -power, 9999 * power, 10_001 * power}) {
+                assertEquals(RecursiveSumOfDigits.sumOfDigits(BigInteger.valueOf(value)), RecursiveSumOfDigits.sumOfDigits(value), String.valueOf(value));
+            }
+        }
+        Random random = new Random(21);
+        for (int i = 0; i < 100_000; i++) {
+            long value = random.nextLong() >> random.nextInt(64);
+            assertEquals(RecursiveSumOfDigits.sumOfDigits(BigInteger.valueOf(value)), RecursiveSumOfDigits.sumOfDigits(value), String.valueOf(value));
+        }
+    }
+
+    @Test
+    void testBatchDigitSum() {
+        Random random = new Random(22);
+        // Large enough to be split across the fork/join pool
+        long[] in = new long[100_000];
+        for (int i = 0; i < in.length; i++) {
+            in[i] = random.nextLong() >> random.nextInt(64);
+        }
+        in[0] = Long.MIN_VALUE;
+        int[] out = new int[in.length + 1];
+        out[in.length] = -1;
+        RecursiveSumOfDigits.sumOfDigits(in, out);
+        for (int i = 0; i < in.length; i++) {
+            assertEquals(RecursiveSumOfDigits.sumOfDigits(BigInteger.valueOf(in[i])), out[i]);
+        }
+        assertEquals(-1, out[in.length]);
+
+        RecursiveSumOfDigits.sumOfDigits(new long[0], new int[0]);
+        assertThrows(IllegalArgumentException.class, () -> RecursiveSumOfDigits.sumOfDigits(new long[2], new int[1]));
+        assertThrows(IllegalArgumentException.class, () -> RecursiveSumOfDigits.sumOfDigits(null, new int[1]));
+    }
+
+    @Test
+    void testFileDigitSum(@TempDir Path directory) throws IOException {
+        String digits = randomDigits(new Random(19), 100_003);
+        Path path = write(directory, "-" + digits + "\r\n");
+        long expected = digitSum(digits);
+        assertEquals(expected, DecimalFileDigitSum.sumOfDigits(path));
+        // Small chunks so that the file is split across many tasks, ending mid-word
+        assertEquals(expected, DecimalFileDigitSum.sumOfDigits(path, 1000));
+        assertEquals(expected, DecimalFileDigitSum.sumOfDigits(path, 8));
+        assertEquals(RecursiveSumOfDigits.sumOfDigits(new BigInteger(digits)), DecimalFileDigitSum.sumOfDigits(path, 4096));
+
+        assertEquals(0, DecimalFileDigitSum.sumOfDigits(write(directory, "0")));
+        assertEquals(45, DecimalFileDigitSum.sumOfDigits(write(directory, "+1234567890 \n\n")));
+        assertEquals(9 * 1000, DecimalFileDigitSum.sumOfDigits(write(directory, "9".repeat(1000) + " ".repeat(5000)), 64));
+    }
+
+    @Test
+    void testFileDigitSumRejectsInvalidText(@TempDir Path directory) throws IOException {
+        String digits = randomDigits(new Random(20), 10_000);
+        for (int offset : new int[] {0, 7, 8, 4095, 9999}) {
+            String text = digits.substring(0, offset) + "x" + digits.substring(offset + 1);
+            Path path = write(directory, text);
+            NumberFormatException e = assertThrows(NumberFormatException.class,
+                    () -> DecimalFileDigitSum.sumOfDigits(path, 256));
+            assertTrue(e.getMessage().contains("byte " + offset + " "), e.getMessage());
+        }
+        for (String text : new String[] {"", "-", "+\n", " 12", "1 2", "--1", "12a", "1/", ":1"}) {
+            Path path = write(directory, text);
+            assertThrows(NumberFormatException.class, () -> DecimalFileDigitSum.sumOfDigits(path), text);
+        }
+    }
+
+    @Test
+    void testSwarDigitCheck() {
+        assertTrue(DecimalFileDigitSum.isDigits(0x3031323334353639L));
+        for (int b = 0; b < 256; b++) {
+            for (int lane = 0; lane < 8; lane++) {
+                long word = 0x3939393939393939L & ~(0xFFL << (8 * lane)) | ((long) b << (8 * lane));
+                assertEquals(b >= '0' && b <= '9', DecimalFileDigitSum.isDigits(word));
+            }
+        }
+        assertFalse(DecimalFileDigitSum.isDigits(0xFF39393939393939L));
+    }
+
+    @Test
+    void testDigitalRoot() {
+        assertEquals(0, DecimalFileDigitSum.digitalRoot(0));
+        assertEquals(9, DecimalFileDigitSum.digitalRoot(9));
+        assertEquals(1, DecimalFileDigitSum.digitalRoot(10));
+        assertEquals(3, DecimalFileDigitSum.digitalRoot(123456789012L));
+        assertThrows(IllegalArgumentException.class, () -> DecimalFileDigitSum.digitalRoot(-1));
+    }
+
+    @Test
+    void testDigitSumMetricsAndEvents(@TempDir Path directory) throws IOException {
+        Metrics.Snapshot before = Metrics.DIGIT_SUM.snapshot();
+        Path path = directory.resolve("digitSum.jfr");
+        Path text = write(directory, "12x");
+        try (Recording recording = new Recording()) {
+            recording.enable("lab12.DigitSum");
+            recording.start();
+            assertEquals(15, RecursiveSumOfDigits.sumOfDigits(new BigInteger("-12345")));
+            RecursiveSumOfDigits.sumOfDigits(new long[] {1, 22, 333}, new int[3]);
+            assertThrows(NumberFormatException.class, () -> DecimalFileDigitSum.sumOfDigits(text));
+            recording.stop();
+            recording.dump(path);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(path);
+            assertEquals(3, events.size());
+            assertEquals("RecursiveSumOfDigits.sumOfDigits(BigInteger)", events.get(0).getString("method"));
+            assertEquals(5, events.get(0).getLong("size"));
+            assertFalse(events.get(0).getBoolean("parallel"));
+            assertEquals("RecursiveSumOfDigits.sumOfDigits(long[], int[])", events.get(1).getString("method"));
+            assertEquals(3, events.get(1).getLong("size"));
+            assertEquals("DecimalFileDigitSum.sumOfDigits", events.get(2).getString("method"));
+            assertEquals(3, events.get(2).getLong("size"));
+            assertEquals("NumberFormatException", events.get(2).getString("error"));
+        }
+        Metrics.Snapshot after = Metrics.DIGIT_SUM.snapshot();
+        assertEquals(before.count() + 3, after.count());
+        assertEquals(before.errors() + 1, after.errors());
+    }
+
+    private static Path write(Path directory, String text) throws IOException {
+        Path path = Files.createTempFile(directory, "digits", ".txt");
+        return Files.write(path, text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String randomDigits(Random random, int length) {
+        StringBuilder digits = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            digits.append((char) ('0' + random.nextInt(10)));
+        }
+        return digits.toString();
+    }
+
+    private static int digitSum(String digits) {
+        return digits.chars().map(c -> c - '0').sum();
+    }
 }
@@ -0,0 +1,241 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * The RunLengthIndex class is an immutable, run-length compressed copy of a sorted array of
+ * integers, for arrays made mostly of long runs of repeated values.
+ *
+ * Specifications:
+ *
+ * - Every distinct value is stored once together with the index at which its run starts, in two
+ *   parallel arrays. An array of n elements with d distinct values takes 2d + 1 ints instead of n.
+ *
+ * - The queries of `BinarySearchAllIndices` over the whole array are answered by a binary search
+ *   of the distinct values only: `equalRange`, `countOccurrences`, `firstIndex`, `lastIndex`,
+ *   `indices` as a lazy `IntStream`, and `allIndices` as a `List`. The `get` method returns the
+ *   element at an index of the original array.
+ *
+ * - The `compressionRatio` and `heapFootprint` methods report the size of the index compared to
+ *   the original array, estimated for a 64-bit JVM with compressed references.
+ *
+ * - It throws an `IllegalArgumentException` if the array is null, empty or not sorted.
+ *
+ * Time Complexity:
+ * - O(n) to build the index.
+ * - O(log d) per query, where d is the number of distinct values, plus O(k) to list k indices.
+ *
+ * Space Complexity:
+ * - O(d) for the distinct values and their run starts.
+ */
+public final class RunLengthIndex {
+
+    /**
+     * The estimated size of an object or array header on a 64-bit JVM with compressed references.
+     */
+    private static final long HEADER_BYTES = 16;
+
+    private final int size;
+    private final int[] values;
+
+    /**
+     * The index at which the run of each distinct value starts, followed by the size of the array.
+     */
+    private final int[] starts;
+
+    /**
+     * Builds the index from a sorted array.
+     *
+     * @param sortedArray The sorted array to be compressed.
+     * @throws IllegalArgumentException If the array is null, empty, or not sorted in ascending order.
+     */
+    public RunLengthIndex(int[] sortedArray) {
+        if (sortedArray == null || sortedArray.length == 0) {
+            throw new IllegalArgumentException("Array cannot be null or empty");
+        }
+        int distinct = 1;
+        for (int i = 1; i < sortedArray.length; i++) {
+            if (sortedArray[i - 1] > sortedArray[i]) {
+                throw new IllegalArgumentException("Array must be sorted in ascending order");
+            }
+            if (sortedArray[i - 1] != sortedArray[i]) {
+                distinct++;
+            }
+        }
+        this.size = sortedArray.length;
+        this.values = new int[distinct];
+        this.starts = new int[distinct + 1];
+        int run = 0;
+        values[0] = sortedArray[0];
+        for (int i = 1; i < sortedArray.length; i++) {
+            if (sortedArray[i - 1] != sortedArray[i]) {
+                values[++run] = sortedArray[i];
+                starts[run] = i;
+            }
+        }
+        starts[distinct] = size;
+    }
+
+    /**
+     * Finds the range of indices holding the target element.
+     *
+     * @param target The element whose indices need to be found.
+     * @return A pair {from, to} such that the target occupies exactly the indices [from, to) of the
+     *         original array; if it does not occur, both are the index at which it would be inserted.
+     */
+    public int[] equalRange(int target) {
+        int run = Arrays.binarySearch(values, target);
+        if (run < 0) {
+            int insertion = starts[-run - 1];
+            return new int[]{insertion, insertion};
+        }
+        return new int[]{starts[run], starts[run + 1]};
+    }
+
+    /**
+     * Counts the occurrences of the target element.
+     *
+     * @param target The element whose occurrences need to be counted.
+     * @return The number of occurrences, 0 if the target does not occur.
+     */
+    public int countOccurrences(int target) {
+        int run = Arrays.binarySearch(values, target);
+        return run < 0 ? 0 : starts[run + 1] - starts[run];
+    }
+
+    /**
+     * Finds the first occurrence of the target element.
+     *
+     * @param target The element that needs to be found.
+     * @return The smallest index holding the target, otherwise -1.
+     */
+    public int firstIndex(int target) {
+        int run = Arrays.binarySearch(values, target);
+        return run < 0 ? -1 : starts[run];
+    }
+
+    /**
+     * Finds the last occurrence of the target element.
+     *
+     * @param target The element that needs to be found.
+     * @return The largest index holding the target, otherwise -1.
+     */
+    public int lastIndex(int target) {
+        int run = Arrays.binarySearch(values, target);
+        return run < 0 ? -1 : starts[run + 1] - 1;
+    }
+
+    /**
+     * Returns the indices of the target element as a lazy stream.
+     *
+     * @param target The element whose indices need to be found.
+     * @return An ordered stream of the indices holding the target.
+     */
+    public IntStream indices(int target) {
+        int[] range = equalRange(target);
+        return IntStream.range(range[0], range[1]);
+    }
+
+    /**
+     * Returns the indices of the target element as a list, like
+     * `BinarySearchAllIndices.binarySearchAllIndices` over the whole array.
+     *
+     * @param target The element whose indices need to be found.
+     * @return A list containing all indices holding the target, in ascending order.
+     */
+    public List<Integer> allIndices(int target) {
+        int[] range = equalRange(target);
+        List<Integer> indices = new ArrayList<>(range[1] - range[0]);
+        for (int i = range[0]; i < range[1]; i++) {
+            indices.add(i);
+        }
+        return indices;
+    }
+
+    /**
+     * Returns the element at an index of the original array.
+     *
+     * @param index The index in the original array.
+     * @return The element at that index.
+     * @throws IndexOutOfBoundsException If the index is negative or not less than the size.
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        int run = Arrays.binarySearch(starts, index);
+        // A miss lands after the run containing the index
+        return values[run < 0 ? -run - 2 : run];
+    }
+
+    /**
+     * Returns the number of elements in the original array.
+     *
+     * @return The size of the original array.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of distinct values, which is the number of runs.
+     *
+     * @return The number of distinct values.
+     */
+    public int distinctCount() {
+        return values.length;
+    }
+
+    /**
+     * Estimates the heap space taken by the index.
+     *
+     * @return The estimated number of bytes of the index and its arrays.
+     */
+    public long heapFootprint() {
+        // The header plus three int fields, and the two arrays
+        return align(HEADER_BYTES + 3 * 4) + arrayBytes(values.length) + arrayBytes(starts.length);
+    }
+
+    /**
+     * Compares the heap space of the original array with that of the index.
+     *
+     * @return The size of an `int[]` of the original length divided by the footprint of the index.
+     */
+    public double compressionRatio() {
+        return (double) arrayBytes(size) / heapFootprint();
+    }
+
+    private static long arrayBytes(int length) {
+        return align(HEADER_BYTES + 4L * length);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * The main method compresses an array of long runs, prints its compression ratio, and looks
+     * up all occurrences of one of its values.
+     *
+     * @param args Command-line arguments (not used in this example).
+     */
+    public static void main(String[] args) {
+        int[] sortedArray = new int[1_000_000];
+        for (int i = 0; i < sortedArray.length; i++) {
+            sortedArray[i] = i / 1000;
+        }
+
+        try {
+            RunLengthIndex index = new RunLengthIndex(sortedArray);
+            System.out.println("Distinct values: " + index.distinctCount() + " of " + index.size());
+            System.out.println("Heap footprint: " + index.heapFootprint() + " bytes");
+            System.out.printf("Compression ratio: %.1f%n", index.compressionRatio());
+            int[] range = index.equalRange(42);
+            System.out.println("Range of 42: [" + range[0] + ", " + range[1] + ")");
+            System.out.println("Occurrences of 42: " + index.countOccurrences(42));
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The SearchEvent class is the JDK Flight Recorder event of one call to a search of
+ * `BinarySearch`, `BinarySearchStrings` or `BinarySearchAllIndices`.
+ *
+ * Specifications:
+ *
+ * - The event is named `lab12.Search` and can be enabled, disabled or given a duration threshold
+ *   by that name in the settings of a recording. No event is created unless a flight recording
+ *   is running, so that calls allocate nothing while none is, even in code the JIT compiler has
+ *   not optimized yet.
+ *
+ * - The probe count is only computed for events that are committed, by replaying the search, so
+ *   searching costs no more when the event is disabled.
+ *
+ * - Rejected searches are recorded with the simple name of the exception thrown, such as
+ *   `IllegalArgumentException` for a null or empty array or `ArrayIndexOutOfBoundsException` for a
+ *   range outside the array.
+ */
+@Name("lab12.Search")
+@Label("Search")
+@Category({"Lab12", "Search"})
+@Description("A search of a sorted array")
+@StackTrace(false)
+final class SearchEvent extends Event {
+
+    @Label("Method")
+    String method;
+
+    @Label("Input Size")
+    @Description("The number of elements in the searched range")
+    int size;
+
+    @Label("Keys")
+    @Description("The number of keys searched, more than one for a batch")
+    int keys;
+
+    @Label("Probes")
+    @Description("The number of elements compared, or characters for the LCP search, 0 for a batch")
+    long probes;
+
+    @Label("Found")
+    @Description("The number of keys found")
+    int found;
+
+    @Label("Error")
+    @Description("The exception thrown for a rejected search, null if it completed")
+    String error;
+
+    /**
+     * Creates and begins an event, if a flight recording is running.
+     *
+     * @return The event, or null if no recording is running.
+     */
+    static SearchEvent beginIfRecording() {
+        if (!Metrics.isRecording()) {
+            return null;
+        }
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event and tells whether it is to be committed.
+     *
+     * @return True if a recording enables the event and its duration passes the threshold.
+     */
+    boolean endAndShouldCommit() {
+        end();
+        return shouldCommit();
+    }
+
+    /**
+     * Ends the event of a search that threw and commits it, if a recording enables it.
+     *
+     * @param method The name of the method.
+     * @param size The number of elements in the searched range.
+     * @param keys The number of keys searched.
+     * @param e The exception thrown.
+     */
+    void commitError(String method, int size, int keys, RuntimeException e) {
+        if (endAndShouldCommit()) {
+            this.method = method;
+            this.size = size;
+            this.keys = keys;
+            error = e.getClass().getSimpleName();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,454 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The SortedStringTable class reads an on-disk table of sorted strings through memory mapping,
+ * so that a key set larger than the heap can be searched without loading it.
+ *
+ * Specifications:
+ *
+ * - The file starts with a header of 32 bytes: the magic number `SSTB`, the format version, the
+ *   number of records, the offset of the index, and the index interval. The records follow, each a
+ *   4-byte length and the UTF-8 bytes of the key. The index at the end of the file holds the 8-byte
+ *   offset of every record whose ordinal is a multiple of the interval. All numbers are big-endian.
+ *
+ * - The `Writer` streams keys to the file in one pass and keeps only the sparse index in memory.
+ *   Keys must be strictly increasing both as strings and as UTF-8 bytes, and at most 1 MB long.
+ *   Closing the writer completes the file with the index and the header, unless adding a key or
+ *   writing has failed: the file is then deleted, so that no truncated table is left behind that
+ *   would open as a valid one. Closing a writer again has no effect.
+ *
+ * - The `open` method maps the file read-only with `FileChannel.map`, in regions of 1 GB that
+ *   overlap by the largest record size, so that every record lies entirely within one region.
+ *   Opening reads only the header and takes constant time. Mappings are shared with other readers
+ *   of the same file through the page cache of the operating system.
+ *
+ * - A lookup binary searches the index and then scans at most one interval of records, comparing
+ *   the bytes of the target with the mapped bytes directly, without creating a `String` per probe.
+ *   The `indexOf` method returns the ordinal `BinarySearchStrings.binarySearchRecursive` would
+ *   return for the same keys, -1 when the target is absent. Readers are safe to share between
+ *   threads.
+ *
+ * - It throws an `IllegalArgumentException` for keys out of order, malformed or too long, and an
+ *   `IOException` for files that cannot be read or are not sorted string tables.
+ *
+ * Time Complexity:
+ * - O(1) to open the table.
+ * - O(L log(n / k) + k L) per lookup for keys of length L and an index interval of k.
+ *
+ * Space Complexity:
+ * - O(1) on the heap for a reader, and O(n / k) for a writer.
+ */
+public final class SortedStringTable implements Closeable {
+
+    /**
+     * The magic number "SSTB" at the start of every file.
+     */
+    static final int MAGIC = 0x53535442;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 32;
+
+    /**
+     * The longest key in bytes, which is also how far consecutive mapped regions overlap.
+     */
+    public static final int MAX_KEY_BYTES = 1 << 20;
+
+    /**
+     * The default number of records per index entry.
+     */
+    public static final int DEFAULT_INDEX_INTERVAL = 16;
+
+    /**
+     * The distance between the starts of consecutive mapped regions.
+     */
+    private static final long REGION_STRIDE = 1L << 30;
+
+    private static final long REGION_SIZE = REGION_STRIDE + 4 + MAX_KEY_BYTES;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] regions;
+    private final long size;
+    private final long indexOffset;
+    private final int indexInterval;
+
+    private SortedStringTable(FileChannel channel, MappedByteBuffer[] regions, long size, long indexOffset, int indexInterval) {
+        this.channel = channel;
+        this.regions = regions;
+        this.size = size;
+        this.indexOffset = indexOffset;
+        this.indexInterval = indexInterval;
+    }
+
+    /**
+     * Writes a sorted array of strings to a new table with the default index interval.
+     *
+     * @param path The file to be written. It is created or truncated.
+     * @param sortedKeys The strictly increasing keys.
+     * @throws IllegalArgumentException If the keys are not strictly increasing or a key is too long.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Path path, String[] sortedKeys) throws IOException {
+        try (Writer writer = new Writer(path, DEFAULT_INDEX_INTERVAL)) {
+            for (String key : sortedKeys) {
+                writer.add(key);
+            }
+        }
+    }
+
+    /**
+     * Opens a table for reading by mapping its file.
+     *
+     * @param path The file written by a `Writer`.
+     * @return The reader, which must be closed after use.
+     * @throws IOException If the file cannot be mapped or is not a valid table.
+     */
+    public static SortedStringTable open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new IOException("Not a sorted string table: " + path);
+            }
+            MappedByteBuffer[] regions = new MappedByteBuffer[(int) ((fileSize - 1) / REGION_STRIDE + 1)];
+            for (int i = 0; i < regions.length; i++) {
+                long start = i * REGION_STRIDE;
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_SIZE, fileSize - start));
+            }
+            ByteBuffer header = regions[0];
+            long size = header.getLong(8);
+            long indexOffset = header.getLong(16);
+            int indexInterval = header.getInt(24);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || size < 0 || indexInterval <= 0
+                    || indexOffset < HEADER_SIZE || indexOffset + 8 * ((size + indexInterval - 1) / indexInterval) != fileSize) {
+                throw new IOException("Not a sorted string table: " + path);
+            }
+            return new SortedStringTable(channel, regions, size, indexOffset, indexInterval);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Searches the table for the given target string.
+     *
+     * @param target The string that needs to be found.
+     * @return The ordinal of the target, otherwise -1.
+     */
+    public long indexOf(String target) {
+        if (size == 0 || !FrontCodedDictionary.isWellFormed(target)) {
+            return -1; // Every key is well-formed, so a malformed target cannot be among them
+        }
+        byte[] key = target.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer words = ByteBuffer.wrap(key);
+        // Find the last indexed record not greater than the target
+        long low = 0;
+        long high = (size - 1) / indexInterval;
+        while (low <= high) {
+            long mid = low + (high - low) / 2;
+            int comparison = compare(indexEntry(mid), key, words);
+            if (comparison == 0) {
+                return mid * indexInterval;
+            } else if (comparison < 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (high < 0) {
+            return -1;
+        }
+        long ordinal = high * indexInterval;
+        long offset = indexEntry(high);
+        long end = Math.min(size, ordinal + indexInterval);
+        // The indexed record is less than the target, so scan the records after it
+        for (ordinal++, offset = next(offset); ordinal < end; ordinal++, offset = next(offset)) {
+            int comparison = compare(offset, key, words);
+            if (comparison >= 0) {
+                return comparison == 0 ? ordinal : -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes the key with the given ordinal.
+     *
+     * @param ordinal The ordinal of the key.
+     * @return The key.
+     * @throws IndexOutOfBoundsException If the ordinal is negative or not less than the size.
+     */
+    public String get(long ordinal) {
+        if (ordinal < 0 || ordinal >= size) {
+            throw new IndexOutOfBoundsException("Index " + ordinal + " out of bounds for length " + size);
+        }
+        long offset = indexEntry(ordinal / indexInterval);
+        for (long i = ordinal % indexInterval; i > 0; i--) {
+            offset = next(offset);
+        }
+        ByteBuffer region = regions[(int) (offset / REGION_STRIDE)];
+        int position = (int) (offset % REGION_STRIDE);
+        byte[] bytes = new byte[region.getInt(position)];
+        region.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the number of keys in the table.
+     *
+     * @return The number of records.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Closes the file. The mappings are released once the reader becomes unreachable.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long indexEntry(long entry) {
+        long offset = indexOffset + 8 * entry;
+        return regions[(int) (offset / REGION_STRIDE)].getLong((int) (offset % REGION_STRIDE));
+    }
+
+    private long next(long offset) {
+        return offset + 4 + regions[(int) (offset / REGION_STRIDE)].getInt((int) (offset % REGION_STRIDE));
+    }
+
+    /**
+     * Compares the record at an offset with the target as unsigned bytes, eight at a time as
+     * big-endian longs, whose unsigned order is the order of their bytes.
+     *
+     * @param offset The file offset of the record.
+     * @param key The encoded target.
+     * @param words The encoded target wrapped for reading longs.
+     * @return A negative number, zero, or a positive number as the record is less than, equal to,
+     *         or greater than the target.
+     */
+    private int compare(long offset, byte[] key, ByteBuffer words) {
+        ByteBuffer region = regions[(int) (offset / REGION_STRIDE)];
+        int position = (int) (offset % REGION_STRIDE);
+        int length = region.getInt(position);
+        position += 4;
+        int limit = Math.min(length, key.length);
+        int i = 0;
+        for (; i + 8 <= limit; i += 8) {
+            long a = region.getLong(position + i);
+            long b = words.getLong(i);
+            if (a != b) {
+                return Long.compareUnsigned(a, b);
+            }
+        }
+        for (; i < limit; i++) {
+            int difference = (region.get(position + i) & 0xFF) - (key[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - key.length;
+    }
+
+    /**
+     * Writes a sorted string table in one pass.
+     */
+    public static final class Writer implements Closeable {
+        private final Path path;
+        private final DataOutputStream out;
+        private final int indexInterval;
+        private long[] index = new long[16];
+        private long count;
+        private long offset = HEADER_SIZE;
+        private String previous;
+        private byte[] previousBytes;
+        private boolean failed;
+        private boolean closed;
+
+        /**
+         * Creates the file and writes a placeholder header.
+         *
+         * @param path The file to be written. It is created or truncated.
+         * @param indexInterval The number of records per index entry.
+         * @throws IllegalArgumentException If the index interval is not positive.
+         * @throws IOException If the file cannot be created.
+         */
+        public Writer(Path path, int indexInterval) throws IOException {
+            if (indexInterval <= 0) {
+                throw new IllegalArgumentException("Index interval must be positive");
+            }
+            this.path = path;
+            this.indexInterval = indexInterval;
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+            out.write(new byte[HEADER_SIZE]);
+        }
+
+        /**
+         * Appends the next key. If the key is rejected or cannot be written, the writer has failed
+         * and closing it deletes the file.
+         *
+         * @param key The key, greater than every key added before.
+         * @throws IllegalArgumentException If the key is null, malformed, too long, or not greater
+         *         than the previous key both as a string and as UTF-8 bytes.
+         * @throws IOException If the key cannot be written, or the writer is closed or has failed.
+         */
+        public void add(String key) throws IOException {
+            if (closed || failed) {
+                throw new IOException(closed ? "Writer is closed" : "Writer has failed");
+            }
+            try {
+                append(key);
+            } catch (IOException | RuntimeException e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        /**
+         * Validates the next key and writes its record.
+         */
+        private void append(String key) throws IOException {
+            if (key == null || !FrontCodedDictionary.isWellFormed(key)) {
+                throw new IllegalArgumentException("Key must be a well-formed string");
+            }
+            byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_KEY_BYTES) {
+                throw new IllegalArgumentException("Key cannot be longer than " + MAX_KEY_BYTES + " bytes");
+            }
+            if (previous != null && (previous.compareTo(key) >= 0 || Arrays.compareUnsigned(previousBytes, bytes) >= 0)) {
+                throw new IllegalArgumentException("Keys must be strictly increasing as strings and as UTF-8 bytes: " + key);
+            }
+            if (count % indexInterval == 0) {
+                int entry = (int) (count / indexInterval);
+                if (entry == index.length) {
+                    index = Arrays.copyOf(index, entry * 2);
+                }
+                index[entry] = offset;
+            }
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            offset += 4 + bytes.length;
+            count++;
+            previous = key;
+            previousBytes = bytes;
+        }
+
+        /**
+         * Writes the index and the header and closes the file. If adding a key failed, or writing
+         * the index or the header fails, the file is deleted instead. Only the first call has an
+         * effect.
+         *
+         * @throws IOException If the file cannot be written or deleted.
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (failed) {
+                try {
+                    out.close();
+                } finally {
+                    Files.deleteIfExists(path);
+                }
+                return;
+            }
+            try {
+                complete();
+            } catch (IOException | RuntimeException e) {
+                failed = true;
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * Writes the index, closes the stream and fills in the header.
+         */
+        private void complete() throws IOException {
+            long entries = (count + indexInterval - 1) / indexInterval;
+            try {
+                for (int i = 0; i < entries; i++) {
+                    out.writeLong(index[i]);
+                }
+            } finally {
+                out.close();
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(count).putLong(offset).putInt(indexInterval).flip();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            }
+        }
+    }
+
+    /**
+     * The main method writes a table of URLs to a temporary file, or to the file given as the
+     * first argument, and measures how long opening it and looking up keys take.
+     *
+     * @param args The file to be written and the number of keys, 4M by default.
+     */
+    public static void main(String[] args) {
+        try {
+            Path path = args.length > 0 ? Paths.get(args[0]) : Files.createTempFile("table", ".sst");
+            int n = args.length > 1 ? Integer.parseInt(args[1]) : 1 << 22;
+            String prefix = "https://storage.example.com/tenants/acme-corporation/objects/";
+            try (Writer writer = new Writer(path, DEFAULT_INDEX_INTERVAL)) {
+                for (int i = 0; i < n; i++) {
+                    writer.add(prefix + String.format("%09d", 2 * i));
+                }
+            }
+            long start = System.nanoTime();
+            try (SortedStringTable table = open(path)) {
+                System.out.printf("Opened %d keys (%d MB) in %.2f ms%n", table.size(), Files.size(path) >> 20,
+                        (System.nanoTime() - start) / 1e6);
+                Random random = new Random(42);
+                String[] keys = new String[1 << 18];
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i] = prefix + String.format("%09d", random.nextInt(2 * n));
+                }
+                for (int round = 0; round < 3; round++) {
+                    int found = 0;
+                    start = System.nanoTime();
+                    for (String key : keys) {
+                        found += table.indexOf(key) >= 0 ? 1 : 0;
+                    }
+                    if (round == 2) {
+                        System.out.printf("%.1f ns/lookup, %d of %d found%n",
+                                (double) (System.nanoTime() - start) / keys.length, found, keys.length);
+                    }
+                }
+            }
+            if (args.length == 0) {
+                Files.delete(path);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}